@@ -0,0 +1,115 @@
+
+# 保留 HttpDispatcher 类及其方法
+-keep class cn.elevendev.utils.HttpDispatcher {
+    public <methods>;
+}
+
+# 保留 HttpCache 类及其方法
+-keep class cn.elevendev.utils.HttpCache {
+    public <methods>;
+}
+
+# 保留 DownloadOptions 类及其方法
+-keep class cn.elevendev.utils.DownloadOptions {
+    public <methods>;
+}
+
+# 保留 HttpMetrics 类及其方法
+-keep class cn.elevendev.utils.HttpMetrics** {
+    public <methods>;
+    public <fields>;
+}
+
+# 保留 HttpCall 类及其方法
+-keep class cn.elevendev.utils.HttpCall {
+    public <methods>;
+}
+
+# 保留 RequestOptions 类及其方法
+-keep class cn.elevendev.utils.RequestOptions {
+    public <methods>;
+}
+
+# 保留 RetryPolicy 类及其方法
+-keep class cn.elevendev.utils.RetryPolicy {
+    public <methods>;
+}
+
+# 保留 CircuitBreaker 类及其方法
+-keep class cn.elevendev.utils.CircuitBreaker** {
+    public <methods>;
+}
+
+# 保留 HttpFuture 类及其方法
+-keep class cn.elevendev.utils.HttpFuture {
+    public <methods>;
+}
+
+# 保留 ResponseDecoder 接口及 JsonResponseDecoder 类
+-keep class cn.elevendev.utils.ResponseDecoder {
+    public <methods>;
+}
+-keep class cn.elevendev.utils.JsonResponseDecoder {
+    public <methods>;
+    protected <methods>;
+}
+
+# 保留 HttpOutbox 类及其方法
+-keep class cn.elevendev.utils.HttpOutbox** {
+    public <methods>;
+}
+
+# 保留 DownloadManager 及 DownloadInfo 类及其方法
+-keep class cn.elevendev.utils.DownloadManager {
+    public <methods>;
+}
+-keep class cn.elevendev.utils.DownloadInfo** {
+    public <methods>;
+}
+
+# 保留 MultipartForm 及 UploadOptions 类及其方法
+-keep class cn.elevendev.utils.MultipartForm {
+    public <methods>;
+}
+-keep class cn.elevendev.utils.UploadOptions {
+    public <methods>;
+}
+
+# 保留 RequestCodec 接口及 JsonRequestCodec 类
+-keep class cn.elevendev.utils.RequestCodec {
+    public <methods>;
+}
+-keep class cn.elevendev.utils.JsonRequestCodec {
+    public <fields>;
+    public <methods>;
+    protected <methods>;
+}
+
+# 保留 CachingDns 类及其方法
+-keep class cn.elevendev.utils.CachingDns {
+    public <methods>;
+}
+
+# 保留 HttpClient 类及其方法
+-keep class cn.elevendev.utils.HttpClient {
+    public <methods>;
+}
+
+# 保留 TimeParseResult 类及其方法
+-keep class cn.elevendev.utils.TimeParseResult {
+    public <methods>;
+}
+
+# 保留 TimeBatch 及 TimeBatchOptions 类及其方法
+-keep class cn.elevendev.utils.TimeBatch {
+    public <methods>;
+}
+-keep class cn.elevendev.utils.TimeBatchOptions {
+    public <fields>;
+    public <methods>;
+}
+
+# 保留 RelativeTimeScheduler 类及其接口
+-keep class cn.elevendev.utils.RelativeTimeScheduler** {
+    public <methods>;
+}
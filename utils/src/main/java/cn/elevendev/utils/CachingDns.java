@@ -0,0 +1,201 @@
+package cn.elevendev.utils;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Dns;
+
+/**
+ * 带缓存的 DNS 解析
+ * <p>
+ * 解析结果在 TTL 内直接使用；超过 TTL 的 3/4 时在后台提前刷新，使常用主机几乎不必同步解析。
+ * 过期后仍在 maxStale 内时先返回旧结果并在后台刷新，刷新失败时也继续使用旧结果，
+ * 避免网络抖动时请求因 DNS 失败。同一主机同一时间只有一次解析，并发的查询共享结果。
+ * <p>
+ * 切换网络后旧结果可能不再是最优地址，可调用 {@link #clear()} 清空。
+ */
+public class CachingDns implements Dns {
+
+    /** 默认缓存时间（毫秒） */
+    public static final long DEFAULT_TTL_MILLIS = 5 * 60 * 1000;
+    /** 默认过期后仍可使用的时间（毫秒） */
+    public static final long DEFAULT_MAX_STALE_MILLIS = 60 * 60 * 1000;
+
+    private static final ExecutorService refresher = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "HttpUtil Dns #" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final Dns delegate;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Map<String, FutureTask<List<InetAddress>>> pending = new HashMap<>();
+    private volatile long ttlMillis = DEFAULT_TTL_MILLIS;
+    private volatile long maxStaleMillis = DEFAULT_MAX_STALE_MILLIS;
+
+    /**
+     * @param delegate 实际执行解析的 DNS，如 {@link Dns#SYSTEM}
+     */
+    CachingDns(Dns delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * 设置缓存时间
+     *
+     * @param ttlMillis 毫秒
+     */
+    public void setTtl(long ttlMillis) {
+        this.ttlMillis = Math.max(0, ttlMillis);
+    }
+
+    public long getTtl() {
+        return ttlMillis;
+    }
+
+    /**
+     * 设置过期后仍可使用的时间，期间先返回旧结果并在后台刷新
+     *
+     * @param maxStaleMillis 毫秒，为 0 时过期后同步解析
+     */
+    public void setMaxStale(long maxStaleMillis) {
+        this.maxStaleMillis = Math.max(0, maxStaleMillis);
+    }
+
+    public long getMaxStale() {
+        return maxStaleMillis;
+    }
+
+    /**
+     * 在后台解析主机并缓存结果，已缓存且未过期的主机不再解析
+     *
+     * @param hostnames 主机名
+     */
+    public void prefetch(String... hostnames) {
+        long now = uptimeMillis();
+        for (String hostname : hostnames) {
+            Entry entry;
+            synchronized (this) {
+                entry = entries.get(hostname);
+            }
+            if (entry == null || now - entry.time >= ttlMillis * 3 / 4) {
+                resolve(hostname, true);
+            }
+        }
+    }
+
+    /**
+     * 清空所有缓存，如切换网络后
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    @Override
+    public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(hostname);
+        }
+        if (entry != null) {
+            long age = uptimeMillis() - entry.time;
+            long ttl = ttlMillis;
+            if (age < ttl) {
+                if (age >= ttl * 3 / 4) {
+                    // 即将过期，提前刷新
+                    resolve(hostname, true);
+                }
+                return entry.addresses;
+            }
+            if (age < ttl + maxStaleMillis) {
+                resolve(hostname, true);
+                return entry.addresses;
+            }
+        }
+        try {
+            return resolve(hostname, false).get();
+        } catch (ExecutionException e) {
+            if (entry != null) {
+                // 解析失败时继续使用旧结果
+                return entry.addresses;
+            }
+            if (e.getCause() instanceof UnknownHostException) {
+                throw (UnknownHostException) e.getCause();
+            }
+            UnknownHostException exception = new UnknownHostException(hostname);
+            exception.initCause(e.getCause());
+            throw exception;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UnknownHostException("解析被中断: " + hostname);
+        }
+    }
+
+    /**
+     * 发起解析，同一主机已在解析时返回进行中的任务
+     *
+     * @param async 是否在后台线程解析，否则在当前线程解析
+     */
+    private FutureTask<List<InetAddress>> resolve(final String hostname, boolean async) {
+        FutureTask<List<InetAddress>> task;
+        synchronized (this) {
+            task = pending.get(hostname);
+            if (task != null) {
+                return task;
+            }
+            task = new FutureTask<>(new Callable<List<InetAddress>>() {
+                @Override
+                public List<InetAddress> call() throws UnknownHostException {
+                    try {
+                        List<InetAddress> addresses = delegate.lookup(hostname);
+                        synchronized (CachingDns.this) {
+                            entries.put(hostname, new Entry(addresses, uptimeMillis()));
+                        }
+                        return addresses;
+                    } finally {
+                        synchronized (CachingDns.this) {
+                            pending.remove(hostname);
+                        }
+                    }
+                }
+            });
+            pending.put(hostname, task);
+        }
+        if (async) {
+            refresher.execute(task);
+        } else {
+            task.run();
+        }
+        return task;
+    }
+
+    private static long uptimeMillis() {
+        return System.nanoTime() / 1_000_000;
+    }
+
+    private static final class Entry {
+
+        final List<InetAddress> addresses;
+        final long time;
+
+        Entry(List<InetAddress> addresses, long time) {
+            this.addresses = addresses;
+            this.time = time;
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package cn.elevendev.utils;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 单个主机的熔断器
+ * <p>
+ * 连续失败（连接失败、超时或 5xx）达到阈值后进入 {@link State#OPEN}，此期间该主机的请求直接失败；
+ * 经过 openDuration 后进入 {@link State#HALF_OPEN}，只放行一个探测请求，成功则恢复
+ * {@link State#CLOSED}，失败则重新进入 {@link State#OPEN}。
+ * 熔断前放行、之后才结束的请求结果不再计入，不会使熔断器提前恢复。
+ */
+public class CircuitBreaker {
+
+    /**
+     * 熔断器状态
+     */
+    public enum State {
+        /** 正常放行 */
+        CLOSED,
+        /** 熔断中，请求直接失败 */
+        OPEN,
+        /** 探测中，只放行一个请求 */
+        HALF_OPEN
+    }
+
+    /** 默认连续失败阈值 */
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    /** 默认熔断持续时间（毫秒） */
+    public static final long DEFAULT_OPEN_DURATION_MILLIS = 30_000;
+
+    private final String host;
+    private final Registry registry;
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAtNanos;
+    private boolean probeInFlight;
+    /** 每次熔断或放行探测请求时加一，结果只在放行时的代数未变时计入 */
+    private long generation;
+    private long rejectedCount;
+
+    CircuitBreaker(String host, Registry registry) {
+        this.host = host;
+        this.registry = registry;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * 获取当前状态，熔断时间已过时返回 {@link State#HALF_OPEN}
+     *
+     * @return 状态
+     */
+    public synchronized State getState() {
+        if (state == State.OPEN && openElapsed()) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    /**
+     * 获取因熔断被直接拒绝的请求数
+     *
+     * @return 拒绝次数
+     */
+    public synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * 判断是否放行请求，放行后必须以返回的许可调用 {@link #recordSuccess}、{@link #recordFailure}
+     * 或 {@link #recordIgnored} 之一
+     *
+     * @return 许可，不放行时返回 -1
+     */
+    long allowRequest() {
+        State changed = null;
+        long permit;
+        synchronized (this) {
+            if (registry.enabled && state == State.OPEN) {
+                if (!openElapsed()) {
+                    rejectedCount++;
+                    return -1;
+                }
+                state = State.HALF_OPEN;
+                changed = state;
+            }
+            if (registry.enabled && state == State.HALF_OPEN) {
+                if (probeInFlight) {
+                    rejectedCount++;
+                    return -1;
+                }
+                probeInFlight = true;
+                generation++;
+            }
+            permit = generation;
+        }
+        registry.notifyStateChanged(this, changed);
+        return permit;
+    }
+
+    void recordSuccess(long permit) {
+        State changed = null;
+        synchronized (this) {
+            if (permit != generation) {
+                return;
+            }
+            consecutiveFailures = 0;
+            if (state == State.HALF_OPEN) {
+                probeInFlight = false;
+                state = State.CLOSED;
+                changed = state;
+            }
+        }
+        registry.notifyStateChanged(this, changed);
+    }
+
+    void recordFailure(long permit) {
+        State changed = null;
+        synchronized (this) {
+            if (permit != generation) {
+                return;
+            }
+            consecutiveFailures++;
+            if (state == State.HALF_OPEN || state == State.CLOSED && consecutiveFailures >= registry.failureThreshold) {
+                probeInFlight = false;
+                state = State.OPEN;
+                openedAtNanos = System.nanoTime();
+                generation++;
+                changed = state;
+            }
+        }
+        registry.notifyStateChanged(this, changed);
+    }
+
+    /**
+     * 请求被取消等无法判断主机状态的情况，只释放探测名额
+     */
+    synchronized void recordIgnored(long permit) {
+        if (permit == generation) {
+            probeInFlight = false;
+        }
+    }
+
+    private boolean openElapsed() {
+        return System.nanoTime() - openedAtNanos >= registry.openDurationMillis * 1_000_000;
+    }
+
+    @Override
+    public String toString() {
+        return host + " " + getState() + " failures=" + getConsecutiveFailures() + " rejected=" + getRejectedCount();
+    }
+
+    /**
+     * 熔断器状态变化监听
+     */
+    public interface Listener {
+        /**
+         * 状态变化时在请求线程回调
+         *
+         * @param breaker 熔断器
+         * @param state   新状态
+         */
+        void onStateChanged(CircuitBreaker breaker, State state);
+    }
+
+    /**
+     * 按主机管理熔断器
+     */
+    public static class Registry {
+
+        private final ConcurrentHashMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+        private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+        private volatile boolean enabled = true;
+        private volatile int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+        private volatile long openDurationMillis = DEFAULT_OPEN_DURATION_MILLIS;
+
+        Registry() {
+        }
+
+        /**
+         * 获取指定主机的熔断器
+         *
+         * @param host 主机名
+         * @return 熔断器
+         */
+        public CircuitBreaker get(String host) {
+            CircuitBreaker breaker = breakers.get(host);
+            if (breaker == null) {
+                CircuitBreaker created = new CircuitBreaker(host, this);
+                breaker = breakers.putIfAbsent(host, created);
+                if (breaker == null) {
+                    breaker = created;
+                }
+            }
+            return breaker;
+        }
+
+        /**
+         * 获取所有主机的熔断器
+         *
+         * @return 主机名到熔断器的映射
+         */
+        public Map<String, CircuitBreaker> getAll() {
+            return Collections.unmodifiableMap(new LinkedHashMap<String, CircuitBreaker>(breakers));
+        }
+
+        /**
+         * 设置是否启用熔断，默认开启
+         *
+         * @param enabled 是否启用
+         */
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /**
+         * 设置连续失败多少次后熔断
+         *
+         * @param failureThreshold 连续失败阈值
+         */
+        public void setFailureThreshold(int failureThreshold) {
+            if (failureThreshold < 1) {
+                throw new IllegalArgumentException("failureThreshold < 1: " + failureThreshold);
+            }
+            this.failureThreshold = failureThreshold;
+        }
+
+        /**
+         * 设置熔断持续时间，之后放行一个探测请求
+         *
+         * @param openDurationMillis 持续时间（毫秒）
+         */
+        public void setOpenDuration(long openDurationMillis) {
+            this.openDurationMillis = openDurationMillis;
+        }
+
+        public void addListener(Listener listener) {
+            listeners.add(listener);
+        }
+
+        public void removeListener(Listener listener) {
+            listeners.remove(listener);
+        }
+
+        /**
+         * 重置所有熔断器
+         */
+        public void reset() {
+            breakers.clear();
+        }
+
+        void notifyStateChanged(CircuitBreaker breaker, State state) {
+            if (state == null) {
+                return;
+            }
+            for (Listener listener : listeners) {
+                listener.onStateChanged(breaker, state);
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package cn.elevendev.utils;
+
+import java.io.IOException;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ByteString;
+
+/**
+ * 由 {@link RequestCodec} 编码的请求体
+ * <p>
+ * 第一次获取长度或写出时才编码（通常在请求线程），之后复用编码结果，重试及加入离线队列时不再编码。
+ *
+ * @param <T> 被编码对象的类型
+ */
+final class CodecRequestBody<T> extends RequestBody {
+
+    private final T value;
+    private final RequestCodec<T> codec;
+    private final MediaType contentType;
+    private ByteString encoded;
+
+    CodecRequestBody(T value, RequestCodec<T> codec) {
+        this.value = value;
+        this.codec = codec;
+        this.contentType = MediaType.parse(codec.contentType());
+    }
+
+    @Override
+    public MediaType contentType() {
+        return contentType;
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+        return encoded().size();
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        sink.write(encoded());
+    }
+
+    private synchronized ByteString encoded() throws IOException {
+        if (encoded == null) {
+            Buffer buffer = new Buffer();
+            try {
+                codec.encode(value, buffer);
+            } catch (RuntimeException e) {
+                // 编码器的异常不能抛到 OkHttp 的请求线程之外
+                throw new IOException("编码失败", e);
+            }
+            encoded = buffer.readByteString();
+        }
+        return encoded;
+    }
+}
@@ -0,0 +1,76 @@
+package cn.elevendev.utils;
+
+import java.io.IOException;
+import java.util.zip.Deflater;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.ByteString;
+import okio.DeflaterSink;
+import okio.GzipSink;
+import okio.Sink;
+
+/**
+ * 按大小压缩请求体，在请求线程中执行
+ * <p>
+ * 只处理带有 {@link Setting} 标签的请求：请求体不小于阈值时压缩并添加 Content-Encoding，
+ * 压缩后没有变小（如图片等已压缩的数据）时仍发送原始内容。
+ */
+final class CompressionInterceptor implements Interceptor {
+
+    /**
+     * 请求的压缩设置，以 tag 的形式附加在请求上
+     */
+    static final class Setting {
+
+        final RequestOptions.Compression compression;
+        final long minBytes;
+
+        Setting(RequestOptions.Compression compression, long minBytes) {
+            this.compression = compression;
+            this.minBytes = minBytes;
+        }
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        Setting setting = request.tag(Setting.class);
+        RequestBody body = request.body();
+        if (setting == null || body == null || request.header("Content-Encoding") != null) {
+            return chain.proceed(request);
+        }
+        long contentLength = body.contentLength();
+        if (contentLength >= 0 && contentLength < setting.minBytes) {
+            return chain.proceed(request);
+        }
+
+        // 长度未知时先读出再判断，已读出的内容不能再从原请求体读取，统一替换请求体
+        Buffer buffer = new Buffer();
+        body.writeTo(buffer);
+        ByteString original = buffer.readByteString();
+        RequestBody replacement = RequestBody.create(original, body.contentType());
+        String encoding = null;
+        if (original.size() >= setting.minBytes) {
+            Buffer compressed = new Buffer();
+            Sink sink = setting.compression == RequestOptions.Compression.GZIP
+                ? new GzipSink(compressed)
+                : new DeflaterSink(compressed, new Deflater());
+            sink.write(new Buffer().write(original), original.size());
+            // 关闭时写入结尾并释放 Deflater
+            sink.close();
+            if (compressed.size() < original.size()) {
+                replacement = RequestBody.create(compressed.readByteString(), body.contentType());
+                encoding = setting.compression.encoding;
+            }
+        }
+        Request.Builder builder = request.newBuilder().method(request.method(), replacement);
+        if (encoding != null) {
+            builder.header("Content-Encoding", encoding);
+        }
+        return chain.proceed(builder.build());
+    }
+}
@@ -0,0 +1,182 @@
+package cn.elevendev.utils;
+
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * 按线程缓存的 SimpleDateFormat
+ * <p>
+ * SimpleDateFormat 不是线程安全的，创建时还要编译格式并加载语言数据，开销较大。
+ * 每个线程保留最近使用的 {@link #MAX_SIZE} 个实例，以格式、语言及时区为键，
+ * 系统语言或时区变化后键随之变化，旧实例不再命中并被逐渐淘汰；
+ * 也可调用 {@link #clear()} 让所有线程在下次使用时清空缓存。
+ * <p>
+ * {@link TimeZone#getDefault()} 每次都会复制时区对象，默认时区因此也缓存起来，最多每秒重新获取一次。
+ */
+final class DateFormatCache {
+
+    /** 每个线程最多缓存的实例数 */
+    static final int MAX_SIZE = 16;
+
+    /** 默认时区的有效期（毫秒） */
+    private static final long ZONE_CHECK_INTERVAL_MILLIS = 1000;
+
+    private static volatile int generation;
+    private static volatile TimeZone defaultZone;
+    private static volatile long zoneCheckedAt;
+
+    private static final ThreadLocal<DateFormatCache> caches = new ThreadLocal<DateFormatCache>() {
+        @Override
+        protected DateFormatCache initialValue() {
+            return new DateFormatCache();
+        }
+    };
+
+    /** 查找用的键，复用以免每次查找都创建对象 */
+    private final Key probe = new Key();
+    private final Map<Key, CachedFormat> formats = new LinkedHashMap<Key, CachedFormat>(MAX_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, CachedFormat> eldest) {
+            return size() > MAX_SIZE;
+        }
+    };
+    private int cachedGeneration = generation;
+
+    private DateFormatCache() {
+    }
+
+    /**
+     * 使用默认语言及时区格式化
+     *
+     * @param timestamp 时间戳（毫秒）
+     * @param pattern   时间格式
+     * @return 格式化后的时间字符串
+     */
+    static String format(long timestamp, String pattern) {
+        CachedFormat cached = caches.get().get(pattern, Locale.getDefault(), defaultZone());
+        cached.date.setTime(timestamp);
+        return cached.format.format(cached.date);
+    }
+
+    /**
+     * 使用默认语言及时区解析，不抛出异常
+     *
+     * @param text     时间字符串
+     * @param pattern  时间格式
+     * @param position 开始解析的位置，解析后为结束位置，失败时设置 errorIndex
+     * @return 解析结果，失败返回 null
+     */
+    static Date parse(String text, String pattern, ParsePosition position) {
+        CachedFormat cached = caches.get().get(pattern, Locale.getDefault(), defaultZone());
+        try {
+            return cached.format.parse(text, position);
+        } finally {
+            // 解析带时区的字符串会修改实例的时区，恢复后才能继续复用
+            cached.format.setTimeZone(cached.zone);
+        }
+    }
+
+    /**
+     * 获取默认时区，最多每秒重新获取一次
+     *
+     * @return 共享的时区对象，只可读取
+     */
+    static TimeZone defaultZone() {
+        return defaultZone(System.currentTimeMillis());
+    }
+
+    /**
+     * 获取默认时区，调用方已读取当前时间时使用，省去一次读取时钟
+     *
+     * @param now 当前时间戳（毫秒）
+     * @return 共享的时区对象，只可读取
+     */
+    static TimeZone defaultZone(long now) {
+        TimeZone zone = defaultZone;
+        long checkedAt = zoneCheckedAt;
+        // 系统时间被调回时也重新获取
+        if (zone == null || now - checkedAt >= ZONE_CHECK_INTERVAL_MILLIS || now < checkedAt) {
+            TimeZone current = TimeZone.getDefault();
+            if (zone == null || !zone.hasSameRules(current) || !zone.getID().equals(current.getID())) {
+                zone = current;
+                defaultZone = current;
+            }
+            zoneCheckedAt = now;
+        }
+        return zone;
+    }
+
+    /**
+     * 清空所有线程的缓存，如系统语言或时区变化后
+     */
+    static void clear() {
+        defaultZone = null;
+        generation++;
+    }
+
+    private CachedFormat get(String pattern, Locale locale, TimeZone zone) {
+        if (cachedGeneration != generation) {
+            cachedGeneration = generation;
+            formats.clear();
+        }
+        probe.set(pattern, locale, zone.getID());
+        CachedFormat cached = formats.get(probe);
+        if (cached == null) {
+            SimpleDateFormat format = new SimpleDateFormat(pattern, locale);
+            format.setTimeZone(zone);
+            cached = new CachedFormat(format, zone);
+            Key key = new Key();
+            key.set(pattern, locale, zone.getID());
+            formats.put(key, cached);
+        }
+        return cached;
+    }
+
+    private static final class Key {
+
+        String pattern;
+        Locale locale;
+        String zoneId;
+        int hash;
+
+        void set(String pattern, Locale locale, String zoneId) {
+            this.pattern = pattern;
+            this.locale = locale;
+            this.zoneId = zoneId;
+            this.hash = (pattern.hashCode() * 31 + locale.hashCode()) * 31 + zoneId.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash && pattern.equals(other.pattern) && locale.equals(other.locale)
+                && zoneId.equals(other.zoneId);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class CachedFormat {
+
+        final SimpleDateFormat format;
+        final TimeZone zone;
+        /** 格式化时复用，免去每次创建 Date */
+        final Date date = new Date();
+
+        CachedFormat(SimpleDateFormat format, TimeZone zone) {
+            this.format = format;
+            this.zone = zone;
+        }
+    }
+}
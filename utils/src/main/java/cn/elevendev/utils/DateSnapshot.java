@@ -0,0 +1,77 @@
+package cn.elevendev.utils;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * 当天的日期字段
+ * <p>
+ * Calendar.getInstance() 每次都要创建日历并查找时区，这里每个自然日只计算一次，
+ * 结果是不可变对象，整体替换，读取时不需要加锁。
+ * 当前时间超出当天范围（跨过零点、系统时间被调整）或默认时区变化时重新计算，
+ * 也可调用 {@link #clear()} 立即失效。
+ */
+final class DateSnapshot {
+
+    private static volatile DateSnapshot current;
+
+    final TimeZone zone;
+    final int year;
+    /** 月份，从 1 开始 */
+    final int month;
+    final int day;
+    /** 当天开始的时间戳（含） */
+    final long start;
+    /** 下一天开始的时间戳（不含） */
+    final long end;
+
+    private DateSnapshot(TimeZone zone, int year, int month, int day, long start, long end) {
+        this.zone = zone;
+        this.year = year;
+        this.month = month;
+        this.day = day;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * 获取当天的日期字段
+     *
+     * @return 快照
+     */
+    static DateSnapshot get() {
+        long now = System.currentTimeMillis();
+        TimeZone zone = DateFormatCache.defaultZone(now);
+        DateSnapshot snapshot = current;
+        if (snapshot == null || snapshot.zone != zone || now < snapshot.start || now >= snapshot.end) {
+            snapshot = compute(now, zone);
+            current = snapshot;
+        }
+        return snapshot;
+    }
+
+    /**
+     * 使快照失效，如系统时间或时区变化后
+     */
+    static void clear() {
+        current = null;
+    }
+
+    private static DateSnapshot compute(long now, TimeZone zone) {
+        // 与原来的 Calendar.getInstance() 一样按默认语言选择日历，如泰国的佛历
+        Calendar calendar = Calendar.getInstance(zone);
+        calendar.setTimeInMillis(now);
+        int year = calendar.get(Calendar.YEAR);
+        int month = calendar.get(Calendar.MONTH) + 1;  // Calendar.MONTH 从0开始
+        int day = calendar.get(Calendar.DAY_OF_MONTH);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        // 零点落在夏令时跳过的时间内时会顺延，保证当前时间在范围内
+        long start = Math.min(calendar.getTimeInMillis(), now);
+        calendar.add(Calendar.DAY_OF_MONTH, 1);
+        long end = calendar.getTimeInMillis();
+        return new DateSnapshot(zone, year, month, day, start, end);
+    }
+}
@@ -0,0 +1,125 @@
+package cn.elevendev.utils;
+
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.zip.CRC32;
+
+import okio.ByteString;
+
+/**
+ * 下载时增量计算的校验值，数据写入文件前同时写入此对象
+ */
+final class DownloadDigest extends OutputStream {
+
+    private final DownloadOptions.Checksum checksum;
+    private final MessageDigest messageDigest;
+    private final CRC32 crc;
+
+    DownloadDigest(DownloadOptions.Checksum checksum) {
+        this.checksum = checksum;
+        if (checksum == DownloadOptions.Checksum.CRC32) {
+            messageDigest = null;
+            crc = new CRC32();
+        } else {
+            try {
+                messageDigest = MessageDigest.getInstance(checksum.algorithm);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+            crc = null;
+        }
+    }
+
+    @Override
+    public void write(int b) {
+        if (crc != null) {
+            crc.update(b);
+        } else {
+            messageDigest.update((byte) b);
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        if (crc != null) {
+            crc.update(b, off, len);
+        } else {
+            messageDigest.update(b, off, len);
+        }
+    }
+
+    void reset() {
+        if (crc != null) {
+            crc.reset();
+        } else {
+            messageDigest.reset();
+        }
+    }
+
+    /**
+     * 计算结果，CRC32 为 4 字节大端序
+     */
+    ByteString digest() {
+        if (crc != null) {
+            long value = crc.getValue();
+            return ByteString.of((byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value);
+        }
+        return ByteString.of(messageDigest.digest());
+    }
+
+    /**
+     * 从响应头中取出对应算法的校验值
+     *
+     * @param digest     Digest 响应头，如 "SHA-256=X48E9qOokqqrvdts8nOJRJN3OWDUoyWxBf7kbu9DBPE="
+     * @param reprDigest Repr-Digest 响应头，如 "sha-256=:X48E9qOokqqrvdts8nOJRJN3OWDUoyWxBf7kbu9DBPE=:"
+     * @param contentMd5 Content-MD5 响应头，仅在完整响应中有效
+     * @return 校验值，没有对应算法时返回 null
+     */
+    ByteString fromHeaders(String digest, String reprDigest, String contentMd5) {
+        String name;
+        switch (checksum) {
+            case MD5:
+                name = "md5";
+                break;
+            case SHA1:
+                name = "sha";
+                break;
+            case SHA256:
+                name = "sha-256";
+                break;
+            default:
+                return null;
+        }
+        ByteString value = findDigest(reprDigest, name);
+        if (value == null) {
+            value = findDigest(digest, name);
+        }
+        if (value == null && checksum == DownloadOptions.Checksum.MD5 && contentMd5 != null) {
+            value = ByteString.decodeBase64(contentMd5.trim());
+        }
+        return value;
+    }
+
+    /**
+     * 解析 "算法=值, 算法=值" 形式的响应头，值为 Base64，可能被冒号包围
+     */
+    private static ByteString findDigest(String header, String name) {
+        if (header == null) {
+            return null;
+        }
+        for (String item : header.split(",")) {
+            int equals = item.indexOf('=');
+            if (equals == -1 || !item.substring(0, equals).trim().toLowerCase(Locale.ROOT).equals(name)) {
+                continue;
+            }
+            String value = item.substring(equals + 1).trim();
+            if (value.length() >= 2 && value.startsWith(":") && value.endsWith(":")) {
+                value = value.substring(1, value.length() - 1);
+            }
+            return ByteString.decodeBase64(value);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,85 @@
+package cn.elevendev.utils;
+
+/**
+ * 下载任务在某一时刻的状态快照
+ */
+public class DownloadInfo {
+
+    /**
+     * 下载任务状态
+     */
+    public enum State {
+        /** 排队中 */
+        QUEUED,
+        /** 下载中 */
+        RUNNING
+    }
+
+    private final String url;
+    private final String destinationPath;
+    private final HttpDispatcher.Priority priority;
+    private final State state;
+    private final long bytesDownloaded;
+    private final long contentLength;
+    private final long bytesPerSecond;
+
+    DownloadInfo(String url, String destinationPath, HttpDispatcher.Priority priority, State state,
+                 long bytesDownloaded, long contentLength, long bytesPerSecond) {
+        this.url = url;
+        this.destinationPath = destinationPath;
+        this.priority = priority;
+        this.state = state;
+        this.bytesDownloaded = bytesDownloaded;
+        this.contentLength = contentLength;
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getDestinationPath() {
+        return destinationPath;
+    }
+
+    public HttpDispatcher.Priority getPriority() {
+        return priority;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * 获取已下载的字节数，包括之前断点续传保留的部分
+     *
+     * @return 字节数
+     */
+    public long getBytesDownloaded() {
+        return bytesDownloaded;
+    }
+
+    /**
+     * 获取文件总长度
+     *
+     * @return 字节数，未知时为 -1
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    /**
+     * 获取当前下载速度（平滑后）
+     *
+     * @return 每秒字节数
+     */
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    @Override
+    public String toString() {
+        return state + " " + url + " -> " + destinationPath + " " + bytesDownloaded + "/" + contentLength
+            + " " + bytesPerSecond + "B/s";
+    }
+}
@@ -0,0 +1,196 @@
+package cn.elevendev.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * 下载管理器
+ * <p>
+ * 所有 {@link HttpUtil#downloadFile} 下载在此排队，同时进行的下载数受 maxConcurrentDownloads 限制，
+ * 排队的下载按优先级从高到低开始，同一优先级内先进先出。
+ * 同一目标文件同一时间只有一个下载：地址及校验设置相同时后来的调用挂在进行中的下载上，共享进度及结果，
+ * 进度及结果在各自的回调线程回调，分段数、带宽限制等其他选项以进行中的下载为准；
+ * 地址或校验设置不同时后来的调用直接失败。
+ * <p>
+ * 可为所有下载设置总带宽上限，避免后台下载占满带宽影响普通请求，也可通过
+ * {@link DownloadOptions#setMaxBytesPerSecond(long)} 单独限制某个下载。
+ */
+public class DownloadManager {
+
+    /** 默认最大同时下载数 */
+    public static final int DEFAULT_MAX_CONCURRENT_DOWNLOADS = 3;
+
+    private int maxConcurrentDownloads = DEFAULT_MAX_CONCURRENT_DOWNLOADS;
+    private final ArrayDeque<HttpDownloader> readyDownloads = new ArrayDeque<>();
+    private final ArrayDeque<HttpDownloader> runningDownloads = new ArrayDeque<>();
+    private final Map<String, HttpDownloader> downloadsByPath = new HashMap<>();
+    private final TokenBucket bandwidth = new TokenBucket(0);
+
+    DownloadManager() {
+    }
+
+    /**
+     * 设置最大同时下载数
+     *
+     * @param maxConcurrentDownloads 最大同时下载数
+     */
+    public void setMaxConcurrentDownloads(int maxConcurrentDownloads) {
+        if (maxConcurrentDownloads < 1) {
+            throw new IllegalArgumentException("max < 1: " + maxConcurrentDownloads);
+        }
+        synchronized (this) {
+            this.maxConcurrentDownloads = maxConcurrentDownloads;
+        }
+        promoteAndExecute();
+    }
+
+    public synchronized int getMaxConcurrentDownloads() {
+        return maxConcurrentDownloads;
+    }
+
+    /**
+     * 设置所有下载的总带宽上限
+     *
+     * @param bytesPerSecond 每秒字节数，小于等于 0 时不限速（默认）
+     */
+    public void setMaxBytesPerSecond(long bytesPerSecond) {
+        bandwidth.setRate(bytesPerSecond);
+    }
+
+    public long getMaxBytesPerSecond() {
+        return bandwidth.getRate();
+    }
+
+    /**
+     * 获取排队中的下载数
+     *
+     * @return 下载数
+     */
+    public synchronized int queuedCount() {
+        return readyDownloads.size();
+    }
+
+    /**
+     * 获取进行中的下载数
+     *
+     * @return 下载数
+     */
+    public synchronized int runningCount() {
+        return runningDownloads.size();
+    }
+
+    /**
+     * 获取所有进行中及排队中下载的状态
+     *
+     * @return 状态快照，进行中的在前
+     */
+    public List<DownloadInfo> getDownloads() {
+        List<HttpDownloader> running;
+        List<HttpDownloader> ready;
+        synchronized (this) {
+            running = new ArrayList<>(runningDownloads);
+            ready = new ArrayList<>(readyDownloads);
+        }
+        List<DownloadInfo> downloads = new ArrayList<>(running.size() + ready.size());
+        for (HttpDownloader downloader : running) {
+            downloads.add(downloader.info(DownloadInfo.State.RUNNING));
+        }
+        for (HttpDownloader downloader : ready) {
+            downloads.add(downloader.info(DownloadInfo.State.QUEUED));
+        }
+        return downloads;
+    }
+
+    TokenBucket bandwidth() {
+        return bandwidth;
+    }
+
+    /**
+     * 提交下载，目标文件已在下载时合并
+     *
+     * @param downloader 新的下载
+     * @param callback   调用方的回调
+     * @param executor   调用方的回调线程
+     * @return 回调实际挂上的下载；目标文件正被其他地址或以不同的校验设置下载时返回 null
+     */
+    HttpDownloader enqueue(HttpDownloader downloader, HttpUtil.HttpCallback callback, Executor executor) {
+        String path = downloader.destinationFile().getAbsolutePath();
+        synchronized (this) {
+            HttpDownloader existing = downloadsByPath.get(path);
+            if (existing != null) {
+                if (!existing.url().equals(downloader.url()) || !existing.sameChecksum(downloader)) {
+                    return null;
+                }
+                // 已结束、正在回调结果的下载不再合并，重新下载
+                if (existing.addCallback(callback, executor)) {
+                    if (downloader.priority().ordinal() < existing.priority().ordinal()) {
+                        existing.setPriority(downloader.priority());
+                    }
+                    return existing;
+                }
+            }
+            downloader.addCallback(callback, executor);
+            downloadsByPath.put(path, downloader);
+            readyDownloads.add(downloader);
+        }
+        promoteAndExecute();
+        return downloader;
+    }
+
+    /**
+     * 移除某个调用方的回调，没有调用方时取消下载
+     */
+    void cancel(HttpDownloader downloader, HttpUtil.HttpCallback callback) {
+        synchronized (this) {
+            if (!downloader.removeCallback(callback)) {
+                return;
+            }
+            if (readyDownloads.remove(downloader)) {
+                downloadsByPath.remove(downloader.destinationFile().getAbsolutePath());
+                return;
+            }
+        }
+        downloader.cancel();
+    }
+
+    /**
+     * 下载结束，释放名额
+     */
+    void finished(HttpDownloader downloader) {
+        synchronized (this) {
+            runningDownloads.remove(downloader);
+            String path = downloader.destinationFile().getAbsolutePath();
+            if (downloadsByPath.get(path) == downloader) {
+                downloadsByPath.remove(path);
+            }
+        }
+        promoteAndExecute();
+    }
+
+    /**
+     * 按优先级开始排队中的下载
+     */
+    private void promoteAndExecute() {
+        List<HttpDownloader> executable = new ArrayList<>();
+        synchronized (this) {
+            while (runningDownloads.size() < maxConcurrentDownloads && !readyDownloads.isEmpty()) {
+                HttpDownloader next = null;
+                for (HttpDownloader downloader : readyDownloads) {
+                    if (next == null || downloader.priority().ordinal() < next.priority().ordinal()) {
+                        next = downloader;
+                    }
+                }
+                readyDownloads.remove(next);
+                runningDownloads.add(next);
+                executable.add(next);
+            }
+        }
+        for (HttpDownloader downloader : executable) {
+            downloader.start();
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package cn.elevendev.utils;
+
+import java.util.concurrent.Executor;
+
+import okio.ByteString;
+
+/**
+ * 文件下载选项
+ */
+public class DownloadOptions {
+
+    /**
+     * 下载时计算的校验算法
+     */
+    public enum Checksum {
+        MD5("MD5"),
+        SHA1("SHA-1"),
+        SHA256("SHA-256"),
+        CRC32("CRC32");
+
+        final String algorithm;
+
+        Checksum(String algorithm) {
+            this.algorithm = algorithm;
+        }
+    }
+
+    /** 默认分段数 */
+    public static final int DEFAULT_SEGMENTS = 3;
+    /** 默认每次读取写入的字节数 */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private int segments = DEFAULT_SEGMENTS;
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+    private boolean preallocate = true;
+    private boolean syncOnComplete;
+    private Executor callbackExecutor;
+    private HttpDispatcher.Priority priority = HttpDispatcher.Priority.NORMAL;
+    private long maxBytesPerSecond;
+    private Checksum checksum;
+    private String expectedChecksum;
+
+    /**
+     * 设置最大并行分段数，为 1 时单连接下载（仍支持断点续传）
+     *
+     * @param segments 分段数
+     * @return 当前对象
+     */
+    public DownloadOptions setSegments(int segments) {
+        if (segments < 1) {
+            throw new IllegalArgumentException("segments < 1: " + segments);
+        }
+        this.segments = segments;
+        return this;
+    }
+
+    public int getSegments() {
+        return segments;
+    }
+
+    /**
+     * 设置每次从连接读取并写入文件的最大字节数，较大的值可减少系统调用次数
+     *
+     * @param bufferSize 字节数，至少 8192
+     * @return 当前对象
+     */
+    public DownloadOptions setBufferSize(int bufferSize) {
+        if (bufferSize < 8192) {
+            throw new IllegalArgumentException("bufferSize < 8192: " + bufferSize);
+        }
+        this.bufferSize = bufferSize;
+        return this;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * 设置总长度已知时是否预先分配文件大小，减少文件碎片，默认开启
+     *
+     * @param preallocate 是否预分配
+     * @return 当前对象
+     */
+    public DownloadOptions setPreallocate(boolean preallocate) {
+        this.preallocate = preallocate;
+        return this;
+    }
+
+    public boolean isPreallocate() {
+        return preallocate;
+    }
+
+    /**
+     * 设置下载完成后是否将数据同步到磁盘（fsync），确保回调成功时数据已落盘，默认关闭
+     *
+     * @param syncOnComplete 是否同步
+     * @return 当前对象
+     */
+    public DownloadOptions setSyncOnComplete(boolean syncOnComplete) {
+        this.syncOnComplete = syncOnComplete;
+        return this;
+    }
+
+    public boolean isSyncOnComplete() {
+        return syncOnComplete;
+    }
+
+    /**
+     * 设置进度及结果回调所在的线程，未设置时使用 {@link HttpUtil#setCallbackExecutor} 指定的默认线程
+     *
+     * @param callbackExecutor {@link HttpUtil#MAIN_THREAD}、{@link HttpUtil#WORKER_THREAD} 或自定义线程池
+     * @return 当前对象
+     */
+    public DownloadOptions setCallbackExecutor(Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+        return this;
+    }
+
+    public Executor getCallbackExecutor() {
+        return callbackExecutor;
+    }
+
+    /**
+     * 设置下载的优先级，排队时优先级高的先开始，默认 {@link HttpDispatcher.Priority#NORMAL}
+     *
+     * @param priority 优先级
+     * @return 当前对象
+     */
+    public DownloadOptions setPriority(HttpDispatcher.Priority priority) {
+        this.priority = priority;
+        return this;
+    }
+
+    public HttpDispatcher.Priority getPriority() {
+        return priority;
+    }
+
+    /**
+     * 设置本下载的带宽上限，同时受 {@link DownloadManager#setMaxBytesPerSecond(long)} 的总上限限制
+     *
+     * @param maxBytesPerSecond 每秒字节数，小于等于 0 时不限速（默认）
+     * @return 当前对象
+     */
+    public DownloadOptions setMaxBytesPerSecond(long maxBytesPerSecond) {
+        this.maxBytesPerSecond = maxBytesPerSecond;
+        return this;
+    }
+
+    public long getMaxBytesPerSecond() {
+        return maxBytesPerSecond;
+    }
+
+    /**
+     * 下载时计算校验值，并与响应头 Digest、Repr-Digest 或 Content-MD5 中的值比较，
+     * 服务器未提供对应算法的值时不比较。校验失败时删除已下载的文件并回调
+     * {@link HttpUtil#CHECKSUM_MISMATCH_MESSAGE}。
+     * <p>
+     * 计算校验值需要按顺序写入，设置后使用单连接下载（仍支持断点续传）。
+     *
+     * @param checksum 校验算法
+     * @return 当前对象
+     */
+    public DownloadOptions setChecksum(Checksum checksum) {
+        return setChecksum(checksum, null);
+    }
+
+    /**
+     * 下载时计算校验值，并与指定的值比较
+     *
+     * @param checksum         校验算法
+     * @param expectedChecksum 期望的校验值（十六进制，不区分大小写），为 null 时与响应头比较
+     * @throws IllegalArgumentException 校验值不是有效的十六进制字符串
+     * @return 当前对象
+     * @see #setChecksum(Checksum)
+     */
+    public DownloadOptions setChecksum(Checksum checksum, String expectedChecksum) {
+        if (expectedChecksum != null) {
+            // 提前检查格式，避免下载完成后才发现无法比较
+            ByteString.decodeHex(expectedChecksum);
+        }
+        this.checksum = checksum;
+        this.expectedChecksum = expectedChecksum;
+        return this;
+    }
+
+    public Checksum getChecksum() {
+        return checksum;
+    }
+
+    public String getExpectedChecksum() {
+        return expectedChecksum;
+    }
+}
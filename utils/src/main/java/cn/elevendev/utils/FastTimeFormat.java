@@ -0,0 +1,496 @@
+package cn.elevendev.utils;
+
+import java.util.TimeZone;
+
+/**
+ * 常用时间格式的快速实现
+ * <p>
+ * 只处理 {@link TimeUtil#DEFAULT_FORMAT}、{@link TimeUtil#DATE_FORMAT}、{@link TimeUtil#ISO_8601_FORMAT}
+ * 及 {@link TimeUtil#EPOCH_SECONDS_FORMAT}，直接按公历换算，不分配对象也不抛出异常，只输出 ASCII 数字。
+ * 解析是严格的：字段位数、取值范围及分隔符必须完全符合格式，且不允许多余字符。
+ * 其他格式返回 {@link #NONE}，由 {@link DateFormatCache} 处理。
+ * <p>
+ * SimpleDateFormat 在 1582 年 10 月 15 日之前使用儒略历，年份不在 {@link #MIN_YEAR} 到 9999 之间时
+ * 同样交给通用实现，保证两者结果一致。
+ */
+final class FastTimeFormat {
+
+    static final int NONE = 0;
+    static final int DATE_TIME = 1;
+    static final int DATE = 2;
+    static final int ISO_8601 = 3;
+    static final int EPOCH_SECONDS = 4;
+
+    /** 解析结果 */
+    static final int PARSED = 0;
+    static final int FAILED = 1;
+    static final int UNSUPPORTED = 2;
+
+    /** 支持的最小年份，更早的日期 SimpleDateFormat 按儒略历计算 */
+    static final int MIN_YEAR = 1583;
+    /** 快速格式的最大长度，如 "2023-11-14T22:13:20+08:00" 及 "-9223372036854775" */
+    static final int MAX_LENGTH = 25;
+
+    static final long MILLIS_PER_DAY = 86_400_000L;
+    /** 0000-03-01 到 1970-01-01 的天数 */
+    private static final int DAYS_0000_TO_1970 = 719_468;
+    /** 400 年的天数 */
+    private static final int DAYS_PER_ERA = 146_097;
+    /** 纪元秒的最大位数，再多换算成毫秒时必然溢出 */
+    private static final int MAX_EPOCH_SECONDS_DIGITS = 16;
+
+    private static final ThreadLocal<char[]> buffers = new ThreadLocal<char[]>() {
+        @Override
+        protected char[] initialValue() {
+            return new char[MAX_LENGTH];
+        }
+    };
+
+    private FastTimeFormat() {
+    }
+
+    /**
+     * 判断格式是否有快速实现
+     *
+     * @param pattern 时间格式
+     * @return 格式类型，没有快速实现时为 {@link #NONE}
+     */
+    static int kindOf(String pattern) {
+        if (TimeUtil.DEFAULT_FORMAT.equals(pattern)) {
+            return DATE_TIME;
+        }
+        if (TimeUtil.DATE_FORMAT.equals(pattern)) {
+            return DATE;
+        }
+        if (TimeUtil.ISO_8601_FORMAT.equals(pattern)) {
+            return ISO_8601;
+        }
+        if (TimeUtil.EPOCH_SECONDS_FORMAT.equals(pattern)) {
+            return EPOCH_SECONDS;
+        }
+        return NONE;
+    }
+
+    /**
+     * 获取当前线程的格式化缓冲区，长度为 {@link #MAX_LENGTH}
+     */
+    static char[] buffer() {
+        return buffers.get();
+    }
+
+    /**
+     * 格式化到缓冲区开头
+     *
+     * @param buffer 长度至少为 {@link #MAX_LENGTH}
+     * @return 写入的字符数；年份超出 {@link #MIN_YEAR} 到 9999 时返回 -1，应改用通用实现
+     */
+    static int format(long timestamp, int kind, TimeZone zone, char[] buffer) {
+        if (kind == EPOCH_SECONDS) {
+            return writeLong(buffer, floorDiv(timestamp, 1000));
+        }
+        int offset = zone.getOffset(timestamp);
+        long local = timestamp + offset;
+        long epochDay = floorDiv(local, MILLIS_PER_DAY);
+        long date = civilDate(epochDay);
+        long year = yearOf(date);
+        if (year < MIN_YEAR || year > 9999) {
+            return -1;
+        }
+        int position = writeDate(buffer, (int) year, monthOf(date), dayOf(date));
+        if (kind == DATE) {
+            return position;
+        }
+        return writeTime(buffer, position, kind, (int) (local - epochDay * MILLIS_PER_DAY), offset);
+    }
+
+    /**
+     * 写入日期 "yyyy-MM-dd"，year 须在 {@link #MIN_YEAR} 到 9999 之间
+     *
+     * @return 写入的字符数
+     */
+    static int writeDate(char[] buffer, int year, int month, int day) {
+        int position = write4(buffer, 0, year);
+        buffer[position++] = '-';
+        position = write2(buffer, position, month);
+        buffer[position++] = '-';
+        return write2(buffer, position, day);
+    }
+
+    /**
+     * 在日期之后写入时间，{@link #DATE_TIME} 为 " HH:mm:ss"，{@link #ISO_8601} 为 "THH:mm:ss+hh:mm"
+     *
+     * @param millisOfDay 当地时间在当天的毫秒数
+     * @param offset      时区偏移（毫秒）
+     * @return 写入后的位置
+     */
+    static int writeTime(char[] buffer, int position, int kind, int millisOfDay, int offset) {
+        int secondOfDay = millisOfDay / 1000;
+        buffer[position++] = kind == ISO_8601 ? 'T' : ' ';
+        position = write2(buffer, position, secondOfDay / 3600);
+        buffer[position++] = ':';
+        position = write2(buffer, position, secondOfDay / 60 % 60);
+        buffer[position++] = ':';
+        position = write2(buffer, position, secondOfDay % 60);
+        if (kind == ISO_8601) {
+            position = writeOffset(buffer, position, offset);
+        }
+        return position;
+    }
+
+    /**
+     * 由纪元日换算公历年月日
+     *
+     * @return 打包的日期，用 {@link #yearOf}、{@link #monthOf}、{@link #dayOf} 读取
+     */
+    static long civilDate(long epochDay) {
+        // 3 月为一年的开始，闰日落在年末
+        long z = epochDay + DAYS_0000_TO_1970;
+        long era = floorDiv(z, DAYS_PER_ERA);
+        int dayOfEra = (int) (z - era * DAYS_PER_ERA);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int monthIndex = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * monthIndex + 2) / 5 + 1;
+        int month = monthIndex < 10 ? monthIndex + 3 : monthIndex - 9;
+        long year = era * 400 + yearOfEra + (month <= 2 ? 1 : 0);
+        return year << 9 | month << 5 | day;
+    }
+
+    static long yearOf(long date) {
+        return date >> 9;
+    }
+
+    static int monthOf(long date) {
+        return (int) (date >> 5) & 0xF;
+    }
+
+    static int dayOf(long date) {
+        return (int) date & 0x1F;
+    }
+
+    /**
+     * 严格解析 [start, end) 范围内的字符
+     *
+     * @param zone 没有时区偏移的格式按此时区解析
+     * @return {@link #PARSED}、{@link #FAILED}，年份早于 {@link #MIN_YEAR} 时为 {@link #UNSUPPORTED}，
+     * 应改用通用实现；成功及失败的结果写入 result
+     */
+    static int parse(CharSequence text, int start, int end, int kind, TimeZone zone, TimeParseResult result) {
+        if (kind == EPOCH_SECONDS) {
+            return parseEpochSeconds(text, start, end, result) ? PARSED : FAILED;
+        }
+        int position = start;
+        int year = readDigits(text, position, 4, end);
+        if (year < 0) {
+            return failed(result, ~year);
+        }
+        if (year < MIN_YEAR) {
+            return UNSUPPORTED;
+        }
+        position += 4;
+        if (!expect(text, position, end, '-')) {
+            return failed(result, position);
+        }
+        position++;
+        int month = readDigits(text, position, 2, end);
+        if (month < 0) {
+            return failed(result, ~month);
+        }
+        if (month < 1 || month > 12) {
+            return failed(result, position);
+        }
+        position += 2;
+        if (!expect(text, position, end, '-')) {
+            return failed(result, position);
+        }
+        position++;
+        int day = readDigits(text, position, 2, end);
+        if (day < 0) {
+            return failed(result, ~day);
+        }
+        if (day < 1 || day > lengthOfMonth(year, month)) {
+            return failed(result, position);
+        }
+        position += 2;
+        long local = epochDay(year, month, day) * MILLIS_PER_DAY;
+        if (kind == DATE) {
+            if (position != end) {
+                return failed(result, position);
+            }
+            return parsed(result, toUtc(local, zone));
+        }
+
+        if (!expect(text, position, end, kind == ISO_8601 ? 'T' : ' ')) {
+            return failed(result, position);
+        }
+        position++;
+        int hour = readDigits(text, position, 2, end);
+        if (hour < 0) {
+            return failed(result, ~hour);
+        }
+        if (hour > 23) {
+            return failed(result, position);
+        }
+        position += 2;
+        if (!expect(text, position, end, ':')) {
+            return failed(result, position);
+        }
+        position++;
+        int minute = readDigits(text, position, 2, end);
+        if (minute < 0) {
+            return failed(result, ~minute);
+        }
+        if (minute > 59) {
+            return failed(result, position);
+        }
+        position += 2;
+        if (!expect(text, position, end, ':')) {
+            return failed(result, position);
+        }
+        position++;
+        int second = readDigits(text, position, 2, end);
+        if (second < 0) {
+            return failed(result, ~second);
+        }
+        if (second > 59) {
+            return failed(result, position);
+        }
+        position += 2;
+        local += (hour * 3600 + minute * 60 + second) * 1000L;
+        if (kind == DATE_TIME) {
+            if (position != end) {
+                return failed(result, position);
+            }
+            return parsed(result, toUtc(local, zone));
+        }
+
+        // ISO 8601 允许秒的小数部分，精确到毫秒，多余的位数舍去
+        if (position < end && (text.charAt(position) == '.' || text.charAt(position) == ',')) {
+            position++;
+            int digits = 0;
+            int millis = 0;
+            while (position < end && isDigit(text.charAt(position)) && digits < 9) {
+                if (digits < 3) {
+                    millis = millis * 10 + (text.charAt(position) - '0');
+                }
+                digits++;
+                position++;
+            }
+            if (digits == 0) {
+                return failed(result, position);
+            }
+            for (int i = digits; i < 3; i++) {
+                millis *= 10;
+            }
+            local += millis;
+        }
+        if (position >= end) {
+            return failed(result, position);
+        }
+        char sign = text.charAt(position);
+        int offset;
+        if (sign == 'Z') {
+            position++;
+            offset = 0;
+        } else if (sign == '+' || sign == '-') {
+            position++;
+            int offsetHours = readDigits(text, position, 2, end);
+            if (offsetHours < 0) {
+                return failed(result, ~offsetHours);
+            }
+            if (offsetHours > 18) {
+                return failed(result, position);
+            }
+            position += 2;
+            int offsetMinutes = 0;
+            if (position < end) {
+                if (text.charAt(position) == ':') {
+                    position++;
+                }
+                offsetMinutes = readDigits(text, position, 2, end);
+                if (offsetMinutes < 0) {
+                    return failed(result, ~offsetMinutes);
+                }
+                if (offsetMinutes > 59) {
+                    return failed(result, position);
+                }
+                position += 2;
+            }
+            offset = (offsetHours * 60 + offsetMinutes) * 60_000;
+            if (sign == '-') {
+                offset = -offset;
+            }
+        } else {
+            return failed(result, position);
+        }
+        if (position != end) {
+            return failed(result, position);
+        }
+        return parsed(result, local - offset);
+    }
+
+    private static int parsed(TimeParseResult result, long millis) {
+        result.success(millis);
+        return PARSED;
+    }
+
+    private static int failed(TimeParseResult result, int errorIndex) {
+        result.failure(errorIndex);
+        return FAILED;
+    }
+
+    private static boolean parseEpochSeconds(CharSequence text, int start, int end, TimeParseResult result) {
+        int position = start;
+        boolean negative = position < end && text.charAt(position) == '-';
+        if (negative) {
+            position++;
+        }
+        int first = position;
+        long seconds = 0;
+        while (position < end && isDigit(text.charAt(position))) {
+            if (position - first == MAX_EPOCH_SECONDS_DIGITS) {
+                return result.failure(position);
+            }
+            seconds = seconds * 10 + (text.charAt(position) - '0');
+            position++;
+        }
+        if (position == first || position != end) {
+            return result.failure(position);
+        }
+        if (seconds > Long.MAX_VALUE / 1000) {
+            return result.failure(first);
+        }
+        return result.success((negative ? -seconds : seconds) * 1000);
+    }
+
+    /**
+     * 按时区把当地时间换算为时间戳
+     * <p>
+     * 与 SimpleDateFormat 一致：夏令时结束造成的重复时间取较晚的一个（标准时间），
+     * 夏令时开始跳过的时间按切换前的偏移顺延。前后一天内的偏移作为候选，
+     * 相邻两次切换间隔不到一天的时区可能有偏差。
+     */
+    static long toUtc(long local, TimeZone zone) {
+        int before = zone.getOffset(local - MILLIS_PER_DAY);
+        int after = zone.getOffset(local + MILLIS_PER_DAY);
+        int smaller = Math.min(before, after);
+        int larger = Math.max(before, after);
+        long later = local - smaller;
+        if (zone.getOffset(later) == smaller) {
+            return later;
+        }
+        long earlier = local - larger;
+        if (zone.getOffset(earlier) == larger) {
+            return earlier;
+        }
+        // 落在跳过的时间内
+        return later;
+    }
+
+    /**
+     * 由年月日换算纪元日，year 不小于 0
+     */
+    static long epochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = y / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return (long) era * DAYS_PER_ERA + dayOfEra - DAYS_0000_TO_1970;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * 读取固定位数的数字
+     *
+     * @return 数值；失败时返回出错位置按位取反的值（负数）
+     */
+    private static int readDigits(CharSequence text, int position, int count, int end) {
+        int value = 0;
+        for (int i = position; i < position + count; i++) {
+            if (i >= end || !isDigit(text.charAt(i))) {
+                return ~i;
+            }
+            value = value * 10 + (text.charAt(i) - '0');
+        }
+        return value;
+    }
+
+    private static boolean expect(CharSequence text, int position, int end, char c) {
+        return position < end && text.charAt(position) == c;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int write2(char[] buffer, int position, int value) {
+        buffer[position] = (char) ('0' + value / 10);
+        buffer[position + 1] = (char) ('0' + value % 10);
+        return position + 2;
+    }
+
+    private static int write4(char[] buffer, int position, int value) {
+        write2(buffer, position, value / 100);
+        return write2(buffer, position + 2, value % 100);
+    }
+
+    /**
+     * 写入时区偏移，如 "+08:00"，零偏移写入 "Z"，不足一分钟的部分舍去
+     */
+    static int writeOffset(char[] buffer, int position, int offsetMillis) {
+        if (offsetMillis == 0) {
+            buffer[position] = 'Z';
+            return position + 1;
+        }
+        buffer[position++] = offsetMillis < 0 ? '-' : '+';
+        int minutes = Math.abs(offsetMillis) / 60_000;
+        position = write2(buffer, position, minutes / 60);
+        buffer[position++] = ':';
+        return write2(buffer, position, minutes % 60);
+    }
+
+    private static int writeLong(char[] buffer, long value) {
+        int length = 0;
+        if (value < 0) {
+            buffer[length++] = '-';
+        }
+        int first = length;
+        long remaining = value;
+        do {
+            buffer[length++] = (char) ('0' + Math.abs(remaining % 10));
+            remaining /= 10;
+        } while (remaining != 0);
+        // 逆序写入后翻转
+        for (int i = first, j = length - 1; i < j; i++, j--) {
+            char c = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = c;
+        }
+        return length;
+    }
+
+    /**
+     * Math.floorDiv 从 API 24 开始才有
+     */
+    static long floorDiv(long x, long y) {
+        long q = x / y;
+        if ((x % y != 0) && ((x ^ y) < 0)) {
+            q--;
+        }
+        return q;
+    }
+}
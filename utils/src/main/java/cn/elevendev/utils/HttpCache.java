@@ -0,0 +1,305 @@
+package cn.elevendev.utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.CacheControl;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * HttpUtil 的响应内存缓存
+ * <p>
+ * 以 LRU 方式按字节数限制缓存大小，保存响应内容及 ETag / Last-Modified，
+ * 用于发送条件请求（If-None-Match / If-Modified-Since）。磁盘缓存由 OkHttp 的
+ * {@link okhttp3.Cache} 负责，见 {@link HttpUtil#setDiskCache}。
+ * <p>
+ * 带有 no-store 的响应不缓存；no-cache 的响应只用于条件请求；max-age 决定条目的有效期。
+ * 内存缓存只属于当前应用，按私有缓存处理，带有 private 的响应同样缓存。
+ */
+public class HttpCache {
+
+    /**
+     * 缓存策略
+     */
+    public enum Policy {
+        /**
+         * 按 HTTP 缓存语义请求：有内存缓存时发送条件请求，304 时复用缓存内容；
+         * 开启磁盘缓存时，磁盘缓存中未过期的响应可不访问网络直接返回。需要总是访问网络时使用 {@link #NO_CACHE}
+         */
+        DEFAULT,
+        /**
+         * 有效期内的缓存直接使用，不访问网络；已过期或带有 no-cache 时发送条件请求。
+         * 响应没有 max-age 时条目一直有效，直到被淘汰或清空
+         */
+        CACHE_FIRST,
+        /** 有缓存时立即回调缓存内容，同时在后台发送条件请求更新缓存 */
+        STALE_WHILE_REVALIDATE,
+        /** 不使用内存及磁盘缓存，总是发送完整请求，响应也不写入内存缓存 */
+        NO_CACHE
+    }
+
+    /** 默认内存缓存大小（字节） */
+    public static final long DEFAULT_MAX_SIZE = 2 * 1024 * 1024;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long maxSize;
+    private long size;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong conditionalHitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    HttpCache(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * 设置内存缓存大小，为 0 时关闭内存缓存
+     *
+     * @param maxSize 最大字节数
+     */
+    public synchronized void setMaxSize(long maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize < 0: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        trimToSize();
+    }
+
+    public synchronized long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * 获取当前内存缓存占用的字节数
+     *
+     * @return 字节数
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * 清空内存缓存
+     */
+    public synchronized void evictAll() {
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * 获取直接由缓存（内存或磁盘）返回、未访问网络的请求数
+     *
+     * @return 命中次数
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * 获取服务器返回 304、复用缓存内容的请求数
+     *
+     * @return 条件请求命中次数
+     */
+    public long getConditionalHitCount() {
+        return conditionalHitCount.get();
+    }
+
+    /**
+     * 获取需要从网络完整下载响应的请求数
+     *
+     * @return 未命中次数
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * 获取缓存命中率（包含条件请求命中）
+     *
+     * @return 命中率，范围 0~1，尚无请求时返回 0
+     */
+    public float getHitRate() {
+        long hits = hitCount.get() + conditionalHitCount.get();
+        long total = hits + missCount.get();
+        return total == 0 ? 0f : (float) hits / total;
+    }
+
+    /**
+     * 重置命中统计
+     */
+    public void resetStats() {
+        hitCount.set(0);
+        conditionalHitCount.set(0);
+        missCount.set(0);
+    }
+
+    void recordHit() {
+        hitCount.incrementAndGet();
+    }
+
+    void recordConditionalHit() {
+        conditionalHitCount.incrementAndGet();
+    }
+
+    void recordMiss() {
+        missCount.incrementAndGet();
+    }
+
+    /**
+     * 根据 OkHttp 响应的来源记录命中情况
+     *
+     * @param response 成功的响应
+     */
+    void recordResponse(Response response) {
+        if (response.networkResponse() == null) {
+            recordHit();
+        } else if (response.cacheResponse() != null) {
+            recordConditionalHit();
+        } else {
+            recordMiss();
+        }
+    }
+
+    synchronized Entry get(String key) {
+        return entries.get(key);
+    }
+
+    synchronized void put(String key, Entry entry) {
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            size -= previous.size();
+        }
+        if (entry.size() > maxSize) {
+            return;
+        }
+        entries.put(key, entry);
+        size += entry.size();
+        trimToSize();
+    }
+
+    synchronized void remove(String key) {
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            size -= previous.size();
+        }
+    }
+
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            size -= iterator.next().getValue().size();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * 为请求添加条件请求头
+     *
+     * @param request 原始请求
+     * @param entry   缓存条目
+     * @return 带有 If-None-Match / If-Modified-Since 的请求
+     */
+    static Request conditionalRequest(Request request, Entry entry) {
+        Request.Builder builder = request.newBuilder();
+        if (entry.etag != null) {
+            builder.header("If-None-Match", entry.etag);
+        }
+        if (entry.lastModified != null) {
+            builder.header("If-Modified-Since", entry.lastModified);
+        }
+        return builder.build();
+    }
+
+    /**
+     * 判断响应是否允许缓存，只排除 no-store；no-cache 的响应缓存后只用于条件请求
+     *
+     * @param response 响应
+     * @return 是否允许缓存
+     */
+    static boolean isCacheable(Response response) {
+        return !response.cacheControl().noStore() && !response.request().cacheControl().noStore();
+    }
+
+    /**
+     * 缓存条目
+     */
+    static final class Entry {
+
+        final String body;
+        final String etag;
+        final String lastModified;
+        final long receivedAtMillis;
+        /** 有效期截止时间，没有 max-age 时为 Long.MAX_VALUE */
+        final long expiresAtMillis;
+
+        Entry(String body, String etag, String lastModified, long receivedAtMillis, long expiresAtMillis) {
+            this.body = body;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.receivedAtMillis = receivedAtMillis;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        static Entry from(Response response, String body) {
+            long receivedAt = response.receivedResponseAtMillis();
+            long expiresAt = expiresAt(response.cacheControl(), receivedAt);
+            return new Entry(body, response.header("ETag"), response.header("Last-Modified"), receivedAt,
+                expiresAt != -1 ? expiresAt : Long.MAX_VALUE);
+        }
+
+        /**
+         * 按 Cache-Control 计算有效期截止时间
+         *
+         * @return 截止时间，没有 no-cache 及 max-age 时返回 -1
+         */
+        private static long expiresAt(CacheControl cacheControl, long receivedAt) {
+            if (cacheControl.noCache()) {
+                return receivedAt;
+            }
+            if (cacheControl.maxAgeSeconds() != -1) {
+                return receivedAt + cacheControl.maxAgeSeconds() * 1000L;
+            }
+            return -1;
+        }
+
+        /**
+         * 是否仍在有效期内，可以不经网络直接使用
+         */
+        boolean isFresh(long nowMillis) {
+            return nowMillis < expiresAtMillis;
+        }
+
+        /**
+         * 是否可以发送条件请求
+         */
+        boolean hasValidators() {
+            return etag != null || lastModified != null;
+        }
+
+        /**
+         * 服务器返回 304 后刷新条目的接收时间及校验信息
+         */
+        Entry revalidated(Response notModified) {
+            String newEtag = notModified.header("ETag");
+            String newLastModified = notModified.header("Last-Modified");
+            long receivedAt = notModified.receivedResponseAtMillis();
+            long expiresAt = expiresAt(notModified.cacheControl(), receivedAt);
+            if (expiresAt == -1) {
+                // 304 没有新的缓存头时沿用原来的有效时长
+                expiresAt = expiresAtMillis == Long.MAX_VALUE
+                    ? Long.MAX_VALUE
+                    : receivedAt + Math.max(0, expiresAtMillis - receivedAtMillis);
+            }
+            return new Entry(body, newEtag != null ? newEtag : etag,
+                newLastModified != null ? newLastModified : lastModified, receivedAt, expiresAt);
+        }
+
+        long size() {
+            return body.length() * 2L + 64;
+        }
+    }
+}
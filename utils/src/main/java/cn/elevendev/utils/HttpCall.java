@@ -0,0 +1,392 @@
+package cn.elevendev.utils;
+
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import okio.BufferedSource;
+
+/**
+ * 已提交请求的句柄，可修改排队中请求的优先级或取消请求
+ * <p>
+ * 取消后不再回调，排队中的请求移出队列，执行中的请求立即中断并断开连接。
+ * 可通过 {@link #setTag(Object)} 分组后用 {@link #cancelAll(Object)} 批量取消，
+ * 或通过 {@link #bindLifecycle(LifecycleOwner)} 在界面销毁时自动取消。
+ */
+public class HttpCall {
+
+    private static final Map<Object, Set<HttpCall>> taggedCalls = new HashMap<>();
+    private static final Set<LifecycleOwner> observedOwners = new HashSet<>();
+
+    private final HttpDispatcher dispatcher;
+    private final HttpCoalescer coalescer;
+    private HttpCoalescer.Flight flight;
+    private HttpDownloader downloader;
+    private ResumableUploader uploader;
+    private HttpUtil.HttpCallback callback;
+    private final List<Object> tags = new ArrayList<>(1);
+    private volatile boolean canceled;
+    private boolean finished;
+
+    /**
+     * @param dispatcher 请求所在的调度器
+     * @param coalescer  请求合并器
+     */
+    HttpCall(HttpDispatcher dispatcher, HttpCoalescer coalescer) {
+        this.dispatcher = dispatcher;
+        this.coalescer = coalescer;
+    }
+
+    /**
+     * 包装调用方的回调，取消后不再回调，结束后移出分组
+     * <p>
+     * 结果回调切换到 executor 中执行；进度回调不切换线程，由 {@link ProgressReporter} 投递。
+     * 没有回调时同样包装，结果直接丢弃，请求结束时仍会移出分组。
+     *
+     * @param callback 调用方的回调，可为 null
+     * @param executor 执行结果回调的线程
+     * @return 包装后的回调
+     */
+    HttpUtil.HttpCallback wrap(HttpUtil.HttpCallback callback, final Executor executor) {
+        final HttpUtil.HttpCallback target = callback != null ? callback : new HttpUtil.HttpCallback() {
+            @Override
+            public void onSuccess(String response) {
+            }
+        };
+        this.callback = new HttpUtil.HttpCallback() {
+            @Override
+            public void onSuccess(final String response) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        finish();
+                        if (!canceled) {
+                            target.onSuccess(response);
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(final String errorMessage) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        finish();
+                        if (!canceled) {
+                            target.onFailure(errorMessage);
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void onProgress(int progress) {
+                if (!canceled) {
+                    target.onProgress(progress);
+                }
+            }
+
+            @Override
+            public void onProgress(long bytesRead, long contentLength, long bytesPerSecond, long etaMillis) {
+                if (!canceled) {
+                    target.onProgress(bytesRead, contentLength, bytesPerSecond, etaMillis);
+                }
+            }
+        };
+        return this.callback;
+    }
+
+    /**
+     * 包装流式请求的回调，取消后不再回调，结束后移出分组
+     *
+     * @param callback 调用方的回调
+     * @param executor 执行失败回调的线程，响应体始终在请求线程中读取
+     * @return 包装后的回调
+     */
+    HttpUtil.StreamCallback wrapStream(final HttpUtil.StreamCallback callback, final Executor executor) {
+        return new HttpUtil.StreamCallback() {
+            @Override
+            public void onResponse(BufferedSource source, long contentLength) throws IOException {
+                if (canceled) {
+                    return;
+                }
+                try {
+                    callback.onResponse(source, contentLength);
+                } finally {
+                    finish();
+                }
+            }
+
+            @Override
+            public void onFailure(final String errorMessage) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        finish();
+                        if (!canceled) {
+                            callback.onFailure(errorMessage);
+                        }
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * 包装解码请求的回调，取消后不再回调，结束后移出分组
+     *
+     * @param callback 调用方的回调
+     * @param executor 执行结果回调的线程
+     * @param <T>      解码结果的类型
+     * @return 包装后的回调
+     */
+    <T> HttpUtil.TypedCallback<T> wrapTyped(final HttpUtil.TypedCallback<T> callback, final Executor executor) {
+        return new HttpUtil.TypedCallback<T>() {
+            @Override
+            public void onSuccess(final T result) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        finish();
+                        if (!canceled) {
+                            callback.onSuccess(result);
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(final String errorMessage) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        finish();
+                        if (!canceled) {
+                            callback.onFailure(errorMessage);
+                        }
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * 关联实际发出的请求
+     */
+    void attach(HttpCoalescer.Flight flight) {
+        this.flight = flight;
+    }
+
+    /**
+     * 关联文件下载
+     */
+    void attach(HttpDownloader downloader) {
+        this.downloader = downloader;
+    }
+
+    /**
+     * 关联分块上传
+     */
+    void attach(ResumableUploader uploader) {
+        this.uploader = uploader;
+    }
+
+    /**
+     * 获取请求的优先级
+     *
+     * @return 优先级，未发出网络请求或为文件下载时返回 null
+     */
+    public HttpDispatcher.Priority getPriority() {
+        return flight != null ? flight.task.getPriority() : null;
+    }
+
+    /**
+     * 获取下载的当前状态
+     *
+     * @return 状态快照，不是文件下载或下载已结束时返回 null
+     */
+    public DownloadInfo getDownloadInfo() {
+        if (downloader == null) {
+            return null;
+        }
+        for (DownloadInfo info : downloader.manager().getDownloads()) {
+            if (info.getDestinationPath().equals(downloader.destinationFile().getPath())) {
+                return info;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 修改请求的优先级，请求仍在排队时按新的优先级调度。
+     * 合并的请求共享同一个网络请求，修改会影响所有调用方。
+     *
+     * @param priority 优先级
+     */
+    public void setPriority(HttpDispatcher.Priority priority) {
+        if (flight != null && !canceled) {
+            dispatcher.setPriority(flight.task, priority);
+        }
+    }
+
+    /**
+     * 取消请求，取消后不再回调。
+     * 合并的请求只有在所有调用方都取消后才会移出队列或中断；
+     * 取消的下载保留已下载的部分，再次下载时继续；取消的分块上传保留会话，再次上传时继续。
+     */
+    public void cancel() {
+        synchronized (this) {
+            if (canceled) {
+                return;
+            }
+            canceled = true;
+        }
+        finish();
+        if (flight != null && coalescer.detach(flight, callback)) {
+            if (dispatcher.cancel(flight.task)) {
+                coalescer.complete(flight);
+            } else {
+                // 已在执行，中断网络请求，连接随之释放
+                flight.cancel();
+            }
+        }
+        if (downloader != null) {
+            downloader.manager().cancel(downloader, callback);
+        }
+        if (uploader != null) {
+            uploader.cancel();
+        }
+    }
+
+    /**
+     * 是否已取消
+     *
+     * @return 是否已取消
+     */
+    public boolean isCanceled() {
+        return canceled;
+    }
+
+    /**
+     * 为请求添加标签，之后可通过 {@link #cancelAll(Object)} 取消同一标签的所有请求。
+     * 请求结束或取消后自动移除，不会一直持有标签。
+     *
+     * @param tag 标签，如 Activity、Fragment 或任意对象
+     * @return 当前对象
+     */
+    public HttpCall setTag(Object tag) {
+        synchronized (taggedCalls) {
+            if (finished) {
+                return this;
+            }
+            Set<HttpCall> calls = taggedCalls.get(tag);
+            if (calls == null) {
+                calls = new LinkedHashSet<>();
+                taggedCalls.put(tag, calls);
+            }
+            calls.add(this);
+            tags.add(tag);
+        }
+        return this;
+    }
+
+    /**
+     * 绑定到界面的生命周期，界面销毁（ON_DESTROY）时自动取消请求
+     *
+     * @param owner Activity、Fragment 等 LifecycleOwner
+     * @return 当前对象
+     */
+    public HttpCall bindLifecycle(final LifecycleOwner owner) {
+        setTag(owner);
+        if (MainThreadExecutor.isMainThread()) {
+            observe(owner);
+        } else {
+            // Lifecycle 只能在主线程添加观察者
+            HttpUtil.MAIN_THREAD.execute(new Runnable() {
+                @Override
+                public void run() {
+                    observe(owner);
+                }
+            });
+        }
+        return this;
+    }
+
+    /**
+     * 请求结束或取消，移出所有分组
+     */
+    private void finish() {
+        synchronized (taggedCalls) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            for (Object tag : tags) {
+                Set<HttpCall> calls = taggedCalls.get(tag);
+                if (calls != null && calls.remove(this) && calls.isEmpty()) {
+                    taggedCalls.remove(tag);
+                }
+            }
+            tags.clear();
+        }
+    }
+
+    /**
+     * 取消指定标签的所有请求
+     *
+     * @param tag 标签
+     */
+    public static void cancelAll(Object tag) {
+        List<HttpCall> calls;
+        synchronized (taggedCalls) {
+            Set<HttpCall> tagged = taggedCalls.remove(tag);
+            if (tagged == null) {
+                return;
+            }
+            calls = new ArrayList<>(tagged);
+        }
+        for (HttpCall call : calls) {
+            call.cancel();
+        }
+    }
+
+    /**
+     * 在主线程为 owner 注册一次销毁监听
+     */
+    private static void observe(LifecycleOwner owner) {
+        Lifecycle lifecycle = owner.getLifecycle();
+        if (lifecycle.getCurrentState() == Lifecycle.State.DESTROYED) {
+            cancelAll(owner);
+            return;
+        }
+        synchronized (taggedCalls) {
+            if (!observedOwners.add(owner)) {
+                return;
+            }
+        }
+        lifecycle.addObserver(new LifecycleEventObserver() {
+            @Override
+            public void onStateChanged(LifecycleOwner source, Lifecycle.Event event) {
+                if (event != Lifecycle.Event.ON_DESTROY) {
+                    return;
+                }
+                source.getLifecycle().removeObserver(this);
+                synchronized (taggedCalls) {
+                    observedOwners.remove(source);
+                }
+                cancelAll(source);
+            }
+        });
+    }
+}
@@ -0,0 +1,411 @@
+package cn.elevendev.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+
+/**
+ * 命名的 HTTP 客户端，通过 {@link HttpUtil#getClient(String)} 获取
+ * <p>
+ * 每个客户端有各自的基础地址、超时、整个请求的截止时间及拦截器，用于访问多个后端，
+ * 或为统计上报等不重要的接口设置较短的超时，避免长时间占用线程。
+ * 所有客户端共享连接池、OkHttp 的线程池、DNS 缓存、磁盘缓存以及 HttpUtil 的调度器、熔断器和耗时统计。
+ * <p>
+ * HttpUtil 的静态方法使用名为 {@link #DEFAULT_NAME} 的默认客户端。
+ * 文件下载及分块上传使用完整地址，不拼接基础地址，但同样使用该客户端的超时及拦截器。
+ * 离线队列中的请求重发时使用默认客户端，不经过命名客户端的拦截器。
+ */
+public class HttpClient {
+
+    /** 默认客户端的名称 */
+    public static final String DEFAULT_NAME = "default";
+
+    private final String name;
+    private volatile String baseUrl = "";
+    private long connectTimeoutMillis = -1;
+    private long readTimeoutMillis = -1;
+    private long writeTimeoutMillis = -1;
+    private long callTimeoutMillis = -1;
+    private final List<Interceptor> interceptors = new ArrayList<>();
+    private final List<Interceptor> networkInterceptors = new ArrayList<>();
+    private OkHttpClient okHttpClient;
+    private OkHttpClient builtFrom;
+
+    HttpClient(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 设置基础地址，请求地址为基础地址 + API 端点
+     *
+     * @param url 基础地址，如 "https://api.example.com/v1/"
+     * @return 当前对象
+     */
+    public HttpClient setUrl(String url) {
+        if (!url.endsWith("/")) {
+            url += "/";
+        }
+        baseUrl = url;
+        return this;
+    }
+
+    public String getUrl() {
+        return baseUrl;
+    }
+
+    /**
+     * 设置连接超时，未设置时与默认客户端相同（60 秒）
+     *
+     * @param timeout 超时，为 0 时不限制
+     * @param unit    时间单位
+     * @return 当前对象
+     */
+    public synchronized HttpClient setConnectTimeout(long timeout, TimeUnit unit) {
+        connectTimeoutMillis = unit.toMillis(timeout);
+        okHttpClient = null;
+        return this;
+    }
+
+    /**
+     * 设置读取超时，即两次读取到数据之间的最长间隔，未设置时与默认客户端相同（60 秒）
+     *
+     * @param timeout 超时，为 0 时不限制
+     * @param unit    时间单位
+     * @return 当前对象
+     */
+    public synchronized HttpClient setReadTimeout(long timeout, TimeUnit unit) {
+        readTimeoutMillis = unit.toMillis(timeout);
+        okHttpClient = null;
+        return this;
+    }
+
+    /**
+     * 设置写入超时，即两次写出数据之间的最长间隔，未设置时与默认客户端相同（60 秒）
+     *
+     * @param timeout 超时，为 0 时不限制
+     * @param unit    时间单位
+     * @return 当前对象
+     */
+    public synchronized HttpClient setWriteTimeout(long timeout, TimeUnit unit) {
+        writeTimeoutMillis = unit.toMillis(timeout);
+        okHttpClient = null;
+        return this;
+    }
+
+    /**
+     * 设置整个请求的截止时间，包括 DNS、连接、发送请求及读取响应，超过后请求失败。
+     * 每次重试单独计时。未设置时与默认客户端相同（不限制）。
+     *
+     * @param timeout 截止时间，为 0 时不限制
+     * @param unit    时间单位
+     * @return 当前对象
+     */
+    public synchronized HttpClient setCallTimeout(long timeout, TimeUnit unit) {
+        callTimeoutMillis = unit.toMillis(timeout);
+        okHttpClient = null;
+        return this;
+    }
+
+    /**
+     * 添加应用拦截器，如添加鉴权请求头，在默认客户端的拦截器之后执行
+     *
+     * @param interceptor 拦截器
+     * @return 当前对象
+     */
+    public synchronized HttpClient addInterceptor(Interceptor interceptor) {
+        interceptors.add(interceptor);
+        okHttpClient = null;
+        return this;
+    }
+
+    /**
+     * 添加网络拦截器，每次实际发出请求（包括重定向）时执行
+     *
+     * @param interceptor 拦截器
+     * @return 当前对象
+     */
+    public synchronized HttpClient addNetworkInterceptor(Interceptor interceptor) {
+        networkInterceptors.add(interceptor);
+        okHttpClient = null;
+        return this;
+    }
+
+    /**
+     * 获取该客户端使用的 OkHttpClient，设置变化或默认客户端重建（如开启磁盘缓存）后重新生成
+     */
+    synchronized OkHttpClient okHttpClient() {
+        OkHttpClient base = HttpUtil.client();
+        if (okHttpClient == null || builtFrom != base) {
+            if (connectTimeoutMillis < 0 && readTimeoutMillis < 0 && writeTimeoutMillis < 0
+                && callTimeoutMillis < 0 && interceptors.isEmpty() && networkInterceptors.isEmpty()) {
+                okHttpClient = base;
+            } else {
+                // newBuilder 共享连接池、线程池、DNS 及磁盘缓存
+                OkHttpClient.Builder builder = base.newBuilder();
+                if (connectTimeoutMillis >= 0) {
+                    builder.connectTimeout(connectTimeoutMillis, TimeUnit.MILLISECONDS);
+                }
+                if (readTimeoutMillis >= 0) {
+                    builder.readTimeout(readTimeoutMillis, TimeUnit.MILLISECONDS);
+                }
+                if (writeTimeoutMillis >= 0) {
+                    builder.writeTimeout(writeTimeoutMillis, TimeUnit.MILLISECONDS);
+                }
+                if (callTimeoutMillis >= 0) {
+                    builder.callTimeout(callTimeoutMillis, TimeUnit.MILLISECONDS);
+                }
+                for (Interceptor interceptor : interceptors) {
+                    builder.addInterceptor(interceptor);
+                }
+                for (Interceptor interceptor : networkInterceptors) {
+                    builder.addNetworkInterceptor(interceptor);
+                }
+                okHttpClient = builder.build();
+            }
+            builtFrom = base;
+        }
+        return okHttpClient;
+    }
+
+    /**
+     * 内存缓存及请求合并的键前缀，不同客户端的拦截器可能改变请求，不能共享结果
+     */
+    String scope() {
+        return DEFAULT_NAME.equals(name) ? "" : name + '\n';
+    }
+
+    String url(String api) {
+        return baseUrl + api;
+    }
+
+    /**
+     * 发送 GET 请求
+     *
+     * @param api      请求的 API 端点
+     * @param callback 请求结果的回调接口（在默认回调线程回调，默认为主线程）
+     * @return 请求句柄，可取消请求
+     * @see HttpUtil#get(String, HttpUtil.HttpCallback)
+     */
+    public HttpCall get(String api, HttpUtil.HttpCallback callback) {
+        return get(api, new RequestOptions(), callback);
+    }
+
+    /**
+     * 按指定选项发送 GET 请求
+     *
+     * @param api      请求的 API 端点
+     * @param options  请求选项，如缓存策略、优先级、重试策略
+     * @param callback 请求结果的回调接口（在选项指定的回调线程回调，未指定时使用默认回调线程）
+     * @return 请求句柄，可修改优先级或取消
+     */
+    public HttpCall get(String api, RequestOptions options, HttpUtil.HttpCallback callback) {
+        return HttpUtil.enqueue(this, url(api), "GET", null, options, HttpUtil.executorOf(options), callback);
+    }
+
+    /**
+     * 按指定选项发送 GET 请求，在请求线程中用解码器直接从响应流解码，回调已解码的对象
+     *
+     * @param api      请求的 API 端点
+     * @param decoder  响应解码器，如 {@link JsonResponseDecoder}
+     * @param options  请求选项，如优先级、重试策略、离线队列、回调线程、标签
+     * @param callback 解码结果的回调接口
+     * @param <T>      解码结果的类型
+     * @return 请求句柄，可取消请求
+     */
+    public <T> HttpCall get(String api, ResponseDecoder<T> decoder, RequestOptions options,
+                            HttpUtil.TypedCallback<T> callback) {
+        return HttpUtil.enqueueTyped(this, url(api), "GET", null, decoder, options, callback);
+    }
+
+    /**
+     * 发送 POST 请求
+     *
+     * @param api      请求的 API 端点
+     * @param params   提交的参数
+     * @param callback 请求结果的回调接口（在默认回调线程回调，默认为主线程）
+     * @return 请求句柄，可取消请求
+     */
+    public HttpCall post(String api, Map<String, String> params, HttpUtil.HttpCallback callback) {
+        return post(api, params, new RequestOptions(), callback);
+    }
+
+    /**
+     * 按指定选项发送 POST 请求
+     *
+     * @param api      请求的 API 端点
+     * @param params   提交的参数
+     * @param options  请求选项，如优先级、重试策略
+     * @param callback 请求结果的回调接口（在选项指定的回调线程回调，未指定时使用默认回调线程）
+     * @return 请求句柄，可修改优先级或取消
+     */
+    public HttpCall post(String api, Map<String, String> params, RequestOptions options,
+                         HttpUtil.HttpCallback callback) {
+        return HttpUtil.enqueue(this, url(api), "POST", HttpUtil.formBody(params), options,
+            HttpUtil.executorOf(options), callback);
+    }
+
+    /**
+     * 按指定选项发送 POST 请求，在请求线程中用解码器直接从响应流解码，回调已解码的对象
+     *
+     * @param api      请求的 API 端点
+     * @param params   提交的参数
+     * @param decoder  响应解码器，如 {@link JsonResponseDecoder}
+     * @param options  请求选项，如优先级、重试策略、离线队列、回调线程、标签
+     * @param callback 解码结果的回调接口
+     * @param <T>      解码结果的类型
+     * @return 请求句柄，可取消请求
+     */
+    public <T> HttpCall post(String api, Map<String, String> params, ResponseDecoder<T> decoder,
+                             RequestOptions options, HttpUtil.TypedCallback<T> callback) {
+        return HttpUtil.enqueueTyped(this, url(api), "POST", HttpUtil.formBody(params), decoder, options, callback);
+    }
+
+    /**
+     * 按指定选项用编码器将对象编码为请求体发送 POST 请求
+     *
+     * @param api      请求的 API 端点
+     * @param body     被编码的对象
+     * @param codec    请求体编码器，如 {@link JsonRequestCodec}
+     * @param options  请求选项，如压缩方式、优先级、重试策略
+     * @param callback 请求结果的回调接口（在选项指定的回调线程回调，未指定时使用默认回调线程）
+     * @param <T>      被编码对象的类型
+     * @return 请求句柄，可修改优先级或取消
+     */
+    public <T> HttpCall post(String api, T body, RequestCodec<T> codec, RequestOptions options,
+                             HttpUtil.HttpCallback callback) {
+        return HttpUtil.enqueue(this, url(api), "POST", new CodecRequestBody<>(body, codec), options,
+            HttpUtil.executorOf(options), callback);
+    }
+
+    /**
+     * 按指定选项以 multipart/form-data 上传文件及字段
+     *
+     * @param api      请求的 API 端点
+     * @param form     表单
+     * @param options  请求选项，如优先级、重试策略、回调线程
+     * @param callback 上传进度及结果的回调接口
+     * @return 请求句柄，可取消上传
+     */
+    public HttpCall upload(String api, MultipartForm form, RequestOptions options, HttpUtil.HttpCallback callback) {
+        return HttpUtil.enqueue(this, url(api), "POST", form.build(), options, HttpUtil.executorOf(options),
+            callback);
+    }
+
+    /**
+     * 按指定选项以流的方式发送 GET 请求，响应体不会整体读入内存
+     *
+     * @param api      请求的 API 端点
+     * @param options  请求选项，如优先级、重试策略、回调线程
+     * @param callback 流式回调接口（onResponse 在后台线程回调，onFailure 在选项指定的回调线程回调）
+     * @return 请求句柄，可取消请求
+     * @see HttpUtil#getStream(String, HttpUtil.StreamCallback)
+     */
+    public HttpCall getStream(String api, RequestOptions options, HttpUtil.StreamCallback callback) {
+        return HttpUtil.enqueueStream(this, url(api), "GET", null, options, callback);
+    }
+
+    /**
+     * 按指定选项以流的方式发送 POST 请求，响应体不会整体读入内存
+     *
+     * @param api      请求的 API 端点
+     * @param params   提交的参数
+     * @param options  请求选项，如优先级、重试策略、回调线程
+     * @param callback 流式回调接口（onResponse 在后台线程回调，onFailure 在选项指定的回调线程回调）
+     * @return 请求句柄，可取消请求
+     */
+    public HttpCall postStream(String api, Map<String, String> params, RequestOptions options,
+                               HttpUtil.StreamCallback callback) {
+        return HttpUtil.enqueueStream(this, url(api), "POST", HttpUtil.formBody(params), options, callback);
+    }
+
+    /**
+     * 下载文件并保存到指定路径
+     *
+     * @param url             文件的完整下载链接
+     * @param destinationPath 文件保存的目标路径
+     * @param options         下载选项
+     * @param callback        下载进度及结果的回调接口
+     * @return 下载句柄，可取消下载，已下载的部分保留用于续传
+     * @see HttpUtil#downloadFile(String, String, DownloadOptions, HttpUtil.HttpCallback)
+     */
+    public HttpCall downloadFile(String url, String destinationPath, DownloadOptions options,
+                                 HttpUtil.HttpCallback callback) {
+        return HttpUtil.enqueueDownload(this, url, destinationPath, options, callback);
+    }
+
+    /**
+     * 按可续传上传协议分块上传文件
+     *
+     * @param url      创建上传会话的完整地址
+     * @param file     要上传的文件，上传过程中不能修改
+     * @param options  上传选项
+     * @param callback 上传进度及结果的回调接口
+     * @return 上传句柄，可取消上传，会话保留用于续传
+     * @see HttpUtil#uploadFile(String, File, UploadOptions, HttpUtil.HttpCallback)
+     */
+    public HttpCall uploadFile(String url, File file, UploadOptions options, HttpUtil.HttpCallback callback) {
+        return HttpUtil.enqueueUpload(this, url, file, options, callback);
+    }
+
+    /**
+     * 发送 GET 请求并返回 Future，结果在请求线程中写入，不经过主线程
+     *
+     * @param api     请求的 API 端点
+     * @param options 请求选项，回调线程设置不生效
+     * @return 请求结果
+     */
+    public HttpFuture getFuture(String api, RequestOptions options) {
+        HttpFuture future = new HttpFuture();
+        future.setCall(HttpUtil.enqueue(this, url(api), "GET", null, options, HttpUtil.WORKER_THREAD,
+            future.callback()));
+        return future;
+    }
+
+    /**
+     * 发送 POST 请求并返回 Future，结果在请求线程中写入，不经过主线程
+     *
+     * @param api     请求的 API 端点
+     * @param params  提交的参数
+     * @param options 请求选项，回调线程设置不生效
+     * @return 请求结果
+     */
+    public HttpFuture postFuture(String api, Map<String, String> params, RequestOptions options) {
+        HttpFuture future = new HttpFuture();
+        future.setCall(HttpUtil.enqueue(this, url(api), "POST", HttpUtil.formBody(params), options,
+            HttpUtil.WORKER_THREAD, future.callback()));
+        return future;
+    }
+
+    /**
+     * 同步发送 GET 请求，阻塞当前线程直到请求结束，不能在主线程调用
+     *
+     * @param api 请求的 API 端点
+     * @return 响应内容
+     * @throws IOException 请求失败，异常信息与 onFailure 中的错误信息相同
+     */
+    public String getSync(String api) throws IOException {
+        return getFuture(api, new RequestOptions()).await();
+    }
+
+    /**
+     * 同步发送 POST 请求，阻塞当前线程直到请求结束，不能在主线程调用
+     *
+     * @param api    请求的 API 端点
+     * @param params 提交的参数
+     * @return 响应内容
+     * @throws IOException 请求失败，异常信息与 onFailure 中的错误信息相同
+     */
+    public String postSync(String api, Map<String, String> params) throws IOException {
+        return postFuture(api, params, new RequestOptions()).await();
+    }
+}
@@ -0,0 +1,128 @@
+package cn.elevendev.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.Call;
+import okhttp3.Request;
+
+/**
+ * 合并相同的进行中 GET 请求
+ * <p>
+ * 以请求方法、完整地址及请求头作为键，同一时间只有第一个请求真正发出，
+ * 之后到达的相同请求挂在其上，完成后所有回调收到同一个结果。
+ */
+final class HttpCoalescer {
+
+    private final Map<String, Flight> inFlightCalls = new HashMap<>();
+
+    /**
+     * 生成请求的合并键
+     *
+     * @param request 请求
+     * @return 合并键
+     */
+    static String key(Request request) {
+        return request.method() + ' ' + request.url() + '\n' + request.headers();
+    }
+
+    /**
+     * 加入请求
+     *
+     * @param flight   新请求，键为 null 时不参与合并
+     * @param callback 回调，为 null 时只等待结果而不接收回调
+     * @return 回调实际挂上的请求，与传入的不同时说明已合并到进行中的请求，调用方不应再执行
+     */
+    synchronized Flight join(Flight flight, HttpUtil.HttpCallback callback) {
+        if (flight.key != null) {
+            Flight existing = inFlightCalls.get(flight.key);
+            if (existing != null) {
+                if (callback != null) {
+                    existing.callbacks.add(callback);
+                }
+                return existing;
+            }
+            inFlightCalls.put(flight.key, flight);
+        }
+        if (callback != null) {
+            flight.callbacks.add(callback);
+        }
+        return flight;
+    }
+
+    /**
+     * 请求结束，移除并返回挂在该请求上的全部回调
+     *
+     * @param flight 请求
+     * @return 回调列表
+     */
+    synchronized List<HttpUtil.HttpCallback> complete(Flight flight) {
+        if (flight.key != null && inFlightCalls.get(flight.key) == flight) {
+            inFlightCalls.remove(flight.key);
+        }
+        flight.completed = true;
+        List<HttpUtil.HttpCallback> callbacks = new ArrayList<>(flight.callbacks);
+        flight.callbacks.clear();
+        return callbacks;
+    }
+
+    /**
+     * 移除某个调用方的回调
+     *
+     * @param flight   请求
+     * @param callback 回调
+     * @return 请求尚未结束且已没有任何调用方时返回 true，此时可以取消该请求
+     */
+    synchronized boolean detach(Flight flight, HttpUtil.HttpCallback callback) {
+        flight.callbacks.remove(callback);
+        if (flight.completed || !flight.callbacks.isEmpty()) {
+            return false;
+        }
+        // 即将取消，之后相同的请求重新发出，不再挂到这个请求上
+        if (flight.key != null && inFlightCalls.get(flight.key) == flight) {
+            inFlightCalls.remove(flight.key);
+        }
+        return true;
+    }
+
+    /**
+     * 一次实际发出的请求及挂在其上的回调
+     */
+    static final class Flight {
+
+        final String key;
+        HttpDispatcher.Task task;
+        private final List<HttpUtil.HttpCallback> callbacks = new ArrayList<>(1);
+        private boolean completed;
+        private Call call;
+        private boolean canceled;
+
+        Flight(String key) {
+            this.key = key;
+        }
+
+        /**
+         * 记录正在执行的网络请求，已取消时立即中断
+         *
+         * @param call 网络请求
+         */
+        synchronized void setCall(Call call) {
+            this.call = call;
+            if (canceled) {
+                call.cancel();
+            }
+        }
+
+        /**
+         * 中断正在执行的网络请求，之后的重试也会立即中断
+         */
+        synchronized void cancel() {
+            canceled = true;
+            if (call != null) {
+                call.cancel();
+            }
+        }
+    }
+}
@@ -0,0 +1,404 @@
+package cn.elevendev.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * HttpUtil 的请求调度器
+ * <p>
+ * 所有异步请求共享同一个线程池，并限制总并发数、单个主机的并发数以及排队数量，
+ * 避免每次请求都新建线程。排队的请求按优先级从高到低执行，同一优先级内先进先出；
+ * 有前台请求（{@link Priority#IMMEDIATE}、{@link Priority#NORMAL}）进行或排队时，
+ * 后台请求的并发数受 maxBackgroundRequests 限制，空闲请求暂不开始。
+ */
+public class HttpDispatcher {
+
+    /**
+     * 请求优先级，从高到低
+     */
+    public enum Priority {
+        /** 阻塞当前界面、用户正在等待的请求 */
+        IMMEDIATE,
+        /** 普通请求 */
+        NORMAL,
+        /** 预加载等后台请求 */
+        BACKGROUND,
+        /** 统计上报等可以延后的请求，只在没有前台请求时执行 */
+        IDLE
+    }
+
+    /** 默认最大并发请求数 */
+    public static final int DEFAULT_MAX_REQUESTS = 16;
+    /** 默认单个主机最大并发请求数 */
+    public static final int DEFAULT_MAX_REQUESTS_PER_HOST = 5;
+    /** 默认最大排队请求数 */
+    public static final int DEFAULT_MAX_QUEUED_REQUESTS = 256;
+    /** 默认有前台请求时后台请求的最大并发数 */
+    public static final int DEFAULT_MAX_BACKGROUND_REQUESTS = 2;
+
+    private int maxRequests = DEFAULT_MAX_REQUESTS;
+    private int maxRequestsPerHost = DEFAULT_MAX_REQUESTS_PER_HOST;
+    private int maxQueuedRequests = DEFAULT_MAX_QUEUED_REQUESTS;
+    private int maxBackgroundRequests = DEFAULT_MAX_BACKGROUND_REQUESTS;
+
+    private ExecutorService executorService;
+    private ScheduledExecutorService scheduler;
+    private final ArrayDeque<Task> readyTasks = new ArrayDeque<>();
+    private final ArrayDeque<Task> runningTasks = new ArrayDeque<>();
+    private final Set<Task> delayedTasks = new HashSet<>();
+
+    public HttpDispatcher() {
+    }
+
+    /**
+     * 使用自定义线程池创建调度器
+     *
+     * @param executorService 执行请求的线程池，需能同时运行 maxRequests 个任务
+     */
+    public HttpDispatcher(ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+
+    /**
+     * 获取执行请求的线程池，线程数受 maxRequests 限制，空闲线程 60 秒后回收
+     *
+     * @return 线程池
+     */
+    public synchronized ExecutorService getExecutorService() {
+        if (executorService == null) {
+            executorService = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "HttpUtil Dispatcher #" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        }
+        return executorService;
+    }
+
+    /**
+     * 设置最大并发请求数
+     *
+     * @param maxRequests 最大并发请求数
+     */
+    public void setMaxRequests(int maxRequests) {
+        if (maxRequests < 1) {
+            throw new IllegalArgumentException("max < 1: " + maxRequests);
+        }
+        synchronized (this) {
+            this.maxRequests = maxRequests;
+        }
+        promoteAndExecute();
+    }
+
+    public synchronized int getMaxRequests() {
+        return maxRequests;
+    }
+
+    /**
+     * 设置单个主机最大并发请求数
+     *
+     * @param maxRequestsPerHost 单个主机最大并发请求数
+     */
+    public void setMaxRequestsPerHost(int maxRequestsPerHost) {
+        if (maxRequestsPerHost < 1) {
+            throw new IllegalArgumentException("max < 1: " + maxRequestsPerHost);
+        }
+        synchronized (this) {
+            this.maxRequestsPerHost = maxRequestsPerHost;
+        }
+        promoteAndExecute();
+    }
+
+    public synchronized int getMaxRequestsPerHost() {
+        return maxRequestsPerHost;
+    }
+
+    /**
+     * 设置最大排队请求数，队列已满时新请求直接失败
+     *
+     * @param maxQueuedRequests 最大排队请求数
+     */
+    public synchronized void setMaxQueuedRequests(int maxQueuedRequests) {
+        if (maxQueuedRequests < 0) {
+            throw new IllegalArgumentException("max < 0: " + maxQueuedRequests);
+        }
+        this.maxQueuedRequests = maxQueuedRequests;
+    }
+
+    public synchronized int getMaxQueuedRequests() {
+        return maxQueuedRequests;
+    }
+
+    /**
+     * 设置有前台请求进行或排队时，后台请求的最大并发数
+     *
+     * @param maxBackgroundRequests 后台请求最大并发数
+     */
+    public void setMaxBackgroundRequests(int maxBackgroundRequests) {
+        if (maxBackgroundRequests < 0) {
+            throw new IllegalArgumentException("max < 0: " + maxBackgroundRequests);
+        }
+        synchronized (this) {
+            this.maxBackgroundRequests = maxBackgroundRequests;
+        }
+        promoteAndExecute();
+    }
+
+    public synchronized int getMaxBackgroundRequests() {
+        return maxBackgroundRequests;
+    }
+
+    /**
+     * 获取排队中的请求数
+     *
+     * @return 排队中的请求数
+     */
+    public synchronized int queuedCount() {
+        return readyTasks.size();
+    }
+
+    /**
+     * 获取执行中的请求数
+     *
+     * @return 执行中的请求数
+     */
+    public synchronized int runningCount() {
+        return runningTasks.size();
+    }
+
+    /**
+     * 提交任务
+     *
+     * @param task 任务
+     * @return 队列已满时返回 false
+     */
+    boolean enqueue(Task task) {
+        synchronized (this) {
+            if (readyTasks.size() >= maxQueuedRequests) {
+                return false;
+            }
+            task.dispatcher = this;
+            readyTasks.add(task);
+        }
+        promoteAndExecute();
+        return true;
+    }
+
+    /**
+     * 延迟提交任务，用于重试前的退避等待，等待期间不占用并发名额
+     *
+     * @param task        任务
+     * @param delayMillis 延迟（毫秒）
+     */
+    void enqueueDelayed(final Task task, long delayMillis) {
+        synchronized (this) {
+            delayedTasks.add(task);
+        }
+        getScheduler().schedule(new Runnable() {
+            @Override
+            public void run() {
+                boolean pending;
+                synchronized (HttpDispatcher.this) {
+                    pending = delayedTasks.remove(task);
+                }
+                if (pending && !enqueue(task)) {
+                    task.reject();
+                }
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "HttpUtil Scheduler");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return scheduler;
+    }
+
+    /**
+     * 修改任务的优先级，仅对排队中的任务有实际影响
+     */
+    void setPriority(Task task, Priority priority) {
+        synchronized (this) {
+            task.priority = priority;
+        }
+        promoteAndExecute();
+    }
+
+    /**
+     * 将排队中或等待重试的任务移出队列
+     *
+     * @return 任务尚未执行并已移除时返回 true
+     */
+    synchronized boolean cancel(Task task) {
+        return readyTasks.remove(task) || delayedTasks.remove(task);
+    }
+
+    /**
+     * 任务执行完毕，释放其占用的并发名额
+     */
+    void finished(Task task) {
+        synchronized (this) {
+            runningTasks.remove(task);
+        }
+        promoteAndExecute();
+    }
+
+    /**
+     * 按优先级将满足并发限制的排队任务移入执行队列并提交到线程池
+     */
+    private void promoteAndExecute() {
+        List<Task> executableTasks = new ArrayList<>();
+        synchronized (this) {
+            boolean foregroundBusy = hasForegroundTasks();
+            promote:
+            for (Priority priority : Priority.values()) {
+                Iterator<Task> iterator = readyTasks.iterator();
+                while (iterator.hasNext()) {
+                    if (runningTasks.size() >= maxRequests) {
+                        break promote;
+                    }
+                    Task task = iterator.next();
+                    if (task.priority != priority) {
+                        continue;
+                    }
+                    if (runningCountForHost(task.host) >= maxRequestsPerHost) {
+                        continue;
+                    }
+                    if (foregroundBusy && !isForeground(priority)
+                        && (priority == Priority.IDLE || runningBackgroundCount() >= maxBackgroundRequests)) {
+                        continue;
+                    }
+                    iterator.remove();
+                    runningTasks.add(task);
+                    executableTasks.add(task);
+                }
+            }
+        }
+        for (Task task : executableTasks) {
+            try {
+                getExecutorService().execute(task);
+            } catch (RuntimeException e) {
+                // 线程池已关闭或拒绝执行
+                task.reject();
+                finished(task);
+            }
+        }
+    }
+
+    private static boolean isForeground(Priority priority) {
+        return priority == Priority.IMMEDIATE || priority == Priority.NORMAL;
+    }
+
+    private boolean hasForegroundTasks() {
+        for (Task task : runningTasks) {
+            if (isForeground(task.priority)) {
+                return true;
+            }
+        }
+        for (Task task : readyTasks) {
+            if (isForeground(task.priority)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int runningBackgroundCount() {
+        int count = 0;
+        for (Task task : runningTasks) {
+            if (!isForeground(task.priority)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private int runningCountForHost(String host) {
+        int count = 0;
+        for (Task task : runningTasks) {
+            if (task.host.equals(host)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 调度器中执行的任务
+     */
+    abstract static class Task implements Runnable {
+
+        final String host;
+        volatile Priority priority;
+        HttpDispatcher dispatcher;
+        private long retryDelayMillis = -1;
+
+        Task(String host, Priority priority) {
+            this.host = host;
+            this.priority = priority;
+        }
+
+        Priority getPriority() {
+            return priority;
+        }
+
+        @Override
+        public final void run() {
+            try {
+                execute();
+            } finally {
+                dispatcher.finished(this);
+            }
+            if (retryDelayMillis >= 0) {
+                long delayMillis = retryDelayMillis;
+                retryDelayMillis = -1;
+                dispatcher.enqueueDelayed(this, delayMillis);
+            }
+        }
+
+        /**
+         * 在 execute 中调用，本次执行结束后等待指定时间再重新排队执行
+         *
+         * @param delayMillis 等待时间（毫秒）
+         */
+        void retryAfter(long delayMillis) {
+            retryDelayMillis = delayMillis;
+        }
+
+        /**
+         * 在调度线程中执行请求
+         */
+        abstract void execute();
+
+        /**
+         * 任务被拒绝执行时回调
+         */
+        abstract void reject();
+    }
+}
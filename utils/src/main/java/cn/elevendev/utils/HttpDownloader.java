@@ -0,0 +1,972 @@
+package cn.elevendev.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.Okio;
+
+/**
+ * 分段、可断点续传的文件下载
+ * <p>
+ * 服务器支持 Range 时将文件分成多段并行下载，写入预分配的临时文件（目标路径 + ".part"），
+ * 各段进度保存在状态文件（目标路径 + ".part.state"）中，中断后再次下载会从已完成的位置继续。
+ * 全部完成后将临时文件重命名为目标文件。服务器不支持 Range 时退回单连接下载。
+ * <p>
+ * 设置了校验算法时，数据写入文件的同时计算校验值，重命名前与期望值比较，不一致时删除临时文件。
+ */
+final class HttpDownloader implements Runnable {
+
+    /** 每段的最小长度，文件较小时减少分段数 */
+    private static final long MIN_SEGMENT_SIZE = 1024 * 1024;
+    /** 每下载多少字节保存一次状态文件 */
+    private static final long STATE_SAVE_INTERVAL = 1024 * 1024;
+
+    private static final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "HttpUtil Download #" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final OkHttpClient client;
+    private final String url;
+    private final File destinationFile;
+    private final File partFile;
+    private final File stateFile;
+    private final DownloadOptions options;
+    private final DownloadManager manager;
+    private final List<HttpUtil.HttpCallback> callbacks = new CopyOnWriteArrayList<>();
+    /** 进度回调所在的线程，即第一个调用方的回调线程 */
+    private final Executor callbackExecutor;
+    private final ProgressReporter progressReporter;
+    private final TokenBucket bandwidth;
+    private final DownloadDigest digest;
+    private ByteString expectedDigest;
+    /** 恢复了多个分段的进度，无法按顺序计算，完成后重新读取整个文件计算 */
+    private boolean digestAtEnd;
+    private volatile HttpDispatcher.Priority priority;
+    private boolean completed;
+
+    /**
+     * 将进度及结果分发给挂在该下载上的所有调用方
+     */
+    private final HttpUtil.HttpCallback callback = new HttpUtil.HttpCallback() {
+        @Override
+        public void onSuccess(String response) {
+            for (HttpUtil.HttpCallback callback : callbacks) {
+                callback.onSuccess(response);
+            }
+        }
+
+        @Override
+        public void onFailure(String errorMessage) {
+            for (HttpUtil.HttpCallback callback : callbacks) {
+                callback.onFailure(errorMessage);
+            }
+        }
+
+        @Override
+        public void onProgress(long bytesRead, long contentLength, long bytesPerSecond, long etaMillis) {
+            for (HttpUtil.HttpCallback callback : callbacks) {
+                callback.onProgress(bytesRead, contentLength, bytesPerSecond, etaMillis);
+            }
+        }
+    };
+
+    private volatile long contentLength = -1;
+    private String validator;
+    private final List<Segment> segments = new ArrayList<>();
+    private final AtomicLong unsavedBytes = new AtomicLong();
+    private final List<Call> calls = new ArrayList<>();
+    private volatile boolean failed;
+    private volatile boolean canceled;
+
+    HttpDownloader(OkHttpClient client, String url, String destinationPath, DownloadOptions options,
+                   DownloadManager manager, Executor callbackExecutor, long progressIntervalMillis) {
+        this.client = client;
+        this.url = url;
+        this.destinationFile = new File(destinationPath);
+        this.partFile = new File(destinationPath + ".part");
+        this.stateFile = new File(destinationPath + ".part.state");
+        this.options = options;
+        this.manager = manager;
+        this.priority = options.getPriority();
+        this.callbackExecutor = callbackExecutor;
+        this.bandwidth = new TokenBucket(options.getMaxBytesPerSecond());
+        this.progressReporter = new ProgressReporter(callback, callbackExecutor, progressIntervalMillis);
+        this.digest = options.getChecksum() != null ? new DownloadDigest(options.getChecksum()) : null;
+        if (options.getExpectedChecksum() != null) {
+            this.expectedDigest = ByteString.decodeHex(options.getExpectedChecksum());
+        }
+    }
+
+    /**
+     * 在下载线程池中开始下载，由 {@link DownloadManager} 调用
+     */
+    void start() {
+        executor.execute(this);
+    }
+
+    String url() {
+        return url;
+    }
+
+    DownloadManager manager() {
+        return manager;
+    }
+
+    File destinationFile() {
+        return destinationFile;
+    }
+
+    HttpDispatcher.Priority priority() {
+        return priority;
+    }
+
+    void setPriority(HttpDispatcher.Priority priority) {
+        this.priority = priority;
+    }
+
+    /**
+     * 是否与另一个下载使用相同的校验设置，不同时不能合并，否则后来的调用方得不到所要求的校验
+     */
+    boolean sameChecksum(HttpDownloader other) {
+        String expected = options.getExpectedChecksum();
+        String otherExpected = other.options.getExpectedChecksum();
+        return options.getChecksum() == other.options.getChecksum()
+            && (expected == null ? otherExpected == null : expected.equalsIgnoreCase(otherExpected));
+    }
+
+    /**
+     * 添加调用方的回调
+     *
+     * @param callback 已由 {@link HttpCall} 包装的回调
+     * @param executor 该调用方的回调线程，与本下载的不同时进度切换到该线程回调
+     * @return 下载已结束、不能再添加时返回 false
+     */
+    synchronized boolean addCallback(HttpUtil.HttpCallback callback, Executor executor) {
+        if (completed) {
+            return false;
+        }
+        if (callback != null) {
+            callbacks.add(executor == callbackExecutor ? callback : new ExecutorCallback(callback, executor));
+        }
+        return true;
+    }
+
+    /**
+     * 移除调用方的回调
+     *
+     * @return 下载尚未结束且已没有任何调用方时返回 true，此时可以取消下载
+     */
+    synchronized boolean removeCallback(HttpUtil.HttpCallback callback) {
+        for (HttpUtil.HttpCallback added : callbacks) {
+            if (added == callback || added instanceof ExecutorCallback && ((ExecutorCallback) added).target == callback) {
+                callbacks.remove(added);
+                break;
+            }
+        }
+        return !completed && callbacks.isEmpty();
+    }
+
+    /**
+     * 标记下载结束，之后不再接受新的调用方
+     */
+    private synchronized void complete() {
+        completed = true;
+    }
+
+    /**
+     * 获取当前状态快照
+     */
+    DownloadInfo info(DownloadInfo.State state) {
+        return new DownloadInfo(url, destinationFile.getPath(), priority, state, progressReporter.getBytes(),
+            contentLength, progressReporter.getBytesPerSecond());
+    }
+
+    /**
+     * 取消下载，中断所有连接，已下载的分段进度保留用于续传。
+     * 由 {@link DownloadManager} 在没有调用方时调用。
+     */
+    void cancel() {
+        canceled = true;
+        failed = true;
+        synchronized (calls) {
+            for (Call call : calls) {
+                call.cancel();
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            if (canceled) {
+                return;
+            }
+            download();
+            complete();
+            progressReporter.finish();
+            callback.onSuccess("下载成功");
+        } catch (IOException e) {
+            complete();
+            if (canceled) {
+                return;
+            }
+            if (e instanceof HttpStatusException) {
+                postFailure("Download failed: Network error, code " + ((HttpStatusException) e).code);
+            } else if (e instanceof ChecksumMismatchException) {
+                postFailure(HttpUtil.CHECKSUM_MISMATCH_MESSAGE);
+            } else {
+                e.printStackTrace();
+                postFailure("下载失败");
+            }
+        } finally {
+            complete();
+            manager.finished(this);
+        }
+    }
+
+    private void download() throws IOException {
+        // 第一个请求同时用于探测 Range 支持及文件总长度，响应体直接作为第一段的数据，不额外往返
+        boolean restored = loadState();
+        Segment first = null;
+        for (Segment segment : segments) {
+            if (!segment.isComplete()) {
+                first = segment;
+                break;
+            }
+        }
+        if (restored && first == null) {
+            // 上次已下载完所有分段，只差校验及重命名
+            downloadSegments(null, null);
+            finishSegments();
+            return;
+        }
+        Request.Builder builder = new Request.Builder().url(url);
+        if (first != null) {
+            // 恢复的状态总有校验信息，文件已变更时服务器返回完整的新内容
+            builder.header("Range", "bytes=" + first.position + "-" + first.end)
+                .header("If-Range", validator);
+        } else {
+            builder.header("Range", "bytes=0-");
+        }
+        Response response = execute(builder.build());
+        boolean handedOff = false;
+        try {
+            if (response.code() == 416) {
+                if (parseTotalLength(response.header("Content-Range")) == 0) {
+                    // 空文件无法按范围请求
+                    downloadEmpty();
+                    return;
+                }
+                if (restored) {
+                    discard();
+                    throw new SourceChangedException();
+                }
+                throw new HttpStatusException(response.code());
+            }
+            if (!response.isSuccessful()) {
+                throw new HttpStatusException(response.code());
+            }
+            if (response.code() == 200) {
+                // 服务器忽略了 Range，或续传时 If-Range 校验失败，直接使用该响应单连接下载
+                readExpectedDigest(response, true);
+                downloadSingle(response.body());
+                return;
+            }
+            long totalLength = parseTotalLength(response.header("Content-Range"));
+            if (restored) {
+                if (totalLength != contentLength) {
+                    discard();
+                    throw new SourceChangedException();
+                }
+                // 校验值以状态文件中保存的为准，服务器在续传响应中重新提供时使用新值
+                ByteString resumedDigest = headerDigest(response, false);
+                if (resumedDigest != null) {
+                    expectedDigest = resumedDigest;
+                }
+            } else {
+                // 部分响应中的 Content-MD5 只对应返回的片段
+                readExpectedDigest(response, false);
+                if (totalLength < 0) {
+                    // 总长度未知时无法分段，响应体即从头开始的完整内容
+                    downloadSingle(response.body());
+                    return;
+                }
+                contentLength = totalLength;
+                String etag = response.header("ETag");
+                validator = etag != null && !etag.startsWith("W/") ? etag : response.header("Last-Modified");
+                createSegments();
+                first = segments.get(0);
+            }
+            handedOff = true;
+            downloadSegments(first, response);
+        } finally {
+            if (!handedOff) {
+                response.close();
+            }
+        }
+        finishSegments();
+    }
+
+    /**
+     * 所有分段下载完成后校验并移动到目标路径
+     */
+    private void finishSegments() throws IOException {
+        verify();
+        stateFile.delete();
+        moveToDestination();
+    }
+
+    /**
+     * 服务器上的文件为空（按范围请求返回 416，Content-Range 中总长度为 0），直接生成空文件
+     */
+    private void downloadEmpty() throws IOException {
+        stateFile.delete();
+        segments.clear();
+        contentLength = 0;
+        progressReporter.setContentLength(0);
+        if (digest != null) {
+            digest.reset();
+        }
+        new FileOutputStream(partFile).close();
+        verify();
+        moveToDestination();
+    }
+
+    /**
+     * 单连接下载，用于服务器不支持 Range 的情况，无法断点续传
+     */
+    private void downloadSingle(ResponseBody body) throws IOException {
+        stateFile.delete();
+        segments.clear();
+        if (digest != null) {
+            digest.reset();
+        }
+        contentLength = body.contentLength();
+        progressReporter.setContentLength(contentLength);
+        RandomAccessFile file = new RandomAccessFile(partFile, "rw");
+        try {
+            if (options.isPreallocate() && contentLength > 0) {
+                file.setLength(contentLength);
+            }
+            long written = transfer(body.source(), file, -1, null);
+            if (canceled) {
+                throw new CanceledException();
+            }
+            // 实际长度与预分配长度不一致时截断，同时清除旧文件残留的内容
+            if (file.length() != written) {
+                file.setLength(written);
+            }
+            if (options.isSyncOnComplete()) {
+                file.getFD().sync();
+            }
+        } finally {
+            file.close();
+        }
+        verify();
+        moveToDestination();
+    }
+
+    /**
+     * 按文件长度划分分段并预分配临时文件，需要计算校验值时只分一段
+     */
+    private void createSegments() throws IOException {
+        segments.clear();
+        int count = digest != null
+            ? 1
+            : (int) Math.max(1, Math.min(options.getSegments(), contentLength / MIN_SEGMENT_SIZE));
+        long segmentSize = contentLength / count;
+        for (int i = 0; i < count; i++) {
+            long start = i * segmentSize;
+            long end = i == count - 1 ? contentLength - 1 : start + segmentSize - 1;
+            segments.add(new Segment(start, end, start));
+        }
+        partFile.delete();
+        if (options.isPreallocate()) {
+            RandomAccessFile file = new RandomAccessFile(partFile, "rw");
+            try {
+                file.setLength(contentLength);
+            } finally {
+                file.close();
+            }
+        }
+        saveState();
+    }
+
+    /**
+     * 并行下载所有未完成的分段，任一分段失败时其余分段尽快停止
+     *
+     * @param first         已有响应的分段，没有时为 null
+     * @param firstResponse 第一个请求的响应，由该方法关闭
+     */
+    private void downloadSegments(final Segment first, final Response firstResponse) throws IOException {
+        long resumedBytes = 0;
+        for (Segment segment : segments) {
+            resumedBytes += segment.position - segment.start;
+        }
+        progressReporter.setContentLength(contentLength);
+        progressReporter.setInitialBytes(resumedBytes);
+        if (digest != null) {
+            digest.reset();
+            if (segments.size() == 1) {
+                // 续传时先计算已下载的部分，之后的数据按顺序边写边算
+                Segment segment = segments.get(0);
+                try {
+                    readDigest(segment.start, segment.position);
+                } catch (IOException e) {
+                    if (firstResponse != null) {
+                        firstResponse.close();
+                    }
+                    throw e;
+                }
+            } else {
+                digestAtEnd = true;
+            }
+        }
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (final Segment segment : segments) {
+            if (segment.isComplete()) {
+                continue;
+            }
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    try {
+                        if (segment == first) {
+                            receiveSegment(segment, firstResponse);
+                        } else {
+                            downloadSegment(segment);
+                        }
+                    } catch (IOException e) {
+                        failed = true;
+                        throw e;
+                    }
+                    return null;
+                }
+            }));
+        }
+
+        IOException failure = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof IOException
+                        ? (IOException) e.getCause()
+                        : new IOException(e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed = true;
+                if (failure == null) {
+                    failure = new IOException("下载被中断");
+                }
+            }
+        }
+        if (failure == null && canceled) {
+            // 各分段可能在发现取消后正常返回，不能当作下载完成
+            failure = new CanceledException();
+        }
+        if (failure != null) {
+            if (!(failure instanceof SourceChangedException)) {
+                saveState();
+            }
+            throw failure;
+        }
+    }
+
+    private void downloadSegment(Segment segment) throws IOException {
+        Request.Builder builder = new Request.Builder()
+            .url(url)
+            .header("Range", "bytes=" + segment.position + "-" + segment.end);
+        if (validator != null) {
+            builder.header("If-Range", validator);
+        }
+        receiveSegment(segment, execute(builder.build()));
+    }
+
+    /**
+     * 将分段请求的响应写入临时文件，响应可能比分段长（第一个请求），只读取分段所需的部分
+     *
+     * @param segment  分段
+     * @param response 响应，由该方法关闭
+     */
+    private void receiveSegment(Segment segment, Response response) throws IOException {
+        try {
+            if (response.code() != 206) {
+                if (response.isSuccessful()) {
+                    // If-Range 校验失败，服务器上的文件已变更，丢弃已下载的内容
+                    discard();
+                    throw new SourceChangedException();
+                }
+                throw new HttpStatusException(response.code());
+            }
+            if (parseRangeStart(response.header("Content-Range")) != segment.position) {
+                throw new IOException("返回的范围与请求不一致: " + response.header("Content-Range"));
+            }
+            RandomAccessFile file = new RandomAccessFile(partFile, "rw");
+            try {
+                file.seek(segment.position);
+                transfer(response.body().source(), file, segment.end - segment.position + 1, segment);
+                if (failed) {
+                    return;
+                }
+                if (!segment.isComplete()) {
+                    throw new IOException("连接提前结束");
+                }
+                if (options.isSyncOnComplete()) {
+                    file.getFD().sync();
+                }
+            } finally {
+                file.close();
+            }
+        } finally {
+            response.close();
+        }
+    }
+
+    /**
+     * 将响应体写入文件的当前位置
+     * <p>
+     * 数据以 Okio 段的形式从响应缓冲区移动到文件缓冲区，不经过中间 byte[]，
+     * 累积到 bufferSize 后一次写入文件通道。分段下载时，只有数据写入文件后才推进分段位置。
+     * 需要计算校验值时，新读入的数据在写入前从缓冲区复制给校验对象。
+     *
+     * @param source  响应体
+     * @param file    目标文件，已定位到写入位置
+     * @param limit   最多写入的字节数，-1 表示直到响应结束
+     * @param segment 对应的分段，单连接下载时为 null
+     * @return 写入的字节数
+     */
+    private long transfer(BufferedSource source, RandomAccessFile file, long limit, Segment segment)
+        throws IOException {
+        int bufferSize = options.getBufferSize();
+        BufferedSink sink = Okio.buffer(Okio.sink(Channels.newOutputStream(file.getChannel())));
+        Buffer buffer = sink.getBuffer();
+        long written = 0;
+        long pending = 0;
+        while ((limit < 0 || written < limit) && !failed) {
+            long byteCount = limit < 0 ? bufferSize : Math.min(bufferSize, limit - written);
+            long bytesRead = source.read(buffer, byteCount);
+            if (bytesRead == -1) {
+                break;
+            }
+            if (digest != null && !digestAtEnd) {
+                buffer.copyTo(digest, buffer.size() - bytesRead, bytesRead);
+            }
+            written += bytesRead;
+            pending += bytesRead;
+            throttle(bytesRead);
+            if (buffer.size() >= bufferSize) {
+                sink.emit();
+                commit(segment, pending);
+                pending = 0;
+            }
+        }
+        sink.emit();
+        commit(segment, pending);
+        return written;
+    }
+
+    /**
+     * 按总带宽及本下载的带宽限制等待，取消时尽快返回
+     */
+    private void throttle(long bytes) throws IOException {
+        long waitNanos = Math.max(manager.bandwidth().reserve(bytes), bandwidth.reserve(bytes));
+        long deadline = System.nanoTime() + waitNanos;
+        while (waitNanos > 0 && !failed) {
+            try {
+                Thread.sleep(Math.min(TimeUnit.NANOSECONDS.toMillis(waitNanos) + 1, 100));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("下载被中断");
+            }
+            waitNanos = deadline - System.nanoTime();
+        }
+    }
+
+    private void commit(Segment segment, long bytes) {
+        if (bytes == 0) {
+            return;
+        }
+        if (segment != null) {
+            segment.position += bytes;
+        }
+        onBytesWritten(bytes);
+    }
+
+    private void onBytesWritten(long bytes) {
+        if (!segments.isEmpty() && unsavedBytes.addAndGet(bytes) >= STATE_SAVE_INTERVAL) {
+            unsavedBytes.set(0);
+            saveState();
+        }
+        progressReporter.add(bytes);
+    }
+
+    /**
+     * 执行请求并记录，以便取消时中断
+     */
+    private Response execute(Request request) throws IOException {
+        Call call = client.newCall(request);
+        synchronized (calls) {
+            calls.add(call);
+            if (canceled) {
+                call.cancel();
+            }
+        }
+        return call.execute();
+    }
+
+    /**
+     * 将临时文件重命名为目标文件，POSIX 上会原子地替换已有的目标文件，
+     * 只有重命名失败（如部分平台不允许覆盖）时才先删除目标文件再重试
+     */
+    private void moveToDestination() throws IOException {
+        if (partFile.renameTo(destinationFile)) {
+            return;
+        }
+        if (destinationFile.exists() && !destinationFile.delete()) {
+            throw new IOException("无法覆盖目标文件");
+        }
+        if (!partFile.renameTo(destinationFile)) {
+            throw new IOException("重命名失败");
+        }
+    }
+
+    /**
+     * 从响应头中读取期望的校验值，已指定期望值时忽略
+     *
+     * @param response        探测或完整下载的响应
+     * @param allowContentMd5 是否为完整响应，Content-MD5 只在完整响应中代表整个文件
+     */
+    private void readExpectedDigest(Response response, boolean allowContentMd5) {
+        if (digest == null || options.getExpectedChecksum() != null) {
+            return;
+        }
+        expectedDigest = headerDigest(response, allowContentMd5);
+    }
+
+    /**
+     * 响应头中的校验值，已指定期望值或服务器未提供时返回 null
+     */
+    private ByteString headerDigest(Response response, boolean allowContentMd5) {
+        if (digest == null || options.getExpectedChecksum() != null) {
+            return null;
+        }
+        return digest.fromHeaders(response.header("Digest"), response.header("Repr-Digest"),
+            allowContentMd5 ? response.header("Content-MD5") : null);
+    }
+
+    /**
+     * 比较临时文件的校验值，不一致时删除临时文件及状态文件。
+     * 没有期望值（未指定且服务器未提供）时不比较。
+     */
+    private void verify() throws IOException {
+        if (digest == null) {
+            return;
+        }
+        if (digestAtEnd) {
+            digest.reset();
+            readDigest(0, partFile.length());
+        }
+        if (expectedDigest != null && !expectedDigest.equals(digest.digest())) {
+            discard();
+            throw new ChecksumMismatchException();
+        }
+    }
+
+    /**
+     * 读取临时文件 [start, end) 的内容计算校验值
+     */
+    private void readDigest(long start, long end) throws IOException {
+        if (start >= end) {
+            return;
+        }
+        RandomAccessFile file = new RandomAccessFile(partFile, "r");
+        try {
+            file.seek(start);
+            byte[] bytes = new byte[options.getBufferSize()];
+            long remaining = end - start;
+            while (remaining > 0) {
+                int read = file.read(bytes, 0, (int) Math.min(bytes.length, remaining));
+                if (read == -1) {
+                    throw new IOException("临时文件长度不足");
+                }
+                digest.write(bytes, 0, read);
+                remaining -= read;
+            }
+        } finally {
+            file.close();
+        }
+    }
+
+    private void discard() {
+        stateFile.delete();
+        partFile.delete();
+    }
+
+    /**
+     * 读取状态文件，地址一致时恢复文件长度、校验信息、服务器提供的校验值及各分段进度，
+     * 之后的请求通过 If-Range 确认服务器上的文件没有变化
+     *
+     * @return 是否成功恢复
+     */
+    private boolean loadState() {
+        if (!stateFile.exists() || !partFile.exists()) {
+            return false;
+        }
+        Properties properties = new Properties();
+        try {
+            InputStream inputStream = new FileInputStream(stateFile);
+            try {
+                properties.load(inputStream);
+            } finally {
+                inputStream.close();
+            }
+            long length = Long.parseLong(properties.getProperty("length"));
+            String savedValidator = properties.getProperty("validator");
+            // 没有校验信息时无法通过 If-Range 确认文件未变，不续传
+            if (!url.equals(properties.getProperty("url")) || savedValidator == null || "null".equals(savedValidator)
+                || partFile.length() > length) {
+                return false;
+            }
+            int count = Integer.parseInt(properties.getProperty("segments"));
+            List<Segment> restored = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String[] values = properties.getProperty("segment." + i).split(",");
+                restored.add(new Segment(Long.parseLong(values[0]), Long.parseLong(values[1]),
+                    Long.parseLong(values[2])));
+            }
+            segments.clear();
+            segments.addAll(restored);
+            contentLength = length;
+            validator = savedValidator;
+            // 服务器提供的校验值只在第一个响应中读取，续传时从状态文件恢复
+            String savedDigest = properties.getProperty("digest");
+            if (savedDigest != null && digest != null && options.getExpectedChecksum() == null
+                && options.getChecksum().name().equals(properties.getProperty("checksum"))) {
+                expectedDigest = ByteString.decodeHex(savedDigest);
+            }
+            return true;
+        } catch (IOException | RuntimeException e) {
+            // 状态文件损坏，重新下载
+            return false;
+        }
+    }
+
+    /**
+     * 保存续传状态，服务器没有提供 ETag（强校验）或 Last-Modified 时不保存，中断后从头下载
+     */
+    private synchronized void saveState() {
+        if (validator == null) {
+            stateFile.delete();
+            return;
+        }
+        Properties properties = new Properties();
+        properties.setProperty("url", url);
+        properties.setProperty("length", String.valueOf(contentLength));
+        properties.setProperty("validator", validator);
+        if (expectedDigest != null && options.getExpectedChecksum() == null) {
+            properties.setProperty("checksum", options.getChecksum().name());
+            properties.setProperty("digest", expectedDigest.hex());
+        }
+        properties.setProperty("segments", String.valueOf(segments.size()));
+        for (int i = 0; i < segments.size(); i++) {
+            Segment segment = segments.get(i);
+            properties.setProperty("segment." + i, segment.start + "," + segment.end + "," + segment.position);
+        }
+        try {
+            File tempState = new File(stateFile.getPath() + ".tmp");
+            OutputStream outputStream = new FileOutputStream(tempState);
+            try {
+                properties.store(outputStream, null);
+            } finally {
+                outputStream.close();
+            }
+            if (!tempState.renameTo(stateFile)) {
+                tempState.delete();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void postFailure(String message) {
+        // 回调已由 HttpCall 包装，会切换到回调线程
+        callback.onFailure(message);
+    }
+
+    /**
+     * 解析 Content-Range 中的总长度，如 "bytes 0-0/1024"
+     *
+     * @return 总长度，未知时返回 -1
+     */
+    private static long parseTotalLength(String contentRange) {
+        if (contentRange == null) {
+            return -1;
+        }
+        int slash = contentRange.lastIndexOf('/');
+        if (slash == -1) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentRange.substring(slash + 1).trim());
+        } catch (NumberFormatException e) {
+            // 长度为 "*"
+            return -1;
+        }
+    }
+
+    /**
+     * 解析 Content-Range 中的起始位置，如 "bytes 100-199/1024"
+     *
+     * @return 起始位置，无法解析时返回 -1
+     */
+    private static long parseRangeStart(String contentRange) {
+        if (contentRange == null || !contentRange.startsWith("bytes ")) {
+            return -1;
+        }
+        int dash = contentRange.indexOf('-');
+        if (dash == -1) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentRange.substring("bytes ".length(), dash).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 合并到本下载的调用方的回调，进度切换到该调用方的回调线程；
+     * 结果回调已由 {@link HttpCall} 切换线程，直接转发
+     */
+    private static final class ExecutorCallback implements HttpUtil.HttpCallback {
+
+        final HttpUtil.HttpCallback target;
+        private final Executor executor;
+
+        ExecutorCallback(HttpUtil.HttpCallback target, Executor executor) {
+            this.target = target;
+            this.executor = executor;
+        }
+
+        @Override
+        public void onSuccess(String response) {
+            target.onSuccess(response);
+        }
+
+        @Override
+        public void onFailure(String errorMessage) {
+            target.onFailure(errorMessage);
+        }
+
+        @Override
+        public void onProgress(final long bytesRead, final long contentLength, final long bytesPerSecond,
+                               final long etaMillis) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    target.onProgress(bytesRead, contentLength, bytesPerSecond, etaMillis);
+                }
+            });
+        }
+    }
+
+    /**
+     * 下载分段，end 为包含在内的结束位置
+     */
+    private static final class Segment {
+
+        final long start;
+        final long end;
+        volatile long position;
+
+        Segment(long start, long end, long position) {
+            this.start = start;
+            this.end = end;
+            this.position = position;
+        }
+
+        boolean isComplete() {
+            return position > end;
+        }
+    }
+
+    private static final class HttpStatusException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        final int code;
+
+        HttpStatusException(int code) {
+            super("HTTP " + code);
+            this.code = code;
+        }
+    }
+
+    private static final class CanceledException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        CanceledException() {
+            super("下载已取消");
+        }
+    }
+
+    private static final class ChecksumMismatchException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        ChecksumMismatchException() {
+            super("文件校验失败");
+        }
+    }
+
+    private static final class SourceChangedException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        SourceChangedException() {
+            super("服务器文件已变更");
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package cn.elevendev.utils;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 请求结果的 Future，用于后台代码以阻塞方式获取结果
+ * <p>
+ * 结果在请求线程中直接写入，不经过主线程。请求失败时 {@link #get()} 抛出 {@link ExecutionException}，
+ * 其 cause 为携带错误信息的 {@link IOException}。不要在主线程调用 get。
+ */
+public class HttpFuture implements Future<String> {
+
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private volatile HttpCall call;
+    private String result;
+    private String errorMessage;
+    private boolean canceled;
+
+    HttpFuture() {
+    }
+
+    /**
+     * 写入结果的回调
+     */
+    HttpUtil.HttpCallback callback() {
+        return new HttpUtil.HttpCallback() {
+            @Override
+            public void onSuccess(String response) {
+                complete(response, null, false);
+            }
+
+            @Override
+            public void onFailure(String errorMessage) {
+                complete(null, errorMessage, false);
+            }
+        };
+    }
+
+    void setCall(HttpCall call) {
+        this.call = call;
+    }
+
+    /**
+     * 获取请求句柄
+     *
+     * @return 请求句柄
+     */
+    public HttpCall getCall() {
+        return call;
+    }
+
+    private synchronized boolean complete(String result, String errorMessage, boolean canceled) {
+        if (latch.getCount() == 0) {
+            return false;
+        }
+        this.result = result;
+        this.errorMessage = errorMessage;
+        this.canceled = canceled;
+        latch.countDown();
+        return true;
+    }
+
+    /**
+     * 取消请求，执行中的请求也会中断
+     *
+     * @param mayInterruptIfRunning 忽略，执行中的请求总会中断
+     * @return 请求尚未结束并已取消时返回 true
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (!complete(null, "请求已取消", true)) {
+            return false;
+        }
+        HttpCall call = this.call;
+        if (call != null) {
+            call.cancel();
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return canceled;
+    }
+
+    @Override
+    public boolean isDone() {
+        return latch.getCount() == 0;
+    }
+
+    @Override
+    public String get() throws InterruptedException, ExecutionException {
+        latch.await();
+        return report();
+    }
+
+    @Override
+    public String get(long timeout, TimeUnit unit)
+        throws InterruptedException, ExecutionException, TimeoutException {
+        if (!latch.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return report();
+    }
+
+    /**
+     * 阻塞等待结果，失败时抛出携带错误信息的 IOException
+     *
+     * @return 响应内容
+     * @throws IOException 请求失败、取消或等待被中断
+     */
+    public String await() throws IOException {
+        try {
+            return get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel(true);
+            throw new IOException("请求被中断", e);
+        } catch (ExecutionException e) {
+            throw (IOException) e.getCause();
+        } catch (CancellationException e) {
+            throw new IOException("请求已取消", e);
+        }
+    }
+
+    private synchronized String report() throws ExecutionException {
+        if (canceled) {
+            throw new CancellationException(errorMessage);
+        }
+        if (errorMessage != null) {
+            throw new ExecutionException(new IOException(errorMessage));
+        }
+        return result;
+    }
+}
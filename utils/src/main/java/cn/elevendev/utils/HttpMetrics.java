@@ -0,0 +1,549 @@
+package cn.elevendev.utils;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * HttpUtil 的网络耗时统计
+ * <p>
+ * 通过 OkHttp 的 {@link EventListener} 记录每次请求的 DNS、连接、TLS、首字节及响应体传输耗时，
+ * 收发字节数以及是否复用连接，按接口（请求方法 + 主机 + 路径）汇总为直方图，
+ * 可查询 p50/p95/p99，也可注册 {@link Listener} 将每次请求的数据导出。
+ * 每次请求只记录若干时间戳，开销很小，可在线上常开。
+ */
+public class HttpMetrics {
+
+    /** 最多统计的接口数，超出后归入 {@link #OTHER_ENDPOINT} */
+    public static final int MAX_ENDPOINTS = 200;
+    /** 超出接口数上限时使用的接口名 */
+    public static final String OTHER_ENDPOINT = "other";
+
+    private final ConcurrentHashMap<String, EndpointStats> endpoints = new ConcurrentHashMap<>();
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile boolean enabled = true;
+
+    private final EventListener.Factory factory = new EventListener.Factory() {
+        @Override
+        public EventListener create(Call call) {
+            return enabled ? new CallListener() : EventListener.NONE;
+        }
+    };
+
+    HttpMetrics() {
+    }
+
+    /**
+     * 设置是否记录耗时，默认开启
+     *
+     * @param enabled 是否开启
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 添加请求结束监听，在请求所在的线程回调，实现中不应执行耗时操作
+     *
+     * @param listener 监听
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * 获取各接口的统计数据
+     *
+     * @return 接口名到统计数据的映射
+     */
+    public Map<String, EndpointStats> getEndpoints() {
+        return Collections.unmodifiableMap(new LinkedHashMap<String, EndpointStats>(endpoints));
+    }
+
+    /**
+     * 获取指定接口的统计数据
+     *
+     * @param endpoint 接口名，如 "GET api.example.com/user/profile"
+     * @return 统计数据，尚无记录时返回 null
+     */
+    public EndpointStats getEndpoint(String endpoint) {
+        return endpoints.get(endpoint);
+    }
+
+    /**
+     * 清空统计数据
+     */
+    public void reset() {
+        endpoints.clear();
+    }
+
+    EventListener.Factory eventListenerFactory() {
+        return factory;
+    }
+
+    /**
+     * 记录一次重试
+     *
+     * @param request 被重试的请求
+     */
+    void recordRetry(Request request) {
+        if (enabled) {
+            statsOf(endpointOf(request)).retryCount.incrementAndGet();
+        }
+    }
+
+    private void record(CallMetrics metrics) {
+        statsOf(metrics.endpoint).record(metrics);
+        for (Listener listener : listeners) {
+            listener.onCallEnd(metrics);
+        }
+    }
+
+    private EndpointStats statsOf(String endpoint) {
+        EndpointStats stats = endpoints.get(endpoint);
+        if (stats == null) {
+            String key = endpoints.size() < MAX_ENDPOINTS ? endpoint : OTHER_ENDPOINT;
+            stats = endpoints.get(key);
+            if (stats == null) {
+                EndpointStats created = new EndpointStats(key);
+                stats = endpoints.putIfAbsent(key, created);
+                if (stats == null) {
+                    stats = created;
+                }
+            }
+        }
+        return stats;
+    }
+
+    private static String endpointOf(Request request) {
+        return request.method() + ' ' + request.url().host() + request.url().encodedPath();
+    }
+
+    /**
+     * 请求结束监听，可用于将数据导出到自有的监控系统
+     */
+    public interface Listener {
+        /**
+         * 请求结束（成功或失败）时回调
+         *
+         * @param metrics 本次请求的耗时数据
+         */
+        void onCallEnd(CallMetrics metrics);
+    }
+
+    /**
+     * 单次请求的耗时数据，各阶段未发生时为 -1（如复用连接时没有 DNS 及连接耗时）
+     */
+    public static final class CallMetrics {
+
+        /** 接口名，请求方法 + 主机 + 路径 */
+        public final String endpoint;
+        /** 响应状态码，失败时为 -1 */
+        public final int code;
+        /** 是否失败 */
+        public final boolean failed;
+        /** 失败的异常类名，成功时为 null */
+        public final String error;
+        /** 是否复用已有连接 */
+        public final boolean connectionReused;
+        public final long dnsMillis;
+        public final long connectMillis;
+        public final long tlsMillis;
+        /** 从开始发送请求到收到响应头的耗时 */
+        public final long timeToFirstByteMillis;
+        /** 响应体传输耗时 */
+        public final long transferMillis;
+        public final long totalMillis;
+        public final long bytesSent;
+        public final long bytesReceived;
+
+        CallMetrics(String endpoint, int code, String error, boolean connectionReused, long dnsMillis,
+                    long connectMillis, long tlsMillis, long timeToFirstByteMillis, long transferMillis,
+                    long totalMillis, long bytesSent, long bytesReceived) {
+            this.endpoint = endpoint;
+            this.code = code;
+            this.failed = error != null;
+            this.error = error;
+            this.connectionReused = connectionReused;
+            this.dnsMillis = dnsMillis;
+            this.connectMillis = connectMillis;
+            this.tlsMillis = tlsMillis;
+            this.timeToFirstByteMillis = timeToFirstByteMillis;
+            this.transferMillis = transferMillis;
+            this.totalMillis = totalMillis;
+            this.bytesSent = bytesSent;
+            this.bytesReceived = bytesReceived;
+        }
+
+        @Override
+        public String toString() {
+            return endpoint + " code=" + code + (failed ? " error=" + error : "")
+                + " reused=" + connectionReused + " dns=" + dnsMillis + "ms connect=" + connectMillis
+                + "ms tls=" + tlsMillis + "ms ttfb=" + timeToFirstByteMillis + "ms transfer=" + transferMillis
+                + "ms total=" + totalMillis + "ms sent=" + bytesSent + " received=" + bytesReceived;
+        }
+    }
+
+    /**
+     * 单个接口的汇总统计
+     */
+    public static final class EndpointStats {
+
+        private final String endpoint;
+        private final AtomicLong callCount = new AtomicLong();
+        private final AtomicLong failureCount = new AtomicLong();
+        private final AtomicLong reusedCount = new AtomicLong();
+        private final AtomicLong retryCount = new AtomicLong();
+        private final AtomicLong bytesSent = new AtomicLong();
+        private final AtomicLong bytesReceived = new AtomicLong();
+        private final Histogram total = new Histogram();
+        private final Histogram dns = new Histogram();
+        private final Histogram connect = new Histogram();
+        private final Histogram tls = new Histogram();
+        private final Histogram timeToFirstByte = new Histogram();
+        private final Histogram transfer = new Histogram();
+
+        EndpointStats(String endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        void record(CallMetrics metrics) {
+            callCount.incrementAndGet();
+            if (metrics.failed) {
+                failureCount.incrementAndGet();
+            }
+            if (metrics.connectionReused) {
+                reusedCount.incrementAndGet();
+            }
+            bytesSent.addAndGet(metrics.bytesSent);
+            bytesReceived.addAndGet(metrics.bytesReceived);
+            total.record(metrics.totalMillis);
+            dns.record(metrics.dnsMillis);
+            connect.record(metrics.connectMillis);
+            tls.record(metrics.tlsMillis);
+            timeToFirstByte.record(metrics.timeToFirstByteMillis);
+            transfer.record(metrics.transferMillis);
+        }
+
+        public String getEndpoint() {
+            return endpoint;
+        }
+
+        public long getCallCount() {
+            return callCount.get();
+        }
+
+        public long getFailureCount() {
+            return failureCount.get();
+        }
+
+        /**
+         * 获取复用已有连接的请求数
+         */
+        public long getReusedCount() {
+            return reusedCount.get();
+        }
+
+        /**
+         * 获取重试次数，每次重试也会作为一次请求计入 callCount
+         */
+        public long getRetryCount() {
+            return retryCount.get();
+        }
+
+        public long getBytesSent() {
+            return bytesSent.get();
+        }
+
+        public long getBytesReceived() {
+            return bytesReceived.get();
+        }
+
+        /** 总耗时 */
+        public Histogram getTotal() {
+            return total;
+        }
+
+        /** DNS 耗时，仅统计发生了 DNS 查询的请求 */
+        public Histogram getDns() {
+            return dns;
+        }
+
+        /** 建立连接耗时（包含 TLS），仅统计新建连接的请求 */
+        public Histogram getConnect() {
+            return connect;
+        }
+
+        /** TLS 握手耗时 */
+        public Histogram getTls() {
+            return tls;
+        }
+
+        /** 首字节耗时 */
+        public Histogram getTimeToFirstByte() {
+            return timeToFirstByte;
+        }
+
+        /** 响应体传输耗时 */
+        public Histogram getTransfer() {
+            return transfer;
+        }
+
+        @Override
+        public String toString() {
+            return endpoint + " calls=" + getCallCount() + " failures=" + getFailureCount()
+                + " reused=" + getReusedCount() + " retries=" + getRetryCount() + " total=" + total;
+        }
+    }
+
+    /**
+     * 耗时直方图（毫秒）
+     * <p>
+     * 按约 20% 的间隔划分对数桶，记录为无锁操作，百分位的误差不超过一个桶的宽度。
+     */
+    public static final class Histogram {
+
+        private static final double BUCKET_RATIO = 1.2;
+        private static final int BUCKET_COUNT = 64;
+        private static final double LOG_RATIO = Math.log(BUCKET_RATIO);
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        /**
+         * 记录一个值，负值（未发生的阶段）会被忽略
+         *
+         * @param millis 耗时（毫秒）
+         */
+        void record(long millis) {
+            if (millis < 0) {
+                return;
+            }
+            buckets.incrementAndGet(bucketOf(millis));
+            count.incrementAndGet();
+            sum.addAndGet(millis);
+            long currentMax;
+            while (millis > (currentMax = max.get()) && !max.compareAndSet(currentMax, millis)) {
+                // 重试直到更新成功
+            }
+        }
+
+        private static int bucketOf(long millis) {
+            if (millis <= 1) {
+                return 0;
+            }
+            return (int) Math.min(BUCKET_COUNT - 1, Math.ceil(Math.log(millis) / LOG_RATIO));
+        }
+
+        private static long upperBoundOf(int bucket) {
+            return (long) Math.ceil(Math.pow(BUCKET_RATIO, bucket));
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public long getMax() {
+            return max.get();
+        }
+
+        /**
+         * 获取平均值
+         *
+         * @return 平均耗时（毫秒），无记录时返回 0
+         */
+        public long getMean() {
+            long n = count.get();
+            return n == 0 ? 0 : sum.get() / n;
+        }
+
+        /**
+         * 获取百分位值
+         *
+         * @param quantile 分位，范围 0~1，如 0.95
+         * @return 对应桶的上界（毫秒），不超过记录的最大值，无记录时返回 0
+         */
+        public long getPercentile(double quantile) {
+            long n = count.get();
+            if (n == 0) {
+                return 0;
+            }
+            long target = (long) Math.ceil(quantile * n);
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += buckets.get(i);
+                if (seen >= target) {
+                    return Math.min(upperBoundOf(i), max.get());
+                }
+            }
+            return max.get();
+        }
+
+        public long getP50() {
+            return getPercentile(0.50);
+        }
+
+        public long getP95() {
+            return getPercentile(0.95);
+        }
+
+        public long getP99() {
+            return getPercentile(0.99);
+        }
+
+        @Override
+        public String toString() {
+            return "p50=" + getP50() + "ms p95=" + getP95() + "ms p99=" + getP99() + "ms max=" + getMax() + "ms";
+        }
+    }
+
+    /**
+     * 单次请求的事件记录，OkHttp 保证同一请求的事件按顺序回调
+     */
+    private final class CallListener extends EventListener {
+
+        private long callStart;
+        private long dnsStart = -1;
+        private long dnsMillis = -1;
+        private long connectStart = -1;
+        private long connectMillis = -1;
+        private long secureStart = -1;
+        private long tlsMillis = -1;
+        private long requestStart = -1;
+        private long timeToFirstByteMillis = -1;
+        private long bodyStart = -1;
+        private long transferMillis = -1;
+        private long bytesSent;
+        private long bytesReceived;
+        private boolean newConnection;
+        private boolean connectionAcquired;
+        private int code = -1;
+
+        @Override
+        public void callStart(Call call) {
+            callStart = System.nanoTime();
+        }
+
+        @Override
+        public void dnsStart(Call call, String domainName) {
+            dnsStart = System.nanoTime();
+        }
+
+        @Override
+        public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+            dnsMillis = elapsedMillis(dnsStart);
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            newConnection = true;
+            connectStart = System.nanoTime();
+        }
+
+        @Override
+        public void secureConnectStart(Call call) {
+            secureStart = System.nanoTime();
+        }
+
+        @Override
+        public void secureConnectEnd(Call call, Handshake handshake) {
+            tlsMillis = elapsedMillis(secureStart);
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+            connectMillis = elapsedMillis(connectStart);
+        }
+
+        @Override
+        public void connectFailed(Call call, InetSocketAddress inetSocketAddress, Proxy proxy,
+                                  Protocol protocol, IOException ioe) {
+            connectMillis = elapsedMillis(connectStart);
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            connectionAcquired = true;
+        }
+
+        @Override
+        public void requestHeadersStart(Call call) {
+            if (requestStart == -1) {
+                requestStart = System.nanoTime();
+            }
+        }
+
+        @Override
+        public void requestBodyEnd(Call call, long byteCount) {
+            bytesSent += byteCount;
+        }
+
+        @Override
+        public void responseHeadersStart(Call call) {
+            timeToFirstByteMillis = elapsedMillis(requestStart);
+        }
+
+        @Override
+        public void responseHeadersEnd(Call call, Response response) {
+            code = response.code();
+        }
+
+        @Override
+        public void responseBodyStart(Call call) {
+            bodyStart = System.nanoTime();
+        }
+
+        @Override
+        public void responseBodyEnd(Call call, long byteCount) {
+            transferMillis = elapsedMillis(bodyStart);
+            bytesReceived += byteCount;
+        }
+
+        @Override
+        public void callEnd(Call call) {
+            finish(call, null);
+        }
+
+        @Override
+        public void callFailed(Call call, IOException ioe) {
+            finish(call, ioe.getClass().getSimpleName());
+        }
+
+        private void finish(Call call, String error) {
+            record(new CallMetrics(endpointOf(call.request()), code, error,
+                connectionAcquired && !newConnection, dnsMillis, connectMillis, tlsMillis,
+                timeToFirstByteMillis, transferMillis, elapsedMillis(callStart), bytesSent, bytesReceived));
+        }
+
+        private long elapsedMillis(long startNanos) {
+            return startNanos == -1 ? -1 : (System.nanoTime() - startNanos) / 1_000_000;
+        }
+    }
+}
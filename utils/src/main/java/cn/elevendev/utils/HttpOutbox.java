@@ -0,0 +1,737 @@
+package cn.elevendev.utils;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkInfo;
+import android.net.NetworkRequest;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.Okio;
+
+/**
+ * 离线请求队列
+ * <p>
+ * 设置了 {@link RequestOptions#setQueueIfOffline(boolean)} 的请求在无网络或请求失败时写入追加式日志文件，
+ * 网络恢复后按加入顺序分批重发。每个请求携带 Idempotency-Key 请求头，服务器可据此去重。
+ * 重发结果通过 {@link Listener} 通知，原请求的回调不会再次收到结果。
+ * <p>
+ * 日志中每条记录占一行并带有 CRC32 校验，写入中途崩溃留下的不完整记录在下次加载时丢弃。
+ * 日志的加载及写入在队列线程中进行，重发在单独的线程中进行，等待网络时不会推迟新请求的加入，也不阻塞调用线程。
+ */
+public class HttpOutbox {
+
+    /** 默认最大请求数 */
+    public static final int DEFAULT_MAX_ENTRIES = 500;
+    /** 默认请求体总大小上限（字节） */
+    public static final long DEFAULT_MAX_BYTES = 1024 * 1024;
+    /** 默认最长保留时间（毫秒） */
+    public static final long DEFAULT_MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(7);
+    /** 默认每批重发的请求数 */
+    public static final int DEFAULT_BATCH_SIZE = 20;
+    /** 重发失败后的最短等待时间（毫秒） */
+    private static final long MIN_RETRY_DELAY_MILLIS = 30_000;
+    /** 重发失败后的最长等待时间（毫秒） */
+    private static final long MAX_RETRY_DELAY_MILLIS = 10 * 60_000;
+
+    private final File journalFile;
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>();
+    /** 幂等键为键，用于加入时去重 */
+    private final Map<String, Entry> keys = new HashMap<>();
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean replayScheduled = new AtomicBoolean();
+    /** 日志的加载及加入请求 */
+    private final ScheduledExecutorService executor = newExecutor("HttpUtil Outbox");
+    /** 重发，等待响应期间不占用日志线程 */
+    private final ScheduledExecutorService replayExecutor = newExecutor("HttpUtil Outbox Replay");
+    private final CountDownLatch loaded = new CountDownLatch(1);
+
+    private long nextId = 1;
+    private long totalBytes;
+    private int journalRecords;
+    private int failedReplays;
+
+    private volatile int maxEntries = DEFAULT_MAX_ENTRIES;
+    private volatile long maxBytes = DEFAULT_MAX_BYTES;
+    private volatile long maxAgeMillis = DEFAULT_MAX_AGE_MILLIS;
+    private volatile int batchSize = DEFAULT_BATCH_SIZE;
+    private volatile int maxConcurrency = 1;
+    private volatile ConnectivityManager connectivityManager;
+
+    /**
+     * @param journalFile 日志文件
+     */
+    HttpOutbox(File journalFile) {
+        this.journalFile = journalFile;
+        // 之后的加入及重发都在同一线程中排在加载之后
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    synchronized (HttpOutbox.this) {
+                        load();
+                    }
+                } finally {
+                    loaded.countDown();
+                }
+            }
+        });
+    }
+
+    private static ScheduledExecutorService newExecutor(final String name) {
+        return Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * 监听网络变化，网络可用时自动重发，需要 ACCESS_NETWORK_STATE 权限
+     *
+     * @param context 上下文
+     */
+    void watchConnectivity(Context context) {
+        ConnectivityManager manager = (ConnectivityManager) context.getApplicationContext()
+            .getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (manager == null) {
+            return;
+        }
+        connectivityManager = manager;
+        NetworkRequest request = new NetworkRequest.Builder()
+            .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+            .build();
+        manager.registerNetworkCallback(request, new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onAvailable(Network network) {
+                flush();
+            }
+        });
+    }
+
+    /**
+     * 当前是否确定没有网络，未监听网络时总是返回 false
+     *
+     * @return 是否没有网络
+     */
+    boolean isOffline() {
+        ConnectivityManager manager = connectivityManager;
+        if (manager == null) {
+            return false;
+        }
+        NetworkInfo info = manager.getActiveNetworkInfo();
+        return info == null || !info.isConnected();
+    }
+
+    /**
+     * 设置最大请求数，超出时丢弃最早的请求
+     *
+     * @param maxEntries 最大请求数
+     * @return 当前对象
+     */
+    public HttpOutbox setMaxEntries(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries < 1: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        return this;
+    }
+
+    /**
+     * 设置请求体总大小上限，超出时丢弃最早的请求
+     *
+     * @param maxBytes 字节数
+     * @return 当前对象
+     */
+    public HttpOutbox setMaxBytes(long maxBytes) {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("maxBytes < 1: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        return this;
+    }
+
+    /**
+     * 设置最长保留时间，过期的请求不再重发
+     *
+     * @param maxAgeMillis 时间（毫秒）
+     * @return 当前对象
+     */
+    public HttpOutbox setMaxAge(long maxAgeMillis) {
+        this.maxAgeMillis = maxAgeMillis;
+        return this;
+    }
+
+    /**
+     * 设置每批重发的请求数，同一批的结果一次写入日志
+     *
+     * @param batchSize 请求数
+     * @return 当前对象
+     */
+    public HttpOutbox setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize < 1: " + batchSize);
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * 设置同时重发的请求数，默认 1，即严格按加入顺序逐个重发；
+     * 大于 1 时请求按顺序发出，但服务器收到的顺序不再保证
+     *
+     * @param maxConcurrency 并发数
+     * @return 当前对象
+     */
+    public HttpOutbox setMaxConcurrency(int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency < 1: " + maxConcurrency);
+        }
+        this.maxConcurrency = maxConcurrency;
+        return this;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * 获取等待重发的请求数，日志加载完成前为 0
+     *
+     * @return 请求数
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * 在后台清空队列
+     */
+    public void clear() {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (HttpOutbox.this) {
+                    entries.clear();
+                    keys.clear();
+                    totalBytes = 0;
+                    rewriteJournal();
+                }
+            }
+        });
+    }
+
+    /**
+     * 立即在后台重发队列中的请求
+     */
+    public void flush() {
+        if (replayScheduled.compareAndSet(false, true)) {
+            replayExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    replayScheduled.set(false);
+                    replay();
+                }
+            });
+        }
+    }
+
+    /**
+     * 在队列线程中复制请求体并写入日志，写入完成后在该线程回调结果；
+     * 相同 Idempotency-Key 的请求已在队列中时直接视为已加入
+     *
+     * @param request        请求，不支持流式请求体
+     * @param idempotencyKey 幂等键
+     * @param callback       加入结果的回调
+     */
+    void add(final Request request, final String idempotencyKey, final AddCallback callback) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                callback.onComplete(add(request, idempotencyKey));
+            }
+        });
+    }
+
+    /**
+     * 加入队列
+     *
+     * @return 是否已在队列中
+     */
+    private synchronized boolean add(Request request, String idempotencyKey) {
+        if (keys.containsKey(idempotencyKey)) {
+            return true;
+        }
+        byte[] body;
+        String contentType = null;
+        try {
+            Buffer buffer = new Buffer();
+            if (request.body() != null) {
+                request.body().writeTo(buffer);
+                MediaType mediaType = request.body().contentType();
+                contentType = mediaType != null ? mediaType.toString() : null;
+            }
+            body = buffer.readByteArray();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        if (body.length > maxBytes) {
+            return false;
+        }
+        Entry entry = new Entry(nextId++, System.currentTimeMillis(), idempotencyKey, request.method(),
+            request.url().toString(), contentType, body);
+        entries.put(entry.id, entry);
+        keys.put(idempotencyKey, entry);
+        totalBytes += body.length;
+
+        List<String> records = new ArrayList<>();
+        records.add(entry.toRecord());
+        List<Entry> dropped = new ArrayList<>();
+        Iterator<Entry> iterator = entries.values().iterator();
+        while ((entries.size() > maxEntries || totalBytes > maxBytes) && iterator.hasNext()) {
+            Entry oldest = iterator.next();
+            iterator.remove();
+            keys.remove(oldest.idempotencyKey);
+            totalBytes -= oldest.body.length;
+            records.add(deleteRecord(oldest.id));
+            dropped.add(oldest);
+        }
+        if (!append(records)) {
+            entries.remove(entry.id);
+            keys.remove(idempotencyKey);
+            totalBytes -= body.length;
+            return false;
+        }
+        for (Entry oldest : dropped) {
+            notifyDropped(oldest, "超出队列容量");
+        }
+        return true;
+    }
+
+    /**
+     * 分批重发，遇到网络错误或服务器错误时停止并稍后再试
+     */
+    private void replay() {
+        try {
+            loaded.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        dropExpired();
+        while (!isOffline()) {
+            List<Entry> batch;
+            synchronized (this) {
+                batch = new ArrayList<>(Math.min(batchSize, entries.size()));
+                for (Entry entry : entries.values()) {
+                    if (batch.size() >= batchSize) {
+                        break;
+                    }
+                    batch.add(entry);
+                }
+            }
+            if (batch.isEmpty()) {
+                failedReplays = 0;
+                return;
+            }
+            final Map<Entry, Response> results = send(batch);
+            List<Entry> completed = new ArrayList<>();
+            boolean retryLater = results.size() < batch.size();
+            for (Entry entry : batch) {
+                Response response = results.get(entry);
+                if (response == null) {
+                    continue;
+                }
+                if (isRetryable(response.code())) {
+                    retryLater = true;
+                } else {
+                    completed.add(entry);
+                }
+            }
+            remove(completed);
+            for (Entry entry : completed) {
+                Response response = results.get(entry);
+                for (Listener listener : listeners) {
+                    listener.onReplayed(entry.idempotencyKey, response.code(), response.message());
+                }
+            }
+            if (retryLater) {
+                scheduleRetry();
+                return;
+            }
+            failedReplays = 0;
+        }
+    }
+
+    /**
+     * 按顺序发出一批请求，同时进行的请求不超过 maxConcurrency；
+     * 任一请求失败后不再发出之后的请求
+     *
+     * @return 收到响应的请求及其响应（响应体已关闭）
+     */
+    private Map<Entry, Response> send(List<Entry> batch) {
+        final Map<Entry, Response> results = new LinkedHashMap<>();
+        final Semaphore permits = new Semaphore(maxConcurrency);
+        final AtomicBoolean failed = new AtomicBoolean();
+        final CountDownLatch latch = new CountDownLatch(batch.size());
+        int sent = 0;
+        for (final Entry entry : batch) {
+            permits.acquireUninterruptibly();
+            if (failed.get()) {
+                permits.release();
+                break;
+            }
+            sent++;
+            HttpUtil.client().newCall(entry.toRequest()).enqueue(new Callback() {
+                @Override
+                public void onResponse(Call call, Response response) {
+                    response.close();
+                    if (isRetryable(response.code())) {
+                        failed.set(true);
+                    }
+                    synchronized (results) {
+                        results.put(entry, response);
+                    }
+                    permits.release();
+                    latch.countDown();
+                }
+
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    failed.set(true);
+                    permits.release();
+                    latch.countDown();
+                }
+            });
+        }
+        for (int i = sent; i < batch.size(); i++) {
+            latch.countDown();
+        }
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (results) {
+            return new LinkedHashMap<>(results);
+        }
+    }
+
+    private static boolean isRetryable(int code) {
+        return code == 408 || code == 429 || code >= 500;
+    }
+
+    private void scheduleRetry() {
+        failedReplays++;
+        long delay = Math.min(MAX_RETRY_DELAY_MILLIS,
+            MIN_RETRY_DELAY_MILLIS << Math.min(failedReplays - 1, 10));
+        replayExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void dropExpired() {
+        List<Entry> expired = new ArrayList<>();
+        synchronized (this) {
+            long deadline = System.currentTimeMillis() - maxAgeMillis;
+            for (Entry entry : entries.values()) {
+                if (entry.createdAt < deadline) {
+                    expired.add(entry);
+                }
+            }
+        }
+        remove(expired);
+        for (Entry entry : expired) {
+            notifyDropped(entry, "已过期");
+        }
+    }
+
+    private synchronized void remove(List<Entry> removed) {
+        if (removed.isEmpty()) {
+            return;
+        }
+        List<String> records = new ArrayList<>(removed.size());
+        for (Entry entry : removed) {
+            if (entries.remove(entry.id) != null) {
+                keys.remove(entry.idempotencyKey);
+                totalBytes -= entry.body.length;
+                records.add(deleteRecord(entry.id));
+            }
+        }
+        // 已删除的记录远多于剩余请求时重写日志，避免文件无限增长
+        if (journalRecords > 64 && journalRecords > entries.size() * 4) {
+            rewriteJournal();
+        } else {
+            append(records);
+        }
+    }
+
+    private void notifyDropped(Entry entry, String reason) {
+        for (Listener listener : listeners) {
+            listener.onDropped(entry.idempotencyKey, reason);
+        }
+    }
+
+    /**
+     * 读取日志，恢复队列；存在删除记录或损坏的记录时重写日志
+     */
+    private void load() {
+        if (!journalFile.exists()) {
+            return;
+        }
+        int records = 0;
+        try {
+            BufferedSource source = Okio.buffer(Okio.source(journalFile));
+            try {
+                String line;
+                while ((line = source.readUtf8Line()) != null) {
+                    records++;
+                    String[] fields = verify(line);
+                    if (fields == null) {
+                        continue;
+                    }
+                    try {
+                        if ("A".equals(fields[0]) && fields.length == 8) {
+                            Entry entry = Entry.fromRecord(fields);
+                            entries.put(entry.id, entry);
+                            keys.put(entry.idempotencyKey, entry);
+                            totalBytes += entry.body.length;
+                            nextId = Math.max(nextId, entry.id + 1);
+                        } else if ("D".equals(fields[0]) && fields.length == 2) {
+                            Entry entry = entries.remove(Long.parseLong(fields[1]));
+                            if (entry != null) {
+                                keys.remove(entry.idempotencyKey);
+                                totalBytes -= entry.body.length;
+                            }
+                        }
+                    } catch (RuntimeException e) {
+                        // 校验通过但内容无法解析，跳过该记录
+                    }
+                }
+            } finally {
+                source.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        journalRecords = records;
+        if (records != entries.size()) {
+            rewriteJournal();
+        }
+    }
+
+    private boolean append(List<String> records) {
+        try {
+            FileOutputStream outputStream = new FileOutputStream(journalFile, true);
+            try {
+                BufferedSink sink = Okio.buffer(Okio.sink(outputStream));
+                for (String record : records) {
+                    sink.writeUtf8(record).writeByte('\n');
+                }
+                sink.flush();
+                outputStream.getFD().sync();
+            } finally {
+                outputStream.close();
+            }
+            journalRecords += records.size();
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private void rewriteJournal() {
+        File tempFile = new File(journalFile.getPath() + ".tmp");
+        try {
+            FileOutputStream outputStream = new FileOutputStream(tempFile);
+            try {
+                BufferedSink sink = Okio.buffer(Okio.sink(outputStream));
+                for (Entry entry : entries.values()) {
+                    sink.writeUtf8(entry.toRecord()).writeByte('\n');
+                }
+                sink.flush();
+                outputStream.getFD().sync();
+            } finally {
+                outputStream.close();
+            }
+            if (tempFile.renameTo(journalFile)) {
+                journalRecords = entries.size();
+            } else {
+                tempFile.delete();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static String deleteRecord(long id) {
+        return sign("D\t" + id);
+    }
+
+    /**
+     * 在记录末尾追加 CRC32 校验
+     */
+    private static String sign(String record) {
+        CRC32 crc = new CRC32();
+        crc.update(ByteString.encodeUtf8(record).toByteArray());
+        return record + '\t' + Long.toHexString(crc.getValue());
+    }
+
+    /**
+     * 校验记录并拆分字段
+     *
+     * @return 字段（不含校验值），记录不完整或校验失败时返回 null
+     */
+    private static String[] verify(String line) {
+        int tab = line.lastIndexOf('\t');
+        if (tab == -1) {
+            return null;
+        }
+        String record = line.substring(0, tab);
+        if (!sign(record).equals(line)) {
+            return null;
+        }
+        return record.split("\t", -1);
+    }
+
+    private static String encode(String value) {
+        return value == null ? "" : ByteString.encodeUtf8(value).base64();
+    }
+
+    private static String decode(String value) {
+        if (value.isEmpty()) {
+            return null;
+        }
+        ByteString bytes = ByteString.decodeBase64(value);
+        if (bytes == null) {
+            throw new IllegalArgumentException("invalid base64");
+        }
+        return bytes.utf8();
+    }
+
+    /**
+     * 加入队列的结果回调，在队列线程中回调
+     */
+    interface AddCallback {
+        /**
+         * 请求体已写入日志，或未能加入队列
+         *
+         * @param added 是否已加入
+         */
+        void onComplete(boolean added);
+    }
+
+    /**
+     * 重发结果监听，在后台线程回调
+     */
+    public interface Listener {
+        /**
+         * 请求重发完成，包括 4xx 等不再重试的响应
+         *
+         * @param idempotencyKey 请求的幂等键
+         * @param code           响应状态码
+         * @param message        响应状态信息
+         */
+        void onReplayed(String idempotencyKey, int code, String message);
+
+        /**
+         * 请求因过期或超出容量被丢弃
+         *
+         * @param idempotencyKey 请求的幂等键
+         * @param reason         原因
+         */
+        default void onDropped(String idempotencyKey, String reason) {
+            // 请求被丢弃
+        }
+    }
+
+    /**
+     * 队列中的一个请求
+     */
+    private static final class Entry {
+
+        final long id;
+        final long createdAt;
+        final String idempotencyKey;
+        final String method;
+        final String url;
+        final String contentType;
+        final byte[] body;
+
+        Entry(long id, long createdAt, String idempotencyKey, String method, String url,
+              String contentType, byte[] body) {
+            this.id = id;
+            this.createdAt = createdAt;
+            this.idempotencyKey = idempotencyKey;
+            this.method = method;
+            this.url = url;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        Request toRequest() {
+            RequestBody requestBody = "GET".equals(method) || "HEAD".equals(method) ? null
+                : RequestBody.create(body, contentType != null ? MediaType.parse(contentType) : null);
+            return new Request.Builder()
+                .url(url)
+                .method(method, requestBody)
+                .header("Idempotency-Key", idempotencyKey)
+                .build();
+        }
+
+        String toRecord() {
+            return sign("A\t" + id + '\t' + createdAt + '\t' + encode(idempotencyKey) + '\t' + method + '\t'
+                + encode(url) + '\t' + encode(contentType) + '\t' + ByteString.of(body).base64());
+        }
+
+        static Entry fromRecord(String[] fields) {
+            ByteString body = ByteString.decodeBase64(fields[7]);
+            if (body == null) {
+                throw new IllegalArgumentException("invalid base64");
+            }
+            return new Entry(Long.parseLong(fields[1]), Long.parseLong(fields[2]), decode(fields[3]), fields[4],
+                decode(fields[5]), decode(fields[6]), body.toByteArray());
+        }
+    }
+}
@@ -1,42 +1,112 @@
 package cn.elevendev.utils;
 
-import android.os.Handler;
-import android.os.Looper;
+import android.content.Context;
+
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.InputStream;
+import okhttp3.Cache;
+import okhttp3.CacheControl;
 import okhttp3.Call;
 import okhttp3.Callback;
+import okhttp3.Dns;
 import okhttp3.FormBody;
+import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.Okio;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 public class HttpUtil {
-    
-    private static String baseUrl = "";
-    private static final OkHttpClient client = new OkHttpClient.Builder()
+
+    /** 在主线程回调，默认方式；没有主线程 Looper 时（如 JVM 单元测试）直接在请求线程回调 */
+    public static final Executor MAIN_THREAD = new MainThreadExecutor();
+    /** 直接在执行请求的后台线程回调，适合不涉及界面的调用方，回调中不要执行耗时操作 */
+    public static final Executor WORKER_THREAD = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    /** 请求加入离线队列时回调的错误信息 */
+    public static final String OUTBOX_MESSAGE = "网络不可用，已加入离线队列";
+
+    /** 下载文件的校验值与期望值不一致时回调的错误信息，此时已下载的文件已删除 */
+    public static final String CHECKSUM_MISMATCH_MESSAGE = "文件校验失败";
+
+    private static final HttpMetrics metrics = new HttpMetrics();
+    private static final CachingDns dns = new CachingDns(Dns.SYSTEM);
+    private static volatile OkHttpClient client = new OkHttpClient.Builder()
         .connectTimeout(60, TimeUnit.SECONDS)
         .readTimeout(60, TimeUnit.SECONDS)
         .writeTimeout(60, TimeUnit.SECONDS)
+        .eventListenerFactory(metrics.eventListenerFactory())
+        .dns(dns)
+        .addInterceptor(new CompressionInterceptor())
         .build();
-    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private static volatile Executor callbackExecutor = MAIN_THREAD;
+    private static final HttpDispatcher dispatcher = new HttpDispatcher();
+    private static final HttpCache cache = new HttpCache(HttpCache.DEFAULT_MAX_SIZE);
+    private static final HttpCoalescer coalescer = new HttpCoalescer();
+    private static final CircuitBreaker.Registry circuitBreakers = new CircuitBreaker.Registry();
+    private static volatile RetryPolicy defaultRetryPolicy;
+    private static volatile HttpOutbox outbox;
+    private static volatile CompressionInterceptor.Setting defaultCompression;
+    private static final DownloadManager downloadManager = new DownloadManager();
+    private static long spillThreshold;
+    private static volatile long progressIntervalMillis = ProgressReporter.DEFAULT_INTERVAL_MILLIS;
+    private static File spillDirectory;
+    private static final HttpClient defaultClient = new HttpClient(HttpClient.DEFAULT_NAME);
+    private static final Map<String, HttpClient> clients = new HashMap<>();
     
     public static void setUrl(String url) {
-        if (!url.endsWith("/")) {
-            url += "/";
-        }
-        baseUrl = url;
+        defaultClient.setUrl(url);
     }
     
     public static String getUrl() {
-        return baseUrl;
+        return defaultClient.getUrl();
+    }
+
+    /**
+     * 获取命名的客户端，不存在时创建。各客户端有独立的基础地址、超时及拦截器，共享连接池及调度器。
+     *
+     * @param name 名称，为 {@link HttpClient#DEFAULT_NAME} 时返回静态方法使用的默认客户端
+     * @return 客户端
+     */
+    public static HttpClient getClient(String name) {
+        if (HttpClient.DEFAULT_NAME.equals(name)) {
+            return defaultClient;
+        }
+        synchronized (clients) {
+            HttpClient httpClient = clients.get(name);
+            if (httpClient == null) {
+                httpClient = new HttpClient(name);
+                clients.put(name, httpClient);
+            }
+            return httpClient;
+        }
+    }
+
+    /**
+     * 设置默认的回调线程，对未在 {@link RequestOptions} 中指定回调线程的请求生效
+     *
+     * @param executor {@link #MAIN_THREAD}（默认）、{@link #WORKER_THREAD} 或自定义线程池
+     */
+    public static void setCallbackExecutor(Executor executor) {
+        callbackExecutor = executor != null ? executor : MAIN_THREAD;
     }
 
     /**
@@ -44,193 +114,1164 @@ public class HttpUtil {
      *
      * @param api      请求的 API 端点
      * @param params   提交的参数
-     * @param callback 请求结果的回调接口（UI线程回调）
+     * @param callback 请求结果的回调接口（在默认回调线程回调，默认为主线程）
+     * @return 请求句柄，可取消请求
+     */
+    public static HttpCall post(final String api, final Map<String, String> params, final HttpCallback callback) {
+        return post(api, params, HttpDispatcher.Priority.NORMAL, callback);
+    }
+
+    /**
+     * 按指定优先级发送 POST 请求
+     *
+     * @param api      请求的 API 端点
+     * @param params   提交的参数
+     * @param priority 请求优先级
+     * @param callback 请求结果的回调接口（在选项指定的回调线程回调，未指定时使用默认回调线程）
+     * @return 请求句柄，可修改优先级或取消
+     */
+    public static HttpCall post(final String api, final Map<String, String> params,
+                                final HttpDispatcher.Priority priority, final HttpCallback callback) {
+        return post(api, params, new RequestOptions().setPriority(priority), callback);
+    }
+
+    /**
+     * 按指定选项发送 POST 请求
+     *
+     * @param api      请求的 API 端点
+     * @param params   提交的参数
+     * @param options  请求选项，如优先级、重试策略
+     * @param callback 请求结果的回调接口（在选项指定的回调线程回调，未指定时使用默认回调线程）
+     * @return 请求句柄，可修改优先级或取消
+     */
+    public static HttpCall post(final String api, final Map<String, String> params,
+                                final RequestOptions options, final HttpCallback callback) {
+        return defaultClient.post(api, params, options, callback);
+    }
+
+    /**
+     * 发送 GET 请求并在后台线程中执行
+     *
+     * @param api      请求的 API 端点
+     * @param callback 请求结果的回调接口（在默认回调线程回调，默认为主线程）
+     * @return 请求句柄，可取消请求
+     */
+    public static HttpCall get(final String api, final HttpCallback callback) {
+        return get(api, HttpCache.Policy.DEFAULT, callback);
+    }
+
+    /**
+     * 按指定缓存策略发送 GET 请求
+     *
+     * @param api      请求的 API 端点
+     * @param policy   缓存策略
+     * @param callback 请求结果的回调接口（在默认回调线程回调，默认为主线程）
+     * @return 请求句柄，可取消请求
+     */
+    public static HttpCall get(final String api, final HttpCache.Policy policy, final HttpCallback callback) {
+        return get(api, policy, HttpDispatcher.Priority.NORMAL, callback);
+    }
+
+    /**
+     * 按指定优先级发送 GET 请求
+     *
+     * @param api      请求的 API 端点
+     * @param priority 请求优先级
+     * @param callback 请求结果的回调接口（在默认回调线程回调，默认为主线程）
+     * @return 请求句柄，可修改优先级或取消
+     */
+    public static HttpCall get(final String api, final HttpDispatcher.Priority priority, final HttpCallback callback) {
+        return get(api, HttpCache.Policy.DEFAULT, priority, callback);
+    }
+
+    /**
+     * 按指定缓存策略及优先级发送 GET 请求
+     *
+     * @param api      请求的 API 端点
+     * @param policy   缓存策略
+     * @param priority 请求优先级
+     * @param callback 请求结果的回调接口（在默认回调线程回调，默认为主线程）
+     * @return 请求句柄，可修改优先级或取消
+     */
+    public static HttpCall get(final String api, final HttpCache.Policy policy,
+                               final HttpDispatcher.Priority priority, final HttpCallback callback) {
+        return get(api, new RequestOptions().setCachePolicy(policy).setPriority(priority), callback);
+    }
+
+    /**
+     * 按指定选项发送 GET 请求
+     *
+     * @param api      请求的 API 端点
+     * @param options  请求选项，如缓存策略、优先级、重试策略
+     * @param callback 请求结果的回调接口（在选项指定的回调线程回调，未指定时使用默认回调线程）
+     * @return 请求句柄，可修改优先级或取消
+     */
+    public static HttpCall get(final String api, final RequestOptions options, final HttpCallback callback) {
+        return defaultClient.get(api, options, callback);
+    }
+
+    /**
+     * 发送 GET 请求并返回 Future，结果在请求线程中写入，不经过主线程
+     *
+     * @param api     请求的 API 端点
+     * @param options 请求选项，回调线程设置不生效
+     * @return 请求结果
+     */
+    public static HttpFuture getFuture(final String api, final RequestOptions options) {
+        return defaultClient.getFuture(api, options);
+    }
+
+    /**
+     * 发送 POST 请求并返回 Future，结果在请求线程中写入，不经过主线程
+     *
+     * @param api     请求的 API 端点
+     * @param params  提交的参数
+     * @param options 请求选项，回调线程设置不生效
+     * @return 请求结果
+     */
+    public static HttpFuture postFuture(final String api, final Map<String, String> params,
+                                        final RequestOptions options) {
+        return defaultClient.postFuture(api, params, options);
+    }
+
+    /**
+     * 同步发送 GET 请求，阻塞当前线程直到请求结束，不能在主线程调用
+     *
+     * @param api 请求的 API 端点
+     * @return 响应内容
+     * @throws IOException 请求失败，异常信息与 onFailure 中的错误信息相同
+     */
+    public static String getSync(final String api) throws IOException {
+        return getFuture(api, new RequestOptions()).await();
+    }
+
+    /**
+     * 同步发送 POST 请求，阻塞当前线程直到请求结束，不能在主线程调用
+     *
+     * @param api    请求的 API 端点
+     * @param params 提交的参数
+     * @return 响应内容
+     * @throws IOException 请求失败，异常信息与 onFailure 中的错误信息相同
+     */
+    public static String postSync(final String api, final Map<String, String> params) throws IOException {
+        return postFuture(api, params, new RequestOptions()).await();
+    }
+
+    /**
+     * 以流的方式发送 GET 请求，响应体不会整体读入内存
+     *
+     * @param api      请求的 API 端点
+     * @param callback 流式回调接口（onResponse 在后台线程回调，onFailure 在默认回调线程回调）
+     * @return 请求句柄，可取消请求
+     */
+    public static HttpCall getStream(final String api, final StreamCallback callback) {
+        return enqueueStream(defaultClient, defaultClient.url(api), "GET", null, new RequestOptions(), callback);
+    }
+
+    /**
+     * 以流的方式发送 POST 请求，响应体不会整体读入内存
+     *
+     * @param api      请求的 API 端点
+     * @param params   提交的参数
+     * @param callback 流式回调接口（onResponse 在后台线程回调，onFailure 在默认回调线程回调）
+     * @return 请求句柄，可取消请求
+     */
+    public static HttpCall postStream(final String api, final Map<String, String> params, final StreamCallback callback) {
+        return enqueueStream(defaultClient, defaultClient.url(api), "POST", formBody(params), new RequestOptions(),
+            callback);
+    }
+
+    /**
+     * 发送 GET 请求，在请求线程中用解码器直接从响应流解码，回调已解码的对象
+     *
+     * @param api      请求的 API 端点
+     * @param decoder  响应解码器，如 {@link JsonResponseDecoder}
+     * @param callback 解码结果的回调接口（在默认回调线程回调，默认为主线程）
+     * @param <T>      解码结果的类型
+     * @return 请求句柄，可取消请求
+     */
+    public static <T> HttpCall get(final String api, final ResponseDecoder<T> decoder,
+                                   final TypedCallback<T> callback) {
+        return get(api, decoder, new RequestOptions(), callback);
+    }
+
+    /**
+     * 按指定选项发送 GET 请求，在请求线程中用解码器直接从响应流解码，回调已解码的对象
+     * <p>
+     * 重试策略、熔断器及离线队列与 {@link #get(String, RequestOptions, HttpCallback)} 相同地生效，开始解码后不再重试。
+     * 解码后的对象不进入内存缓存，缓存策略中只有 {@link HttpCache.Policy#NO_CACHE} 生效，磁盘缓存仍按 HTTP 缓存头生效。
+     *
+     * @param api      请求的 API 端点
+     * @param decoder  响应解码器，如 {@link JsonResponseDecoder}
+     * @param options  请求选项，如优先级、重试策略、离线队列、回调线程、标签
+     * @param callback 解码结果的回调接口
+     * @param <T>      解码结果的类型
+     * @return 请求句柄，可取消请求
+     */
+    public static <T> HttpCall get(final String api, final ResponseDecoder<T> decoder,
+                                   final RequestOptions options, final TypedCallback<T> callback) {
+        return defaultClient.get(api, decoder, options, callback);
+    }
+
+    /**
+     * 按指定选项发送 POST 请求，在请求线程中用解码器直接从响应流解码，回调已解码的对象
+     *
+     * @param api      请求的 API 端点
+     * @param params   提交的参数
+     * @param decoder  响应解码器，如 {@link JsonResponseDecoder}
+     * @param options  请求选项，如优先级、重试策略、离线队列、回调线程、标签
+     * @param callback 解码结果的回调接口
+     * @param <T>      解码结果的类型
+     * @return 请求句柄，可取消请求
+     */
+    public static <T> HttpCall post(final String api, final Map<String, String> params,
+                                    final ResponseDecoder<T> decoder, final RequestOptions options,
+                                    final TypedCallback<T> callback) {
+        return defaultClient.post(api, params, decoder, options, callback);
+    }
+
+    /**
+     * 用编码器将对象编码为请求体发送 POST 请求
+     *
+     * @param api      请求的 API 端点
+     * @param body     被编码的对象
+     * @param codec    请求体编码器，如 {@link JsonRequestCodec}
+     * @param callback 请求结果的回调接口（在默认回调线程回调，默认为主线程）
+     * @param <T>      被编码对象的类型
+     * @return 请求句柄，可取消请求
+     */
+    public static <T> HttpCall post(final String api, final T body, final RequestCodec<T> codec,
+                                    final HttpCallback callback) {
+        return post(api, body, codec, new RequestOptions(), callback);
+    }
+
+    /**
+     * 按指定选项用编码器将对象编码为请求体发送 POST 请求。
+     * 编码在请求线程中进行，只编码一次，重试时复用。
+     *
+     * @param api      请求的 API 端点
+     * @param body     被编码的对象
+     * @param codec    请求体编码器，如 {@link JsonRequestCodec}
+     * @param options  请求选项，如压缩方式、优先级、重试策略
+     * @param callback 请求结果的回调接口（在选项指定的回调线程回调，未指定时使用默认回调线程）
+     * @param <T>      被编码对象的类型
+     * @return 请求句柄，可修改优先级或取消
      */
-    public static void post(final String api, final Map<String, String> params, final HttpCallback callback) {
-        final String url = baseUrl + api;
-        new Thread(new Runnable() {
+    public static <T> HttpCall post(final String api, final T body, final RequestCodec<T> codec,
+                                    final RequestOptions options, final HttpCallback callback) {
+        return defaultClient.post(api, body, codec, options, callback);
+    }
+
+    /**
+     * 设置默认的请求体压缩方式，对未在 {@link RequestOptions} 中指定压缩方式的请求生效
+     *
+     * @param compression 压缩方式，为 null 时不压缩（默认）
+     * @param minBytes    请求体不小于该字节数时才压缩
+     */
+    public static void setDefaultCompression(RequestOptions.Compression compression, long minBytes) {
+        defaultCompression = compression != null ? new CompressionInterceptor.Setting(compression, minBytes) : null;
+    }
+
+    /**
+     * 设置流式请求的落盘阈值，响应体超过该大小时先写入临时文件再交给调用方读取，
+     * 以便尽快释放连接
+     *
+     * @param threshold 阈值（字节），小于等于 0 时关闭
+     * @param directory 临时文件目录，如 context.getCacheDir()
+     */
+    public static synchronized void setSpillThreshold(long threshold, File directory) {
+        spillThreshold = threshold;
+        spillDirectory = directory;
+    }
+
+    /**
+     * 获取响应内存缓存，可用于调整缓存大小及查看命中统计
+     *
+     * @return 响应缓存
+     */
+    public static HttpCache getCache() {
+        return cache;
+    }
+
+    /**
+     * 开启磁盘缓存，由 OkHttp 按 HTTP 缓存头保存响应并自动发送条件请求
+     *
+     * @param directory 缓存目录，如 context.getCacheDir() 下的子目录
+     * @param maxSize   最大字节数
+     */
+    public static synchronized void setDiskCache(File directory, long maxSize) {
+        client = client.newBuilder()
+            .cache(new Cache(directory, maxSize))
+            .build();
+    }
+
+    /**
+     * 预先解析并连接到服务器，使之后的第一个请求不必等待 DNS、TCP 及 TLS
+     * <p>
+     * 在后台向每个地址发送一个 HEAD 请求，建立的连接留在连接池中（空闲 5 分钟内可复用）。
+     * 适合在 Application.onCreate 或启动页中调用，不阻塞调用线程。
+     *
+     * @param urls 要预连接的地址，不传时使用默认客户端及所有命名客户端的基础地址
+     */
+    public static void preconnect(String... urls) {
+        if (urls.length == 0) {
+            List<String> baseUrls = new ArrayList<>();
+            baseUrls.add(defaultClient.getUrl());
+            synchronized (clients) {
+                for (HttpClient httpClient : clients.values()) {
+                    baseUrls.add(httpClient.getUrl());
+                }
+            }
+            urls = baseUrls.toArray(new String[0]);
+        }
+        for (String url : urls) {
+            HttpUrl httpUrl = HttpUrl.parse(url);
+            if (httpUrl == null) {
+                continue;
+            }
+            dns.prefetch(httpUrl.host());
+            Request request = new Request.Builder()
+                .url(httpUrl)
+                .head()
+                .cacheControl(CacheControl.FORCE_NETWORK)
+                .build();
+            client.newCall(request).enqueue(new Callback() {
                 @Override
-                public void run() {
-                    FormBody.Builder formBuilder = new FormBody.Builder();
-                    for (Map.Entry<String, String> entry : params.entrySet()) {
-                        formBuilder.add(entry.getKey(), entry.getValue());
-                    }
-                    RequestBody requestBody = formBuilder.build();
-
-                    Response response = null;
-                    try {
-                        Request request = new Request.Builder()
-                            .url(url)
-                            .post(requestBody)
-                            .build();
-
-                        response = client.newCall(request).execute();
-
-                        if (response.isSuccessful()) {
-                            final String responseBody = response.body().string();
-                            mainHandler.post(new Runnable() {
-                                    @Override
-                                    public void run() {
-                                        callback.onSuccess(responseBody);
-                                    }
-                                });
-                        } else {
-                            mainHandler.post(new Runnable() {
-                                    @Override
-                                    public void run() {
-                                        callback.onFailure("网络异常");
-                                    }
-                                });
-                        }
-                    } catch (final IOException e) {
+                public void onResponse(Call call, Response response) {
+                    // 只需要连接，状态码无关紧要
+                    response.close();
+                }
+
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    // 预连接失败不影响之后的请求
+                }
+            });
+        }
+    }
+
+    /**
+     * 获取带缓存的 DNS 解析，可调整缓存时间、预先解析主机或在切换网络后清空缓存
+     *
+     * @return DNS 解析
+     */
+    public static CachingDns getDns() {
+        return dns;
+    }
+
+    /**
+     * 获取网络耗时统计，可查询各接口的 DNS、连接、TLS、首字节等耗时分布，或注册监听导出数据
+     *
+     * @return 网络耗时统计
+     */
+    public static HttpMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 设置默认重试策略，对未在 {@link RequestOptions} 中指定重试策略的请求生效，默认不重试
+     *
+     * @param retryPolicy 重试策略，为 null 时不重试
+     */
+    public static void setDefaultRetryPolicy(RetryPolicy retryPolicy) {
+        defaultRetryPolicy = retryPolicy;
+    }
+
+    /**
+     * 获取按主机管理的熔断器，可查询各主机的熔断状态、调整阈值或监听状态变化
+     *
+     * @return 熔断器集合
+     */
+    public static CircuitBreaker.Registry getCircuitBreakers() {
+        return circuitBreakers;
+    }
+
+    /**
+     * 取消指定标签的所有请求，标签通过 {@link HttpCall#setTag(Object)} 或
+     * {@link RequestOptions#setTag(Object)} 设置
+     *
+     * @param tag 标签
+     */
+    public static void cancelAll(Object tag) {
+        HttpCall.cancelAll(tag);
+    }
+
+    /**
+     * 开启离线请求队列，设置了 {@link RequestOptions#setQueueIfOffline(boolean)} 的请求在无网络或请求失败时
+     * 保存到应用私有目录，网络恢复后自动按顺序重发。多次调用返回同一个队列。
+     *
+     * @param context 上下文
+     * @return 离线请求队列，可调整容量、监听重发结果
+     */
+    public static synchronized HttpOutbox enableOutbox(Context context) {
+        if (outbox == null) {
+            HttpOutbox created = new HttpOutbox(new File(context.getFilesDir(), "http_outbox.journal"));
+            created.watchConnectivity(context);
+            outbox = created;
+            created.flush();
+        }
+        return outbox;
+    }
+
+    /**
+     * 获取离线请求队列
+     *
+     * @return 离线请求队列，未开启时返回 null
+     */
+    public static HttpOutbox getOutbox() {
+        return outbox;
+    }
+
+    static OkHttpClient client() {
+        return client;
+    }
+
+    /**
+     * 获取请求调度器，可用于调整并发数、单主机并发数及排队上限
+     *
+     * @return 请求调度器
+     */
+    public static HttpDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    /**
+     * 将请求提交到调度器，在调度线程中执行并将结果回调到指定线程
+     *
+     * @param httpClient 发出请求的客户端
+     * @param url        完整请求地址
+     * @param method     请求方法
+     * @param body       请求体，GET 请求为 null
+     * @param options    请求选项
+     * @param executor   执行回调的线程
+     * @param callback   请求结果的回调接口
+     * @return 请求句柄
+     */
+    static HttpCall enqueue(HttpClient httpClient, String url, String method, RequestBody body,
+                            RequestOptions options, Executor executor, HttpCallback callback) {
+        HttpCache.Policy policy = options.getCachePolicy();
+        HttpDispatcher.Priority priority = options.getPriority();
+        RetryPolicy retryPolicy = retryPolicyOf(body, options);
+        HttpCall httpCall = new HttpCall(dispatcher, coalescer);
+        callback = httpCall.wrap(callback, executor);
+        applyOptions(httpCall, options);
+        if (body instanceof ProgressRequestBody) {
+            ((ProgressRequestBody) body).setReporter(new ProgressReporter(callback, executor, progressIntervalMillis));
+        }
+        HttpUrl httpUrl = HttpUrl.parse(url);
+        if (httpUrl == null) {
+            postFailure(callback, "请求地址无效");
+            return httpCall;
+        }
+        Request.Builder builder = new Request.Builder()
+            .url(httpUrl)
+            .method(method, body)
+            .tag(CompressionInterceptor.Setting.class, compressionOf(body, options));
+        HttpOutbox queue = outboxOf(method, body, options);
+        String outboxKey = idempotencyKey(builder, queue, options);
+
+        OkHttpClient okHttpClient = httpClient.okHttpClient();
+        final String cacheKey = httpClient.scope() + httpUrl;
+        HttpCache.Entry cached = null;
+        if ("GET".equals(method)) {
+            cached = policy != HttpCache.Policy.NO_CACHE ? cache.get(cacheKey) : null;
+            // CACHE_FIRST 只直接使用有效期内的条目，过期的条目只用于条件请求
+            boolean usable = cached != null && (policy == HttpCache.Policy.STALE_WHILE_REVALIDATE
+                || policy == HttpCache.Policy.CACHE_FIRST && cached.isFresh(System.currentTimeMillis()));
+            if (usable) {
+                // 缓存内容直接回调，无需等待网络
+                cache.recordHit();
+                postSuccess(callback, cached.body);
+                if (policy == HttpCache.Policy.CACHE_FIRST) {
+                    return httpCall;
+                }
+                // 后台重新验证，仅更新缓存，不再回调
+                callback = null;
+            }
+            if (cached != null && cached.hasValidators()) {
+                // 自带条件请求头时 OkHttp 不使用磁盘缓存，304 会直接返回
+                builder = HttpCache.conditionalRequest(builder.build(), cached).newBuilder();
+            } else if (policy == HttpCache.Policy.CACHE_FIRST && cached == null) {
+                // 内存中没有时允许使用磁盘缓存中过期的响应
+                builder.cacheControl(new CacheControl.Builder()
+                    .maxStale(Integer.MAX_VALUE, TimeUnit.SECONDS)
+                    .build());
+            } else if (policy == HttpCache.Policy.NO_CACHE) {
+                builder.cacheControl(CacheControl.FORCE_NETWORK);
+            }
+        }
+        Request request = builder.build();
+        final HttpCache.Entry cachedEntry = cached;
+        HttpCallback resultCallback = callback;
+
+        final HttpCoalescer.Flight flight = new HttpCoalescer.Flight(
+            "GET".equals(method) ? httpClient.scope() + HttpCoalescer.key(request) : null);
+        RequestTask task = new RequestTask(okHttpClient, request, priority, flight, retryPolicy, queue, outboxKey) {
+            @Override
+            boolean handleResponse(Call call, Response response) {
+                if (response.code() == 304 && cachedEntry != null) {
+                    cache.recordConditionalHit();
+                    cache.put(cacheKey, cachedEntry.revalidated(response));
+                    deliver(cachedEntry.body, null);
+                    return true;
+                }
+                if (!response.isSuccessful()) {
+                    return false;
+                }
+                String result;
+                try {
+                    result = response.body().string();
+                } catch (IOException e) {
+                    // 服务器已处理请求，读取响应体失败时不重试，也不加入离线队列，避免重复提交
+                    if (call.isCanceled()) {
+                        deliver(null, "请求已取消");
+                    } else {
                         e.printStackTrace();
-                        mainHandler.post(new Runnable() {
-                                @Override
-                                public void run() {
-                                    String message = e.getMessage().equals("timeout") ? "请求超时" : "网络异常";
-                                    callback.onFailure("请求失败");
-                                }
-                            });
-                    } finally {
-                        if (response != null) {
-                            response.close();
-                        }
+                        deliver(null, "timeout".equals(e.getMessage()) ? "请求超时" : "网络异常");
+                    }
+                    return true;
+                }
+                if ("GET".equals(request.method()) && policy != HttpCache.Policy.NO_CACHE) {
+                    cache.recordResponse(response);
+                    if (HttpCache.isCacheable(response)) {
+                        cache.put(cacheKey, HttpCache.Entry.from(response, result));
+                    } else {
+                        cache.remove(cacheKey);
+                    }
+                }
+                deliver(result, null);
+                return true;
+            }
+
+            /**
+             * 将结果回调给发起请求及合并到该请求上的所有调用方
+             */
+            @Override
+            void deliver(String result, String error) {
+                for (HttpCallback callback : coalescer.complete(flight)) {
+                    if (result != null) {
+                        postSuccess(callback, result);
+                    } else {
+                        postFailure(callback, error);
                     }
                 }
-            }).start();
+            }
+        };
+        flight.task = task;
+
+        // 相同的 GET 请求正在进行时直接挂在其上，不再重复发出
+        HttpCoalescer.Flight joined = coalescer.join(flight, resultCallback);
+        if (joined != flight) {
+            if (priority.ordinal() < joined.task.getPriority().ordinal()) {
+                dispatcher.setPriority(joined.task, priority);
+            }
+            httpCall.attach(joined);
+            return httpCall;
+        }
+        httpCall.attach(flight);
+        task.submit();
+        return httpCall;
     }
 
     /**
-     * 发送 GET 请求并在后台线程中执行
+     * 请求的重试策略，不重试时返回 null
+     */
+    private static RetryPolicy retryPolicyOf(RequestBody body, RequestOptions options) {
+        // 只能写出一次的请求体（如 InputStream）无法重发
+        if (body != null && body.isOneShot()) {
+            return null;
+        }
+        return options.getRetryPolicy() != null ? options.getRetryPolicy() : defaultRetryPolicy;
+    }
+
+    /**
+     * 请求失败时使用的离线队列，不加入时返回 null
+     */
+    private static HttpOutbox outboxOf(String method, RequestBody body, RequestOptions options) {
+        // 上传的文件不加入离线队列，队列会将请求体整个读入内存
+        return options.isQueueIfOffline() && !"GET".equals(method)
+            && !(body instanceof ProgressRequestBody) ? outbox : null;
+    }
+
+    /**
+     * 设置 Idempotency-Key 请求头，加入离线队列的请求没有指定时自动生成
      *
-     * @param api      请求的 API 端点
-     * @param callback 请求结果的回调接口（UI线程回调）
-     */
-    public static void get(final String api, final HttpCallback callback) {
-		final String url = baseUrl + api;
-
-		new Thread(new Runnable() {
-				@Override
-				public void run() {
-					Response response = null;
-					try {
-						Request request = new Request.Builder()
-							.url(url)
-							.get()
-							.build();
-
-						response = client.newCall(request).execute();
-
-						if (response.isSuccessful()) {
-							final String responseBody = response.body().string();
-							mainHandler.post(new Runnable() {
-									@Override
-									public void run() {
-										callback.onSuccess(responseBody);
-									}
-								});
-						} else {
-							mainHandler.post(new Runnable() {
-									@Override
-									public void run() {
-										callback.onFailure("网络异常");
-									}
-								});
-						}
-					} catch (final IOException e) {
-						e.printStackTrace();
-						mainHandler.post(new Runnable() {
-								@Override
-								public void run() {
-									String message = e.getMessage().equals("timeout") ? "请求超时" : "网络异常";
-									callback.onFailure(message);
-								}
-							});
-					} finally {
-						if (response != null) {
-							response.close();
-						}
-					}
-				}
-			}).start();
-	}
-    
-    
+     * @return 幂等键，没有时返回 null
+     */
+    private static String idempotencyKey(Request.Builder builder, HttpOutbox queue, RequestOptions options) {
+        String idempotencyKey = options.getIdempotencyKey();
+        if (idempotencyKey == null && queue != null) {
+            idempotencyKey = UUID.randomUUID().toString();
+        }
+        if (idempotencyKey != null) {
+            builder.header("Idempotency-Key", idempotencyKey);
+        }
+        return idempotencyKey;
+    }
+
     /**
-     * 下载文件并保存到指定路径
+     * 请求的压缩设置，不压缩时返回 null
+     */
+    private static CompressionInterceptor.Setting compressionOf(RequestBody body, RequestOptions options) {
+        if (body == null || body instanceof ProgressRequestBody || options.isCompressionDisabled()) {
+            return null;
+        }
+        if (options.getCompression() != null) {
+            return new CompressionInterceptor.Setting(options.getCompression(), options.getCompressionThreshold());
+        }
+        return defaultCompression;
+    }
+
+    static Executor executorOf(RequestOptions options) {
+        return options.getCallbackExecutor() != null ? options.getCallbackExecutor() : callbackExecutor;
+    }
+
+    /**
+     * 按请求选项为句柄设置标签及绑定生命周期
+     */
+    private static void applyOptions(HttpCall httpCall, RequestOptions options) {
+        if (options.getTag() != null) {
+            httpCall.setTag(options.getTag());
+        }
+        if (options.getLifecycleOwner() != null) {
+            httpCall.bindLifecycle(options.getLifecycleOwner());
+        }
+    }
+
+    /**
+     * 将解码请求提交到调度器，在调度线程中解码响应体后回调结果
      *
-     * @param url             文件的下载链接
-     * @param destinationPath 文件保存的目标路径
-     * @param callback        下载进度及结果的回调接口
+     * @param httpClient 发出请求的客户端
+     * @param url        完整请求地址
+     * @param method     请求方法
+     * @param body       请求体，GET 请求为 null
+     * @param decoder    响应解码器
+     * @param options    请求选项
+     * @param callback   解码结果的回调接口
+     * @return 请求句柄
      */
-    public static void downloadFile(String url, String destinationPath, HttpCallback callback) {
-        Request request = new Request.Builder()
-                .url(url)
-                .build();
+    static <T> HttpCall enqueueTyped(HttpClient httpClient, String url, String method, RequestBody body,
+                                     final ResponseDecoder<T> decoder, RequestOptions options,
+                                     TypedCallback<T> callback) {
+        HttpCall httpCall = new HttpCall(dispatcher, coalescer);
+        final TypedCallback<T> typedCallback = httpCall.wrapTyped(callback, executorOf(options));
+        return enqueueStream(httpClient, httpCall, url, method, body, options, new StreamCallback() {
+            @Override
+            public void onResponse(BufferedSource source, long contentLength) throws IOException {
+                T result;
+                try {
+                    result = decoder.decode(source, contentLength);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                    typedCallback.onFailure("解析失败");
+                    return;
+                }
+                typedCallback.onSuccess(result);
+            }
 
-        client.newCall(request).enqueue(new Callback() {
             @Override
-            public void onFailure(Call call, IOException e) {
-                callback.onFailure("Download failed: " + e.getMessage()); // 网络请求失败时回调
+            public void onFailure(String errorMessage) {
+                typedCallback.onFailure(errorMessage);
             }
-                
+        });
+    }
+
+    /**
+     * 将流式请求提交到调度器，失败回调切换到选项指定的回调线程
+     *
+     * @param httpClient 发出请求的客户端
+     * @param url        完整请求地址
+     * @param method     请求方法
+     * @param body       请求体，GET 请求为 null
+     * @param options    请求选项
+     * @param callback   流式回调接口
+     * @return 请求句柄
+     */
+    static HttpCall enqueueStream(HttpClient httpClient, String url, String method, RequestBody body,
+                                  RequestOptions options, StreamCallback callback) {
+        HttpCall httpCall = new HttpCall(dispatcher, coalescer);
+        return enqueueStream(httpClient, httpCall, url, method, body, options,
+            httpCall.wrapStream(callback, executorOf(options)));
+    }
+
+    /**
+     * 将流式请求提交到调度器，在调度线程中把响应体交给调用方读取
+     * <p>
+     * 与 {@link #enqueue} 相同地使用重试策略、熔断器及离线队列；响应体不进入内存缓存，
+     * 缓存策略只有 {@link HttpCache.Policy#NO_CACHE} 生效。开始读取响应体后不再重试。
+     *
+     * @param httpClient     发出请求的客户端
+     * @param httpCall       请求句柄
+     * @param url            完整请求地址
+     * @param method         请求方法
+     * @param body           请求体，GET 请求为 null
+     * @param options        请求选项
+     * @param streamCallback 已由句柄包装的流式回调接口
+     * @return 请求句柄
+     */
+    private static HttpCall enqueueStream(HttpClient httpClient, HttpCall httpCall, String url, String method,
+                                          RequestBody body, RequestOptions options,
+                                          final StreamCallback streamCallback) {
+        applyOptions(httpCall, options);
+        RetryPolicy retryPolicy = retryPolicyOf(body, options);
+        HttpUrl httpUrl = HttpUrl.parse(url);
+        if (httpUrl == null) {
+            postFailure(streamCallback, "请求地址无效");
+            return httpCall;
+        }
+        Request.Builder builder = new Request.Builder()
+            .url(httpUrl)
+            .method(method, body)
+            .tag(CompressionInterceptor.Setting.class, compressionOf(body, options));
+        if (options.getCachePolicy() == HttpCache.Policy.NO_CACHE) {
+            builder.cacheControl(CacheControl.FORCE_NETWORK);
+        }
+        HttpOutbox queue = outboxOf(method, body, options);
+        String outboxKey = idempotencyKey(builder, queue, options);
+        Request request = builder.build();
+
+        OkHttpClient okHttpClient = httpClient.okHttpClient();
+        // 流式请求不合并，没有键也没有 HttpCallback，只用于取消
+        final HttpCoalescer.Flight flight = new HttpCoalescer.Flight(null);
+        RequestTask task = new RequestTask(okHttpClient, request, options.getPriority(), flight, retryPolicy, queue,
+            outboxKey) {
             @Override
-            public void onResponse(Call call, Response response) throws IOException {
+            boolean handleResponse(Call call, Response response) {
                 if (!response.isSuccessful()) {
-                    callback.onFailure("Download failed: Network error, code " + response.code());
-                    return;
+                    return false;
+                }
+                try {
+                    readStream(response.body(), streamCallback);
+                    deliver(null, null);
+                } catch (IOException e) {
+                    // 调用方已开始读取响应体，不重试
+                    e.printStackTrace();
+                    deliver(null, call.isCanceled() ? "请求已取消" : "读取失败");
+                } catch (RuntimeException e) {
+                    // 调用方读取时抛出的异常不能逃出调度线程，否则请求永远不会结束；
+                    // 服务器已处理请求，不加入离线队列
+                    e.printStackTrace();
+                    deliver(null, "读取失败");
                 }
+                return true;
+            }
 
-                ResponseBody body = response.body();
-                if (body != null) {
-                    try {
-                        long fileSize = body.contentLength();
-                        File destinationFile = new File(destinationPath);
-                        InputStream inputStream = body.byteStream();
-                        FileOutputStream outputStream = new FileOutputStream(destinationFile);
-                        byte[] buffer = new byte[2048];
-                        int bytesRead;
-                        long downloadedBytes = 0;
-
-                        while ((bytesRead = inputStream.read(buffer)) != -1) {
-                            outputStream.write(buffer, 0, bytesRead);
-                            downloadedBytes += bytesRead;
-                            int progress = (int) ((downloadedBytes * 100) / fileSize);
-                                
-                            mainHandler.post(new Runnable() {
-                                @Override
-                                public void run() {
-                                    callback.onProgress(progress);
-                                }
-                            });
-                        }
+            /**
+             * 请求结束，失败时回调错误信息，响应内容已由调用方读取
+             */
+            @Override
+            void deliver(String result, String error) {
+                coalescer.complete(flight);
+                if (error != null) {
+                    postFailure(streamCallback, error);
+                }
+            }
+        };
+        flight.task = task;
+        httpCall.attach(flight);
+        task.submit();
+        return httpCall;
+    }
 
-                        outputStream.close();
-                        inputStream.close();
-                        mainHandler.post(new Runnable() {
-                            @Override
-                            public void run() {
-                                callback.onSuccess("下载成功");
-                            }
-                        });
-                    } catch (IOException e) {
-                        mainHandler.post(new Runnable() {
-                            @Override
-                            public void run() {
-                                callback.onFailure("下载失败");
+    /**
+     * 调度器中执行的网络请求，统一处理熔断器、重试及离线队列，成功的响应交给子类处理
+     */
+    private abstract static class RequestTask extends HttpDispatcher.Task {
+
+        final Request request;
+        private final OkHttpClient okHttpClient;
+        private final HttpCoalescer.Flight flight;
+        private final RetryPolicy retryPolicy;
+        private final HttpOutbox queue;
+        private final String outboxKey;
+        private int retries;
+
+        /**
+         * @param okHttpClient 发出请求的客户端
+         * @param request      请求
+         * @param priority     优先级
+         * @param flight       请求对应的合并项，用于取消
+         * @param retryPolicy  重试策略，不重试时为 null
+         * @param queue        失败时加入的离线队列，不加入时为 null
+         * @param outboxKey    加入离线队列时使用的幂等键
+         */
+        RequestTask(OkHttpClient okHttpClient, Request request, HttpDispatcher.Priority priority,
+                    HttpCoalescer.Flight flight, RetryPolicy retryPolicy, HttpOutbox queue, String outboxKey) {
+            super(request.url().host(), priority);
+            this.okHttpClient = okHttpClient;
+            this.request = request;
+            this.flight = flight;
+            this.retryPolicy = retryPolicy;
+            this.queue = queue;
+            this.outboxKey = outboxKey;
+        }
+
+        /**
+         * 处理收到的响应，响应随后关闭
+         * <p>
+         * 开始读取响应体后服务器已处理请求，不再重试，读取失败时直接调用 {@link #deliver}。
+         *
+         * @param call     网络请求
+         * @param response 响应
+         * @return 已处理时返回 true；返回 false 时按状态码重试、加入离线队列或回调错误
+         */
+        abstract boolean handleResponse(Call call, Response response);
+
+        /**
+         * 请求结束，回调结果或错误信息
+         *
+         * @param result 响应内容，失败时为 null
+         * @param error  错误信息，成功时为 null
+         */
+        abstract void deliver(String result, String error);
+
+        /**
+         * 提交到调度器，确定没有网络时不再尝试，写入离线队列后回调；未能加入时照常发出
+         */
+        void submit() {
+            // Task 的 dispatcher 字段在入队后才设置，这里使用全局调度器
+            if (queue != null && queue.isOffline()) {
+                queue.add(request, outboxKey, new HttpOutbox.AddCallback() {
+                    @Override
+                    public void onComplete(boolean added) {
+                        if (!added) {
+                            if (!HttpUtil.dispatcher.enqueue(RequestTask.this)) {
+                                reject();
                             }
-                        });
+                            return;
+                        }
+                        deliver(null, OUTBOX_MESSAGE);
                     }
+                });
+                return;
+            }
+            if (!HttpUtil.dispatcher.enqueue(this)) {
+                reject();
+            }
+        }
+
+        @Override
+        void execute() {
+            CircuitBreaker breaker = circuitBreakers.get(host);
+            long permit = breaker.allowRequest();
+            if (permit < 0) {
+                // 主机熔断中，直接失败，不再重试
+                fail("服务暂不可用");
+                return;
+            }
+            Call call = okHttpClient.newCall(request);
+            flight.setCall(call);
+            Response response;
+            try {
+                response = call.execute();
+            } catch (IOException e) {
+                // 只有收到响应前的失败可以重试，此时服务器可能尚未处理请求
+                if (call.isCanceled()) {
+                    breaker.recordIgnored(permit);
+                    deliver(null, "请求已取消");
+                    return;
+                }
+                e.printStackTrace();
+                breaker.recordFailure(permit);
+                if (retryPolicy != null && retryPolicy.shouldRetry(request.method(), e, retries)) {
+                    scheduleRetry(-1);
                 } else {
-                    mainHandler.post(new Runnable() {
-                        @Override
-                        public void run() {
-                            callback.onFailure("网络异常");
-                        }
-                    });
+                    fail("timeout".equals(e.getMessage()) ? "请求超时" : "网络异常");
                 }
+                return;
             }
-        });
+
+            // 每次尝试只记录一次结果，之后读取响应体失败不再计入熔断器
+            if (response.code() >= 500) {
+                breaker.recordFailure(permit);
+            } else {
+                breaker.recordSuccess(permit);
+            }
+            try {
+                if (handleResponse(call, response)) {
+                    return;
+                }
+                if (retryPolicy != null && retryPolicy.shouldRetry(request.method(), response.code(), retries)) {
+                    scheduleRetry(parseRetryAfter(response.header("Retry-After")));
+                } else if (response.code() >= 500) {
+                    fail("网络异常");
+                } else {
+                    deliver(null, "网络异常");
+                }
+            } finally {
+                response.close();
+            }
+        }
+
+        /**
+         * 请求最终失败，能加入离线队列时在写入日志后回调，否则直接回调错误信息
+         */
+        private void fail(final String error) {
+            if (queue == null) {
+                deliver(null, error);
+                return;
+            }
+            queue.add(request, outboxKey, new HttpOutbox.AddCallback() {
+                @Override
+                public void onComplete(boolean added) {
+                    deliver(null, added ? OUTBOX_MESSAGE : error);
+                }
+            });
+        }
+
+        /**
+         * 按退避时间重新排队，等待期间不占用并发名额
+         */
+        private void scheduleRetry(long retryAfterMillis) {
+            long delayMillis = retryPolicy.delayMillis(retries, retryAfterMillis);
+            retries++;
+            metrics.recordRetry(request);
+            retryAfter(delayMillis);
+        }
+
+        @Override
+        void reject() {
+            deliver(null, "请求过多，请稍后重试");
+        }
+    }
+
+    /**
+     * 将响应体交给调用方读取，超过落盘阈值时先写入临时文件
+     *
+     * @param body     响应体
+     * @param callback 流式回调接口
+     */
+    private static void readStream(ResponseBody body, StreamCallback callback) throws IOException {
+        long threshold;
+        File directory;
+        synchronized (HttpUtil.class) {
+            threshold = spillThreshold;
+            directory = spillDirectory;
+        }
+        long contentLength = body.contentLength();
+        BufferedSource source = body.source();
+        if (threshold <= 0 || directory == null || (contentLength >= 0 && contentLength <= threshold)) {
+            callback.onResponse(source, contentLength);
+            return;
+        }
+
+        Buffer head = new Buffer();
+        if (contentLength < 0) {
+            // 长度未知时先读取至多 threshold 字节，未超出阈值则直接从内存交给调用方
+            while (head.size() <= threshold) {
+                if (source.read(head, 8192) == -1) {
+                    callback.onResponse(head, head.size());
+                    return;
+                }
+            }
+        }
+
+        File spillFile = File.createTempFile("http", ".tmp", directory);
+        try {
+            BufferedSink sink = Okio.buffer(Okio.sink(spillFile));
+            try {
+                sink.writeAll(head);
+                sink.writeAll(source);
+            } finally {
+                sink.close();
+            }
+            // 数据已落盘，提前释放连接
+            body.close();
+
+            BufferedSource fileSource = Okio.buffer(Okio.source(spillFile));
+            try {
+                callback.onResponse(fileSource, spillFile.length());
+            } finally {
+                fileSource.close();
+            }
+        } finally {
+            spillFile.delete();
+        }
+    }
+
+    /**
+     * 解析 Retry-After 中的秒数
+     *
+     * @return 等待时间（毫秒），没有或为日期格式时返回 -1
+     */
+    private static long parseRetryAfter(String retryAfter) {
+        if (retryAfter == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(retryAfter.trim()) * 1000;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 回调已由 {@link HttpCall} 包装，会切换到请求指定的回调线程
+     */
+    private static void postSuccess(HttpCallback callback, String response) {
+        if (callback != null) {
+            callback.onSuccess(response);
+        }
+    }
+
+    private static void postFailure(StreamCallback callback, String message) {
+        callback.onFailure(message);
+    }
+
+    static RequestBody formBody(Map<String, String> params) {
+        FormBody.Builder formBuilder = new FormBody.Builder();
+        for (Map.Entry<String, String> entry : params.entrySet()) {
+            formBuilder.add(entry.getKey(), entry.getValue());
+        }
+        return formBuilder.build();
+    }
+
+    private static void postFailure(HttpCallback callback, String message) {
+        if (callback != null) {
+            callback.onFailure(message);
+        }
+    }
+    
+    
+    /**
+     * 下载文件并保存到指定路径
+     * <p>
+     * 服务器支持 Range 时分段并行下载，中断后再次调用会从上次的位置继续。
+     *
+     * @param url             文件的下载链接
+     * @param destinationPath 文件保存的目标路径
+     * @param callback        下载进度及结果的回调接口
+     * @return 下载句柄，可取消下载，已下载的部分保留用于续传
+     */
+    public static HttpCall downloadFile(String url, String destinationPath, HttpCallback callback) {
+        return downloadFile(url, destinationPath, new DownloadOptions(), callback);
+    }
+
+    /**
+     * 下载文件并保存到指定路径，指定最大分段数
+     *
+     * @param url             文件的下载链接
+     * @param destinationPath 文件保存的目标路径
+     * @param segments        最大并行分段数，为 1 时单连接下载（仍支持断点续传）
+     * @param callback        下载进度及结果的回调接口
+     * @return 下载句柄，可取消下载，已下载的部分保留用于续传
+     */
+    public static HttpCall downloadFile(String url, String destinationPath, int segments, HttpCallback callback) {
+        return downloadFile(url, destinationPath, new DownloadOptions().setSegments(segments), callback);
+    }
+
+    /**
+     * 下载文件并保存到指定路径，指定下载选项
+     *
+     * @param url             文件的下载链接
+     * @param destinationPath 文件保存的目标路径
+     * @param options         下载选项，如分段数、缓冲区大小、是否预分配、完成后是否同步到磁盘及校验算法
+     * @param callback        下载进度及结果的回调接口
+     * @return 下载句柄，可取消下载，已下载的部分保留用于续传；
+     *         目标文件正以其他地址或不同的校验设置下载时直接回调失败
+     */
+    public static HttpCall downloadFile(String url, String destinationPath, DownloadOptions options, HttpCallback callback) {
+        return enqueueDownload(defaultClient, url, destinationPath, options, callback);
+    }
+
+    /**
+     * 通过指定客户端下载文件
+     *
+     * @see #downloadFile(String, String, DownloadOptions, HttpCallback)
+     */
+    static HttpCall enqueueDownload(HttpClient httpClient, String url, String destinationPath, DownloadOptions options,
+                                    HttpCallback callback) {
+        HttpCall httpCall = new HttpCall(dispatcher, coalescer);
+        Executor executor = options.getCallbackExecutor() != null ? options.getCallbackExecutor() : callbackExecutor;
+        HttpUtil.HttpCallback wrapped = httpCall.wrap(callback, executor);
+        HttpDownloader downloader = downloadManager.enqueue(new HttpDownloader(httpClient.okHttpClient(), url,
+            destinationPath, options, downloadManager, executor, progressIntervalMillis), wrapped, executor);
+        if (downloader == null) {
+            postFailure(wrapped, "目标文件正在下载");
+            return httpCall;
+        }
+        httpCall.attach(downloader);
+        return httpCall;
+    }
+
+    /**
+     * 以 multipart/form-data 上传文件及字段
+     * <p>
+     * 文件在发送时边读边写，不会整体读入内存，上传进度通过 {@link HttpCallback#onProgress} 回调。
+     *
+     * @param api      请求的 API 端点
+     * @param form     表单
+     * @param callback 上传进度及结果的回调接口
+     * @return 请求句柄，可取消上传
+     */
+    public static HttpCall upload(String api, MultipartForm form, HttpCallback callback) {
+        return upload(api, form, new RequestOptions(), callback);
+    }
+
+    /**
+     * 按指定选项以 multipart/form-data 上传文件及字段。
+     * 包含 InputStream 的表单不会重试；上传请求不会加入离线队列。
+     *
+     * @param api      请求的 API 端点
+     * @param form     表单
+     * @param options  请求选项，如优先级、重试策略、回调线程
+     * @param callback 上传进度及结果的回调接口
+     * @return 请求句柄，可取消上传
+     */
+    public static HttpCall upload(String api, MultipartForm form, RequestOptions options, HttpCallback callback) {
+        return defaultClient.upload(api, form, options, callback);
+    }
+
+    /**
+     * 分块上传大文件，网络中断或进程被杀后再次调用会从服务器已接收的位置继续
+     * <p>
+     * 服务器需支持 Google Cloud Storage 等采用的可续传上传协议：POST 创建会话后按
+     * Content-Range 逐块 PUT，未完成的块返回 308 及已接收的 Range。
+     * 同一文件同一时间只应有一个上传。
+     *
+     * @param url      创建上传会话的地址
+     * @param file     要上传的文件，上传过程中不能修改
+     * @param options  上传选项，如分块大小、重试次数及会话保存目录
+     * @param callback 上传进度及结果的回调接口，成功时返回最后一个请求的响应内容
+     * @return 上传句柄，可取消上传，会话保留用于续传
+     */
+    public static HttpCall uploadFile(String url, File file, UploadOptions options, HttpCallback callback) {
+        return enqueueUpload(defaultClient, url, file, options, callback);
+    }
+
+    /**
+     * 通过指定客户端分块上传文件
+     *
+     * @see #uploadFile(String, File, UploadOptions, HttpCallback)
+     */
+    static HttpCall enqueueUpload(HttpClient httpClient, String url, File file, UploadOptions options,
+                                  HttpCallback callback) {
+        HttpCall httpCall = new HttpCall(dispatcher, coalescer);
+        Executor executor = options.getCallbackExecutor() != null ? options.getCallbackExecutor() : callbackExecutor;
+        HttpCallback wrapped = httpCall.wrap(callback, executor);
+        ResumableUploader uploader = new ResumableUploader(httpClient.okHttpClient(), url, file, options, wrapped, executor,
+            progressIntervalMillis);
+        httpCall.attach(uploader);
+        uploader.start();
+        return httpCall;
+    }
+
+    /**
+     * 获取下载管理器，可调整同时下载数、总带宽上限，或查询排队及进行中的下载
+     *
+     * @return 下载管理器
+     */
+    public static DownloadManager getDownloadManager() {
+        return downloadManager;
+    }
+
+    /**
+     * 设置进度回调的最小间隔，默认 16 毫秒（约一帧）
+     *
+     * @param intervalMillis 间隔（毫秒）
+     */
+    public static void setProgressInterval(long intervalMillis) {
+        progressIntervalMillis = intervalMillis;
     }
 
     /**
@@ -259,6 +1300,66 @@ public class HttpUtil {
         default void onProgress(int progress) {
             // 进度更新接口
         }
+        /**
+         * 请求进度更新时回调，每个回调间隔内至多回调一次
+         * <p>
+         * 默认实现在总长度已知时转发给 {@link #onProgress(int)}。
+         *
+         * @param bytesRead      已传输的字节数
+         * @param contentLength  总字节数，未知时为 -1
+         * @param bytesPerSecond 传输速度（字节/秒）
+         * @param etaMillis      预计剩余时间（毫秒），未知时为 -1
+         */
+        default void onProgress(long bytesRead, long contentLength, long bytesPerSecond, long etaMillis) {
+            if (contentLength > 0) {
+                onProgress((int) (bytesRead * 100 / contentLength));
+            }
+        }
+    }
+
+    /**
+     * 解码请求的回调接口
+     *
+     * @param <T> 解码结果的类型
+     */
+    public interface TypedCallback<T> {
+        /**
+         * 请求成功并解码完成时回调
+         *
+         * @param result 解码结果
+         */
+        void onSuccess(T result);
+        /**
+         * 请求或解码失败时回调
+         *
+         * @param errorMessage 错误信息
+         */
+        default void onFailure(String errorMessage) {
+            // 请求失败
+        }
+    }
+
+    /**
+     * 流式请求回调接口
+     */
+    public interface StreamCallback {
+        /**
+         * 请求成功时在后台线程回调，方法返回后响应即被关闭
+         *
+         * @param source        响应体，可通过 source.inputStream() 转为 InputStream
+         * @param contentLength 响应体长度，未知时为 -1
+         * @throws IOException 读取失败时抛出，将回调 onFailure；抛出 RuntimeException 时同样回调 onFailure
+         */
+        void onResponse(BufferedSource source, long contentLength) throws IOException;
+        /**
+         * 请求失败时回调，在请求的回调线程执行，即 {@link RequestOptions#setCallbackExecutor(Executor)}
+         * 或 {@link HttpUtil#setCallbackExecutor(Executor)} 指定的线程，默认为主线程
+         *
+         * @param errorMessage 错误信息
+         */
+        default void onFailure(String errorMessage) {
+            // 请求失败
+        }
     }
 
 }
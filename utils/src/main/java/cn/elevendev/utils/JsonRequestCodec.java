@@ -0,0 +1,84 @@
+package cn.elevendev.utils;
+
+import android.util.JsonWriter;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+import okio.BufferedSink;
+
+/**
+ * 基于 {@link JsonWriter} 的流式 JSON 编码器
+ * <p>
+ * 边生成边写入缓冲区，不生成中间的 JSONObject 树及字符串。子类只需实现
+ * {@link #write(JsonWriter, Object)}，例如：
+ * <pre>
+ * new JsonRequestCodec&lt;User&gt;() {
+ *     protected void write(JsonWriter writer, User user) throws IOException {
+ *         writer.beginObject();
+ *         writer.name("name").value(user.name);
+ *         writer.endObject();
+ *     }
+ * };
+ * </pre>
+ * 已有 JSONObject 或 JSONArray 时可直接使用 {@link #JSON_OBJECT} 或 {@link #JSON_ARRAY}。
+ *
+ * @param <T> 被编码对象的类型
+ */
+public abstract class JsonRequestCodec<T> implements RequestCodec<T> {
+
+    /** JSON 的 Content-Type */
+    public static final String CONTENT_TYPE = "application/json; charset=utf-8";
+
+    /** 编码 JSONObject */
+    public static final RequestCodec<JSONObject> JSON_OBJECT = new RequestCodec<JSONObject>() {
+        @Override
+        public String contentType() {
+            return CONTENT_TYPE;
+        }
+
+        @Override
+        public void encode(JSONObject value, BufferedSink sink) throws IOException {
+            sink.writeUtf8(value.toString());
+        }
+    };
+
+    /** 编码 JSONArray */
+    public static final RequestCodec<JSONArray> JSON_ARRAY = new RequestCodec<JSONArray>() {
+        @Override
+        public String contentType() {
+            return CONTENT_TYPE;
+        }
+
+        @Override
+        public void encode(JSONArray value, BufferedSink sink) throws IOException {
+            sink.writeUtf8(value.toString());
+        }
+    };
+
+    @Override
+    public String contentType() {
+        return CONTENT_TYPE;
+    }
+
+    @Override
+    public final void encode(T value, BufferedSink sink) throws IOException {
+        // JSON 规定使用 UTF-8 编码
+        JsonWriter writer = new JsonWriter(new OutputStreamWriter(sink.outputStream(), StandardCharsets.UTF_8));
+        write(writer, value);
+        writer.flush();
+    }
+
+    /**
+     * 将对象写入 JsonWriter
+     *
+     * @param writer JSON 写入器，不需要关闭
+     * @param value  被编码的对象
+     * @throws IOException 写入失败
+     */
+    protected abstract void write(JsonWriter writer, T value) throws IOException;
+}
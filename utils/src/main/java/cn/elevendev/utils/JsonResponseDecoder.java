@@ -0,0 +1,54 @@
+package cn.elevendev.utils;
+
+import android.util.JsonReader;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+import okio.BufferedSource;
+
+/**
+ * 基于 {@link JsonReader} 的流式 JSON 解码器
+ * <p>
+ * 边读取边解析，不生成完整的字符串及 JSONObject 树，适合较大的响应。子类只需实现
+ * {@link #read(JsonReader)}，按字段读取并构造模型对象，例如：
+ * <pre>
+ * new JsonResponseDecoder&lt;User&gt;() {
+ *     protected User read(JsonReader reader) throws IOException {
+ *         User user = new User();
+ *         reader.beginObject();
+ *         while (reader.hasNext()) {
+ *             String name = reader.nextName();
+ *             if ("name".equals(name)) {
+ *                 user.name = reader.nextString();
+ *             } else {
+ *                 reader.skipValue();
+ *             }
+ *         }
+ *         reader.endObject();
+ *         return user;
+ *     }
+ * };
+ * </pre>
+ *
+ * @param <T> 解码结果的类型
+ */
+public abstract class JsonResponseDecoder<T> implements ResponseDecoder<T> {
+
+    @Override
+    public final T decode(BufferedSource source, long contentLength) throws IOException {
+        // JSON 规定使用 UTF-8 编码
+        JsonReader reader = new JsonReader(new InputStreamReader(source.inputStream(), StandardCharsets.UTF_8));
+        return read(reader);
+    }
+
+    /**
+     * 从 JsonReader 读取对象
+     *
+     * @param reader JSON 读取器，由调用方负责关闭底层响应
+     * @return 解码结果
+     * @throws IOException 读取失败或 JSON 格式错误
+     */
+    protected abstract T read(JsonReader reader) throws IOException;
+}
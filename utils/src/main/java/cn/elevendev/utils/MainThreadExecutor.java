@@ -0,0 +1,62 @@
+package cn.elevendev.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+
+/**
+ * 在主线程执行任务
+ * <p>
+ * Handler 在第一次使用时才创建；没有主线程 Looper 时（如在 JVM 上运行单元测试）直接在当前线程执行。
+ */
+final class MainThreadExecutor implements Executor {
+
+    private volatile Handler handler;
+    private volatile boolean unavailable;
+
+    @Override
+    public void execute(Runnable command) {
+        Handler handler = handler();
+        if (handler != null) {
+            handler.post(command);
+        } else {
+            command.run();
+        }
+    }
+
+    private Handler handler() {
+        if (handler == null && !unavailable) {
+            synchronized (this) {
+                if (handler == null && !unavailable) {
+                    Looper looper = mainLooper();
+                    if (looper != null) {
+                        handler = new Handler(looper);
+                    } else {
+                        unavailable = true;
+                    }
+                }
+            }
+        }
+        return handler;
+    }
+
+    /**
+     * 判断当前是否为主线程，没有主线程 Looper 时视为主线程
+     *
+     * @return 是否为主线程
+     */
+    static boolean isMainThread() {
+        Looper looper = mainLooper();
+        return looper == null || looper.getThread() == Thread.currentThread();
+    }
+
+    private static Looper mainLooper() {
+        try {
+            return Looper.getMainLooper();
+        } catch (RuntimeException e) {
+            // android.jar 桩实现
+            return null;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package cn.elevendev.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLConnection;
+import java.util.Map;
+
+import okhttp3.MediaType;
+import okhttp3.MultipartBody;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * multipart/form-data 表单，用于 {@link HttpUtil#upload} 上传文件
+ * <p>
+ * 文件及 InputStream 在发送时才边读边写，不会整体读入内存。
+ * 包含 InputStream 的表单只能发送一次，不会重试，也不会加入离线队列。
+ */
+public class MultipartForm {
+
+    private static final MediaType OCTET_STREAM = MediaType.parse("application/octet-stream");
+
+    private final MultipartBody.Builder builder = new MultipartBody.Builder().setType(MultipartBody.FORM);
+    private boolean oneShot;
+
+    /**
+     * 添加普通字段
+     *
+     * @param name  字段名
+     * @param value 字段值
+     * @return 当前对象
+     */
+    public MultipartForm addField(String name, String value) {
+        builder.addFormDataPart(name, value);
+        return this;
+    }
+
+    /**
+     * 添加多个普通字段
+     *
+     * @param fields 字段名及字段值
+     * @return 当前对象
+     */
+    public MultipartForm addFields(Map<String, String> fields) {
+        for (Map.Entry<String, String> entry : fields.entrySet()) {
+            builder.addFormDataPart(entry.getKey(), entry.getValue());
+        }
+        return this;
+    }
+
+    /**
+     * 添加文件，类型按文件名推断
+     *
+     * @param name 字段名
+     * @param file 文件
+     * @return 当前对象
+     */
+    public MultipartForm addFile(String name, File file) {
+        return addFile(name, file, null);
+    }
+
+    /**
+     * 添加文件
+     *
+     * @param name        字段名
+     * @param file        文件
+     * @param contentType 文件类型，如 "image/jpeg"，为 null 时按文件名推断
+     * @return 当前对象
+     */
+    public MultipartForm addFile(String name, File file, String contentType) {
+        MediaType mediaType = contentType != null ? MediaType.parse(contentType) : guessContentType(file.getName());
+        builder.addFormDataPart(name, file.getName(), RequestBody.create(file, mediaType));
+        return this;
+    }
+
+    /**
+     * 添加数据流，如 ContentResolver 打开的图片，发送完成后关闭
+     *
+     * @param name          字段名
+     * @param fileName      文件名
+     * @param inputStream   数据流
+     * @param contentLength 数据长度，未知时为 -1（此时整个请求使用分块传输，且没有百分比进度）
+     * @param contentType   数据类型，为 null 时按文件名推断
+     * @return 当前对象
+     */
+    public MultipartForm addStream(String name, String fileName, final InputStream inputStream,
+                                   final long contentLength, String contentType) {
+        final MediaType mediaType = contentType != null ? MediaType.parse(contentType) : guessContentType(fileName);
+        builder.addFormDataPart(name, fileName, new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return mediaType;
+            }
+
+            @Override
+            public long contentLength() {
+                return contentLength;
+            }
+
+            @Override
+            public boolean isOneShot() {
+                return true;
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                Source source = Okio.source(inputStream);
+                try {
+                    sink.writeAll(source);
+                } finally {
+                    source.close();
+                }
+            }
+        });
+        oneShot = true;
+        return this;
+    }
+
+    /**
+     * 生成请求体
+     */
+    ProgressRequestBody build() {
+        return new ProgressRequestBody(builder.build(), oneShot);
+    }
+
+    /**
+     * 按文件名推断类型，无法推断时为 application/octet-stream
+     */
+    static MediaType guessContentType(String fileName) {
+        String contentType = fileName != null ? URLConnection.guessContentTypeFromName(fileName) : null;
+        MediaType mediaType = contentType != null ? MediaType.parse(contentType) : null;
+        return mediaType != null ? mediaType : OCTET_STREAM;
+    }
+}
@@ -0,0 +1,140 @@
+package cn.elevendev.utils;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 合并并限频的进度回调
+ * <p>
+ * IO 线程每写入一段数据只累加字节数，回调线程在每个间隔（默认约一帧）内至多收到一次回调，
+ * 且只有进度值变化时才回调。同时计算传输速度及剩余时间，支持未知长度。
+ * <p>
+ * 回调通过 executor 投递，间隔内的进度留给之后的写入或 {@link #finish()} 投递，
+ * 因此不需要定时器，主线程、请求线程或自定义线程池均可使用。
+ */
+final class ProgressReporter {
+
+    /** 默认回调间隔（毫秒），约为一帧 */
+    static final long DEFAULT_INTERVAL_MILLIS = 16;
+    /** 速度平滑系数 */
+    private static final double SPEED_SMOOTHING = 0.3;
+
+    private final HttpUtil.HttpCallback callback;
+    private final Executor executor;
+    private final long intervalMillis;
+
+    private final AtomicLong bytes = new AtomicLong();
+    private volatile long contentLength = -1;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile long lastDispatchTime;
+
+    // 以下字段在持有当前对象锁时访问，回调线程可能是任意线程
+    private long baseBytes;
+    private long sampleBytes;
+    private long sampleTime;
+    private volatile double bytesPerSecond;
+    private int lastProgress = -1;
+    private long lastDeliveredBytes = -1;
+
+    private final Runnable dispatchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (ProgressReporter.this) {
+                lastDispatchTime = uptimeMillis();
+                scheduled.set(false);
+                dispatch();
+            }
+        }
+    };
+
+    ProgressReporter(HttpUtil.HttpCallback callback, Executor executor, long intervalMillis) {
+        this.callback = callback;
+        this.executor = executor;
+        this.intervalMillis = Math.max(0, intervalMillis);
+        this.lastDispatchTime = uptimeMillis() - this.intervalMillis;
+    }
+
+    /**
+     * 获取已传输的字节数
+     */
+    long getBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * 获取最近一次回调时计算的传输速度
+     */
+    long getBytesPerSecond() {
+        return (long) bytesPerSecond;
+    }
+
+    /**
+     * 设置总长度，未知时为 -1
+     */
+    void setContentLength(long contentLength) {
+        this.contentLength = contentLength;
+    }
+
+    /**
+     * 设置开始时已完成的字节数（如断点续传），不计入速度
+     */
+    void setInitialBytes(long initialBytes) {
+        bytes.set(initialBytes);
+        synchronized (this) {
+            baseBytes = initialBytes;
+        }
+    }
+
+    /**
+     * 累加已传输的字节数，可在任意线程调用
+     *
+     * @param delta 本次传输的字节数
+     */
+    void add(long delta) {
+        bytes.addAndGet(delta);
+        if (uptimeMillis() - lastDispatchTime >= intervalMillis && scheduled.compareAndSet(false, true)) {
+            executor.execute(dispatchRunnable);
+        }
+    }
+
+    /**
+     * 传输结束，立即投递最后一次进度，之后在同一 executor 中投递的结果回调会在其后执行
+     */
+    void finish() {
+        executor.execute(dispatchRunnable);
+    }
+
+    private static long uptimeMillis() {
+        return System.nanoTime() / 1_000_000;
+    }
+
+    private void dispatch() {
+        long current = bytes.get();
+        long total = contentLength;
+        long now = uptimeMillis();
+
+        if (sampleTime == 0) {
+            sampleTime = now;
+            sampleBytes = Math.max(baseBytes, 0);
+        } else if (now > sampleTime) {
+            double instant = (current - sampleBytes) * 1000d / (now - sampleTime);
+            bytesPerSecond = bytesPerSecond == 0 ? instant
+                : bytesPerSecond + SPEED_SMOOTHING * (instant - bytesPerSecond);
+            sampleTime = now;
+            sampleBytes = current;
+        }
+
+        int progress = total > 0 ? (int) Math.min(100, current * 100 / total) : -1;
+        boolean changed = total > 0 ? progress != lastProgress : current != lastDeliveredBytes;
+        if (!changed) {
+            return;
+        }
+        lastProgress = progress;
+        lastDeliveredBytes = current;
+
+        long speed = (long) bytesPerSecond;
+        long etaMillis = total > 0 && speed > 0 ? (total - current) * 1000 / speed : -1;
+        callback.onProgress(current, total, speed, etaMillis);
+    }
+}
@@ -0,0 +1,75 @@
+package cn.elevendev.utils;
+
+import java.io.IOException;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.Okio;
+
+/**
+ * 统计写出字节数的请求体，上传进度通过 {@link ProgressReporter} 合并限频后回调
+ * <p>
+ * 请求体重新写出（如重试）时进度从 0 开始。
+ */
+final class ProgressRequestBody extends RequestBody {
+
+    private final RequestBody delegate;
+    private final boolean oneShot;
+    private volatile ProgressReporter reporter;
+
+    /**
+     * @param delegate 实际的请求体
+     * @param oneShot  是否只能写出一次，如包含 InputStream 的表单
+     */
+    ProgressRequestBody(RequestBody delegate, boolean oneShot) {
+        this.delegate = delegate;
+        this.oneShot = oneShot;
+    }
+
+    /**
+     * 设置进度回调，由 {@link HttpUtil} 在包装调用方的回调后设置
+     */
+    void setReporter(ProgressReporter reporter) {
+        this.reporter = reporter;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return delegate.contentType();
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+        return delegate.contentLength();
+    }
+
+    @Override
+    public boolean isOneShot() {
+        return oneShot || delegate.isOneShot();
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        final ProgressReporter reporter = this.reporter;
+        if (reporter == null) {
+            delegate.writeTo(sink);
+            return;
+        }
+        reporter.setContentLength(contentLength());
+        reporter.setInitialBytes(0);
+        BufferedSink countingSink = Okio.buffer(new ForwardingSink(sink) {
+            @Override
+            public void write(Buffer source, long byteCount) throws IOException {
+                super.write(source, byteCount);
+                reporter.add(byteCount);
+            }
+        });
+        delegate.writeTo(countingSink);
+        // 只推送到 OkHttp 的缓冲区，不关闭连接的输出流
+        countingSink.emit();
+        reporter.finish();
+    }
+}
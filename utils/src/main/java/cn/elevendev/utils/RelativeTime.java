@@ -0,0 +1,125 @@
+package cn.elevendev.utils;
+
+import java.util.TimeZone;
+
+/**
+ * 相对时间的计算
+ * <p>
+ * 除文字外同时算出文字下一次变化的时刻，刷新时只需在该时刻重新计算。规则：
+ * <ul>
+ * <li>一分钟内（包括一分钟内的将来时间）："刚刚"</li>
+ * <li>一小时内："N分钟前"</li>
+ * <li>今天："N小时前"</li>
+ * <li>昨天、前天："昨天 HH:mm"、"前天 HH:mm"</li>
+ * <li>今年："MM-dd HH:mm"</li>
+ * <li>更早及其他将来时间："yyyy-MM-dd"，今年的将来时间为 "MM-dd HH:mm"</li>
+ * </ul>
+ * 对象可重复使用，但不是线程安全的。
+ */
+final class RelativeTime {
+
+    /** 文字不再变化 */
+    static final long NEVER = Long.MAX_VALUE;
+
+    private static final long MINUTE_MILLIS = 60_000;
+    private static final long HOUR_MILLIS = 60 * MINUTE_MILLIS;
+
+    private final StringBuilder builder = new StringBuilder(16);
+    private final char[] buffer = new char[FastTimeFormat.MAX_LENGTH];
+
+    /** 计算结果 */
+    String text;
+    /** 文字下一次变化的时刻，不再变化时为 {@link #NEVER} */
+    long nextChange;
+
+    /**
+     * 计算相对时间，结果写入 {@link #text} 及 {@link #nextChange}
+     *
+     * @param timestamp 时间戳（毫秒）
+     * @param now       当前时间戳（毫秒）
+     */
+    void compute(long timestamp, long now) {
+        long diff = now - timestamp;
+        if (diff < MINUTE_MILLIS && diff > -MINUTE_MILLIS) {
+            text = "刚刚";
+            nextChange = timestamp + MINUTE_MILLIS;
+            return;
+        }
+        if (diff > 0 && diff < HOUR_MILLIS) {
+            long minutes = diff / MINUTE_MILLIS;
+            text = minutes + "分钟前";
+            nextChange = timestamp + (minutes + 1) * MINUTE_MILLIS;
+            return;
+        }
+
+        TimeZone zone = DateFormatCache.defaultZone(now);
+        long millisPerDay = FastTimeFormat.MILLIS_PER_DAY;
+        long localTimestamp = timestamp + zone.getOffset(timestamp);
+        long day = FastTimeFormat.floorDiv(localTimestamp, millisPerDay);
+        long today = FastTimeFormat.floorDiv(now + zone.getOffset(now), millisPerDay);
+        long tomorrowStart = FastTimeFormat.toUtc((today + 1) * millisPerDay, zone);
+        int minuteOfDay = (int) ((localTimestamp - day * millisPerDay) / MINUTE_MILLIS);
+
+        if (diff > 0 && day == today) {
+            long hours = diff / HOUR_MILLIS;
+            text = hours + "小时前";
+            nextChange = Math.min(timestamp + (hours + 1) * HOUR_MILLIS, tomorrowStart);
+            return;
+        }
+        if (diff > 0 && (day == today - 1 || day == today - 2)) {
+            builder.setLength(0);
+            builder.append(day == today - 1 ? "昨天 " : "前天 ");
+            appendTime(minuteOfDay);
+            text = builder.toString();
+            nextChange = tomorrowStart;
+            return;
+        }
+
+        long date = FastTimeFormat.civilDate(day);
+        long year = FastTimeFormat.yearOf(date);
+        long currentYear = FastTimeFormat.yearOf(FastTimeFormat.civilDate(today));
+        if (year == currentYear) {
+            builder.setLength(0);
+            append2(FastTimeFormat.monthOf(date));
+            builder.append('-');
+            append2(FastTimeFormat.dayOf(date));
+            builder.append(' ');
+            appendTime(minuteOfDay);
+            text = builder.toString();
+            if (diff < 0) {
+                // 将来时间，进入一分钟内时变为"刚刚"
+                nextChange = timestamp - MINUTE_MILLIS + 1;
+            } else if (currentYear >= 0 && currentYear < 9999) {
+                // 跨年后显示年份
+                nextChange = FastTimeFormat.toUtc(FastTimeFormat.epochDay((int) currentYear + 1, 1, 1) * millisPerDay, zone);
+            } else {
+                nextChange = NEVER;
+            }
+            return;
+        }
+        int length = year >= FastTimeFormat.MIN_YEAR && year <= 9999
+            ? FastTimeFormat.format(timestamp, FastTimeFormat.DATE, zone, buffer)
+            : -1;
+        text = length != -1 ? new String(buffer, 0, length) : TimeUtil.formatTime(timestamp, TimeUtil.DATE_FORMAT);
+        if (diff < 0) {
+            // 将来时间，进入该年时去掉年份，进入一分钟内时变为"刚刚"
+            nextChange = timestamp - MINUTE_MILLIS + 1;
+            if (year > currentYear && year <= 9999) {
+                long yearStart = FastTimeFormat.toUtc(FastTimeFormat.epochDay((int) year, 1, 1) * millisPerDay, zone);
+                nextChange = Math.min(nextChange, yearStart);
+            }
+        } else {
+            nextChange = NEVER;
+        }
+    }
+
+    private void appendTime(int minuteOfDay) {
+        append2(minuteOfDay / 60);
+        builder.append(':');
+        append2(minuteOfDay % 60);
+    }
+
+    private void append2(int value) {
+        builder.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+}
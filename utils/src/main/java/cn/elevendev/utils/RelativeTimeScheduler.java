@@ -0,0 +1,233 @@
+package cn.elevendev.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * 相对时间的统一刷新
+ * <p>
+ * 所有显示"刚刚"、"5分钟前"、"昨天 12:30"的控件都在这里登记，不需要各自的定时器。
+ * 每个控件记录文字下一次变化的时刻，只在最早的变化时刻唤醒主线程一次，并把这一刻起
+ * {@link #setMaxDelay(long) maxDelay} 内到期的控件合并到同一次唤醒中刷新；没有控件会变化时不唤醒。
+ * <p>
+ * 控件以弱引用保存，不需要手动解除；列表中复用的控件重新绑定即可替换时间戳。
+ * 所有方法只能在主线程调用。
+ */
+public final class RelativeTimeScheduler {
+
+    /** 默认合并刷新的最长延迟（毫秒） */
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 1000;
+
+    /**
+     * 刷新目标
+     */
+    public interface Target {
+
+        /**
+         * 相对时间的文字变化，在主线程调用
+         *
+         * @param text 新的文字
+         */
+        void onRelativeTimeChanged(String text);
+    }
+
+    /** 目标为键，TextView 或 {@link Target} */
+    private final Map<Object, Binding> bindings = new WeakHashMap<>();
+    private final RelativeTime relativeTime = new RelativeTime();
+    private final List<Object> due = new ArrayList<>();
+    private final Runnable tick = new Runnable() {
+        @Override
+        public void run() {
+            scheduledAt = RelativeTime.NEVER;
+            refresh(false);
+        }
+    };
+    private Handler handler;
+    private boolean handlerUnavailable;
+    /** 已安排唤醒的时刻 */
+    private long scheduledAt = RelativeTime.NEVER;
+    private long maxDelayMillis = DEFAULT_MAX_DELAY_MILLIS;
+
+    RelativeTimeScheduler() {
+    }
+
+    /**
+     * 显示相对时间并在变化时自动刷新
+     *
+     * @param view      控件
+     * @param timestamp 时间戳（毫秒）
+     */
+    public void bind(TextView view, long timestamp) {
+        register(view, timestamp);
+    }
+
+    /**
+     * 登记刷新目标，立即回调一次，之后在文字变化时回调
+     *
+     * @param target    目标，以弱引用保存，调用方需持有
+     * @param timestamp 时间戳（毫秒）
+     */
+    public void bind(Target target, long timestamp) {
+        register(target, timestamp);
+    }
+
+    /**
+     * 解除绑定，不再刷新
+     *
+     * @param target 控件或目标
+     */
+    public void unbind(Object target) {
+        checkMainThread();
+        bindings.remove(target);
+    }
+
+    /**
+     * 设置合并刷新的最长延迟，文字最多晚这么久变化，但不会提前变化
+     *
+     * @param maxDelayMillis 毫秒，为 0 时每个变化时刻都单独唤醒
+     */
+    public void setMaxDelay(long maxDelayMillis) {
+        checkMainThread();
+        this.maxDelayMillis = Math.max(0, maxDelayMillis);
+    }
+
+    public long getMaxDelay() {
+        return maxDelayMillis;
+    }
+
+    /**
+     * 立即重新计算所有目标，如系统时间或时区变化后
+     */
+    public void refreshAll() {
+        checkMainThread();
+        refresh(true);
+    }
+
+    /**
+     * 系统时间或时区变化，可在任意线程调用
+     */
+    void onTimeChanged() {
+        Handler handler = handler();
+        if (handler != null) {
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    refresh(true);
+                }
+            });
+        }
+    }
+
+    private void register(Object target, long timestamp) {
+        checkMainThread();
+        long now = System.currentTimeMillis();
+        relativeTime.compute(timestamp, now);
+        apply(target, relativeTime.text);
+        Binding binding = bindings.get(target);
+        if (binding == null) {
+            binding = new Binding();
+            bindings.put(target, binding);
+        }
+        binding.timestamp = timestamp;
+        binding.nextChange = relativeTime.nextChange;
+        // 已安排的唤醒更早时，到时会一并处理
+        if (binding.nextChange < scheduledAt) {
+            schedule(now);
+        }
+    }
+
+    /**
+     * 刷新到期的目标，all 为 true 时刷新全部，然后安排下一次唤醒
+     */
+    private void refresh(boolean all) {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Object, Binding> entry : bindings.entrySet()) {
+            Object target = entry.getKey();
+            if (target != null && (all || entry.getValue().nextChange <= now)) {
+                due.add(target);
+            }
+        }
+        // 回调中可能重新绑定，先收集再回调
+        for (int i = 0; i < due.size(); i++) {
+            Object target = due.get(i);
+            Binding binding = bindings.get(target);
+            if (binding == null) {
+                continue;
+            }
+            relativeTime.compute(binding.timestamp, now);
+            binding.nextChange = relativeTime.nextChange;
+            apply(target, relativeTime.text);
+        }
+        due.clear();
+        schedule(now);
+    }
+
+    /**
+     * 在最早的变化时刻唤醒，并把随后 maxDelay 内的变化合并到同一次唤醒
+     */
+    private void schedule(long now) {
+        long earliest = RelativeTime.NEVER;
+        for (Binding binding : bindings.values()) {
+            earliest = Math.min(earliest, binding.nextChange);
+        }
+        long wakeAt = earliest;
+        if (earliest != RelativeTime.NEVER) {
+            long limit = earliest + maxDelayMillis;
+            for (Binding binding : bindings.values()) {
+                if (binding.nextChange <= limit) {
+                    wakeAt = Math.max(wakeAt, binding.nextChange);
+                }
+            }
+        }
+        if (wakeAt == scheduledAt) {
+            return;
+        }
+        Handler handler = handler();
+        if (handler == null) {
+            return;
+        }
+        handler.removeCallbacks(tick);
+        scheduledAt = wakeAt;
+        if (wakeAt != RelativeTime.NEVER) {
+            handler.postDelayed(tick, Math.max(0, wakeAt - now));
+        }
+    }
+
+    private static void apply(Object target, String text) {
+        if (target instanceof TextView) {
+            ((TextView) target).setText(text);
+        } else {
+            ((Target) target).onRelativeTimeChanged(text);
+        }
+    }
+
+    private synchronized Handler handler() {
+        if (handler == null && !handlerUnavailable) {
+            try {
+                handler = new Handler(Looper.getMainLooper());
+            } catch (RuntimeException e) {
+                // 没有主线程 Looper（如在 JVM 上运行单元测试），只在绑定时计算
+                handlerUnavailable = true;
+            }
+        }
+        return handler;
+    }
+
+    private static void checkMainThread() {
+        if (!MainThreadExecutor.isMainThread()) {
+            throw new IllegalStateException("只能在主线程调用");
+        }
+    }
+
+    private static final class Binding {
+
+        long timestamp;
+        long nextChange;
+    }
+}
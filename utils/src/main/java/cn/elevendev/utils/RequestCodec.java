@@ -0,0 +1,32 @@
+package cn.elevendev.utils;
+
+import java.io.IOException;
+
+import okio.BufferedSink;
+
+/**
+ * 请求体编码器，将对象直接编码到 Okio 缓冲区，不先生成完整的字符串
+ * <p>
+ * 可实现 JSON（见 {@link JsonRequestCodec}）、protobuf、CBOR 等格式，
+ * 例如使用 Wire 时调用 {@code ProtoAdapter.encode(sink, value)} 即可。
+ *
+ * @param <T> 被编码对象的类型
+ */
+public interface RequestCodec<T> {
+
+    /**
+     * 请求体的类型
+     *
+     * @return Content-Type，如 "application/x-protobuf"
+     */
+    String contentType();
+
+    /**
+     * 将对象编码写入 sink，每个请求只编码一次，重试时复用编码结果
+     *
+     * @param value 被编码的对象
+     * @param sink  目标缓冲区，不需要关闭
+     * @throws IOException 编码失败
+     */
+    void encode(T value, BufferedSink sink) throws IOException;
+}
@@ -0,0 +1,195 @@
+package cn.elevendev.utils;
+
+import androidx.lifecycle.LifecycleOwner;
+
+import java.util.concurrent.Executor;
+
+/**
+ * 单次请求的选项
+ */
+public class RequestOptions {
+
+    /**
+     * 请求体的压缩方式，服务器需支持对应的 Content-Encoding
+     */
+    public enum Compression {
+        GZIP("gzip"),
+        DEFLATE("deflate");
+
+        final String encoding;
+
+        Compression(String encoding) {
+            this.encoding = encoding;
+        }
+    }
+
+    private HttpCache.Policy cachePolicy = HttpCache.Policy.DEFAULT;
+    private HttpDispatcher.Priority priority = HttpDispatcher.Priority.NORMAL;
+    private RetryPolicy retryPolicy;
+    private Object tag;
+    private LifecycleOwner lifecycleOwner;
+    private Executor callbackExecutor;
+    private boolean queueIfOffline;
+    private String idempotencyKey;
+    private Compression compression;
+    private long compressionThreshold;
+    private boolean compressionDisabled;
+
+    /**
+     * 设置缓存策略，仅对 GET 请求生效，默认 {@link HttpCache.Policy#DEFAULT}
+     *
+     * @param cachePolicy 缓存策略
+     * @return 当前对象
+     */
+    public RequestOptions setCachePolicy(HttpCache.Policy cachePolicy) {
+        this.cachePolicy = cachePolicy;
+        return this;
+    }
+
+    public HttpCache.Policy getCachePolicy() {
+        return cachePolicy;
+    }
+
+    /**
+     * 设置请求优先级，默认 {@link HttpDispatcher.Priority#NORMAL}
+     *
+     * @param priority 优先级
+     * @return 当前对象
+     */
+    public RequestOptions setPriority(HttpDispatcher.Priority priority) {
+        this.priority = priority;
+        return this;
+    }
+
+    public HttpDispatcher.Priority getPriority() {
+        return priority;
+    }
+
+    /**
+     * 设置重试策略，未设置时使用 {@link HttpUtil#setDefaultRetryPolicy} 指定的默认策略
+     *
+     * @param retryPolicy 重试策略
+     * @return 当前对象
+     */
+    public RequestOptions setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+        return this;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * 设置标签，之后可通过 {@link HttpUtil#cancelAll(Object)} 取消同一标签的所有请求
+     *
+     * @param tag 标签
+     * @return 当前对象
+     */
+    public RequestOptions setTag(Object tag) {
+        this.tag = tag;
+        return this;
+    }
+
+    public Object getTag() {
+        return tag;
+    }
+
+    /**
+     * 绑定到界面的生命周期，界面销毁时自动取消请求
+     *
+     * @param lifecycleOwner Activity、Fragment 等 LifecycleOwner
+     * @return 当前对象
+     */
+    public RequestOptions setLifecycleOwner(LifecycleOwner lifecycleOwner) {
+        this.lifecycleOwner = lifecycleOwner;
+        return this;
+    }
+
+    public LifecycleOwner getLifecycleOwner() {
+        return lifecycleOwner;
+    }
+
+    /**
+     * 设置结果回调所在的线程，未设置时使用 {@link HttpUtil#setCallbackExecutor} 指定的默认线程
+     *
+     * @param callbackExecutor {@link HttpUtil#MAIN_THREAD}、{@link HttpUtil#WORKER_THREAD} 或自定义线程池
+     * @return 当前对象
+     */
+    public RequestOptions setCallbackExecutor(Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+        return this;
+    }
+
+    public Executor getCallbackExecutor() {
+        return callbackExecutor;
+    }
+
+    /**
+     * 设置无网络或请求失败时是否加入离线队列，网络恢复后自动重发，需先调用
+     * {@link HttpUtil#enableOutbox}。仅对 POST 等非 GET 请求生效。
+     *
+     * @param queueIfOffline 是否加入离线队列
+     * @return 当前对象
+     */
+    public RequestOptions setQueueIfOffline(boolean queueIfOffline) {
+        this.queueIfOffline = queueIfOffline;
+        return this;
+    }
+
+    public boolean isQueueIfOffline() {
+        return queueIfOffline;
+    }
+
+    /**
+     * 设置幂等键，作为 Idempotency-Key 请求头发送，服务器可据此识别重复提交。
+     * 加入离线队列的请求未设置时自动生成。
+     *
+     * @param idempotencyKey 幂等键
+     * @return 当前对象
+     */
+    public RequestOptions setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+        return this;
+    }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    /**
+     * 设置请求体的压缩方式，未设置时使用 {@link HttpUtil#setDefaultCompression} 指定的默认方式。
+     * 压缩在请求线程中进行；文件上传不压缩。
+     *
+     * @param compression 压缩方式
+     * @param minBytes    请求体不小于该字节数时才压缩，较小的请求压缩收益不足以抵消开销
+     * @return 当前对象
+     */
+    public RequestOptions setCompression(Compression compression, long minBytes) {
+        this.compression = compression;
+        this.compressionThreshold = minBytes;
+        this.compressionDisabled = compression == null;
+        return this;
+    }
+
+    /**
+     * 不压缩该请求，即使设置了默认压缩方式
+     *
+     * @return 当前对象
+     */
+    public RequestOptions disableCompression() {
+        return setCompression(null, 0);
+    }
+
+    public Compression getCompression() {
+        return compression;
+    }
+
+    public long getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    boolean isCompressionDisabled() {
+        return compressionDisabled;
+    }
+}
@@ -0,0 +1,23 @@
+package cn.elevendev.utils;
+
+import java.io.IOException;
+
+import okio.BufferedSource;
+
+/**
+ * 响应体解码器，在请求线程中直接从响应流解码为对象，不先读成完整的字符串
+ *
+ * @param <T> 解码结果的类型
+ */
+public interface ResponseDecoder<T> {
+
+    /**
+     * 从响应流解码，方法返回后响应即被关闭
+     *
+     * @param source        响应体
+     * @param contentLength 响应体长度，未知时为 -1
+     * @return 解码结果
+     * @throws IOException 读取或解码失败
+     */
+    T decode(BufferedSource source, long contentLength) throws IOException;
+}
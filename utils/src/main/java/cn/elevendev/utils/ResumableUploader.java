@@ -0,0 +1,431 @@
+package cn.elevendev.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Call;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.BufferedSink;
+import okio.ByteString;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * 可续传的分块文件上传
+ * <p>
+ * 使用常见的可续传上传协议（Google Cloud Storage、YouTube 等）：
+ * <ol>
+ * <li>POST 上传地址，请求头 X-Upload-Content-Length 及 X-Upload-Content-Type 描述文件，
+ * 响应头 Location 为本次上传的会话地址；</li>
+ * <li>逐块 PUT 会话地址，请求头 Content-Range 为 "bytes 起始-结束/总长度"，
+ * 服务器返回 308 及 Range 表示已接收的范围，全部接收后返回 200 或 201；</li>
+ * <li>续传或出错后 PUT 空请求体及 "bytes *&#47;总长度"，按返回的 Range 继续。</li>
+ * </ol>
+ * 会话地址保存在状态文件中，进程被杀后再次上传同一文件时继续；会话过期（404、410）时重新开始。
+ */
+final class ResumableUploader implements Runnable {
+
+    /** 308 Resume Incomplete，没有 Location，OkHttp 不会当作重定向 */
+    private static final int RESUME_INCOMPLETE = 308;
+    /** 重试的最长等待时间（毫秒） */
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    private static final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "HttpUtil Upload #" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final OkHttpClient client;
+    private final String url;
+    private final File file;
+    private final File stateFile;
+    private final UploadOptions options;
+    private final MediaType contentType;
+    private final HttpUtil.HttpCallback callback;
+    private final ProgressReporter progressReporter;
+    private final CountDownLatch canceledLatch = new CountDownLatch(1);
+    private volatile Call call;
+    private volatile boolean canceled;
+    private String result;
+
+    /**
+     * @param callback 已由 {@link HttpCall} 包装的回调
+     */
+    ResumableUploader(OkHttpClient client, String url, File file, UploadOptions options,
+                      HttpUtil.HttpCallback callback, Executor callbackExecutor, long progressIntervalMillis) {
+        this.client = client;
+        this.url = url;
+        this.file = file;
+        this.options = options;
+        this.contentType = options.getContentType() != null
+            ? MediaType.parse(options.getContentType())
+            : MultipartForm.guessContentType(file.getName());
+        this.callback = callback;
+        this.progressReporter = new ProgressReporter(callback, callbackExecutor, progressIntervalMillis);
+        File directory = options.getStateDirectory() != null
+            ? options.getStateDirectory()
+            : new File(System.getProperty("java.io.tmpdir"));
+        String name = ByteString.encodeUtf8(url + "\n" + file.getAbsolutePath()).md5().hex();
+        this.stateFile = new File(directory, "upload-" + name + ".state");
+    }
+
+    /**
+     * 在上传线程池中开始上传
+     */
+    void start() {
+        executor.execute(this);
+    }
+
+    /**
+     * 取消上传，中断当前请求，会话保留用于续传
+     */
+    void cancel() {
+        canceled = true;
+        canceledLatch.countDown();
+        Call call = this.call;
+        if (call != null) {
+            call.cancel();
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            if (canceled) {
+                return;
+            }
+            String response = upload();
+            progressReporter.finish();
+            postSuccess(response);
+        } catch (IOException e) {
+            if (canceled) {
+                return;
+            }
+            if (e instanceof HttpStatusException) {
+                postFailure("Upload failed: Network error, code " + ((HttpStatusException) e).code);
+            } else {
+                e.printStackTrace();
+                postFailure("上传失败");
+            }
+        }
+    }
+
+    private String upload() throws IOException {
+        if (!file.isFile()) {
+            throw new FileNotFoundException(file.getPath());
+        }
+        long length = file.length();
+        progressReporter.setContentLength(length);
+        String session = loadState(length);
+        // 续传时位置未知，先查询
+        long offset = session != null ? -1 : 0;
+        boolean restarted = false;
+        int failures = 0;
+        while (true) {
+            try {
+                if (session == null) {
+                    session = createSession(length);
+                    saveState(session, length);
+                    offset = 0;
+                    progressReporter.setInitialBytes(0);
+                } else if (offset < 0) {
+                    offset = put(session, 0, 0, length);
+                    progressReporter.setInitialBytes(offset);
+                } else {
+                    long end = Math.min(offset + options.getChunkSize(), length);
+                    long next = put(session, offset, end, length);
+                    if (next < end) {
+                        // 服务器只保存了部分数据，进度回退到实际位置
+                        progressReporter.add(next - end);
+                    }
+                    if (next <= offset && result == null) {
+                        // 没有进展时按失败退避，避免无限重发同一块
+                        throw new IOException("服务器未接收数据，位置 " + offset);
+                    }
+                    failures = 0;
+                    offset = next;
+                }
+                if (result != null) {
+                    stateFile.delete();
+                    return result;
+                }
+            } catch (SessionExpiredException e) {
+                stateFile.delete();
+                if (restarted) {
+                    throw e;
+                }
+                restarted = true;
+                session = null;
+            } catch (IOException e) {
+                if (canceled) {
+                    throw e;
+                }
+                if (e instanceof HttpStatusException && !isRetryable(((HttpStatusException) e).code)) {
+                    throw e;
+                }
+                if (++failures > options.getMaxRetries()) {
+                    throw e;
+                }
+                long delay = Math.min(1000L << Math.min(failures - 1, 5), MAX_BACKOFF_MILLIS);
+                try {
+                    if (canceledLatch.await(delay, TimeUnit.MILLISECONDS)) {
+                        throw e;
+                    }
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+                // 不确定服务器收到了多少，重试前重新查询
+                offset = -1;
+            }
+        }
+    }
+
+    /**
+     * 创建上传会话
+     *
+     * @return 会话地址
+     */
+    private String createSession(long length) throws IOException {
+        Request request = new Request.Builder()
+            .url(url)
+            .header("X-Upload-Content-Type", contentType.toString())
+            .header("X-Upload-Content-Length", String.valueOf(length))
+            .post(RequestBody.create(new byte[0], null))
+            .build();
+        Response response = execute(request);
+        try {
+            if (!response.isSuccessful()) {
+                throw new HttpStatusException(response.code());
+            }
+            String location = response.header("Location");
+            HttpUrl session = location != null ? request.url().resolve(location) : null;
+            if (session == null) {
+                throw new IOException("响应缺少上传会话地址");
+            }
+            return session.toString();
+        } finally {
+            response.close();
+        }
+    }
+
+    /**
+     * 上传 [start, end) 的数据，start 与 end 相等时只查询已接收的位置
+     *
+     * @return 服务器已接收的长度，上传完成时同时写入 {@link #result}
+     */
+    private long put(String session, long start, long end, long length) throws IOException {
+        String contentRange = start < end
+            ? "bytes " + start + "-" + (end - 1) + "/" + length
+            : "bytes */" + length;
+        RequestBody body = start < end
+            ? new ChunkBody(start, end - start)
+            : RequestBody.create(new byte[0], null);
+        Request request = new Request.Builder()
+            .url(session)
+            .header("Content-Range", contentRange)
+            .put(body)
+            .build();
+        Response response = execute(request);
+        try {
+            if (response.isSuccessful()) {
+                result = response.body().string();
+                return length;
+            }
+            if (response.code() == RESUME_INCOMPLETE) {
+                return parseReceived(response.header("Range"));
+            }
+            if (response.code() == 404 || response.code() == 410) {
+                throw new SessionExpiredException();
+            }
+            throw new HttpStatusException(response.code());
+        } finally {
+            response.close();
+        }
+    }
+
+    private Response execute(Request request) throws IOException {
+        Call call = client.newCall(request);
+        this.call = call;
+        if (canceled) {
+            call.cancel();
+        }
+        return call.execute();
+    }
+
+    /**
+     * 读取状态文件，上传地址、文件长度及修改时间一致时返回保存的会话地址
+     */
+    private String loadState(long length) {
+        if (!stateFile.exists()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try {
+            InputStream inputStream = new FileInputStream(stateFile);
+            try {
+                properties.load(inputStream);
+            } finally {
+                inputStream.close();
+            }
+            if (!url.equals(properties.getProperty("url"))
+                || length != Long.parseLong(properties.getProperty("length"))
+                || file.lastModified() != Long.parseLong(properties.getProperty("lastModified"))) {
+                return null;
+            }
+            return properties.getProperty("session");
+        } catch (IOException | RuntimeException e) {
+            // 状态文件损坏，重新上传
+            return null;
+        }
+    }
+
+    private void saveState(String session, long length) {
+        Properties properties = new Properties();
+        properties.setProperty("url", url);
+        properties.setProperty("file", file.getAbsolutePath());
+        properties.setProperty("length", String.valueOf(length));
+        properties.setProperty("lastModified", String.valueOf(file.lastModified()));
+        properties.setProperty("session", session);
+        try {
+            File tempState = new File(stateFile.getPath() + ".tmp");
+            OutputStream outputStream = new FileOutputStream(tempState);
+            try {
+                properties.store(outputStream, null);
+            } finally {
+                outputStream.close();
+            }
+            if (!tempState.renameTo(stateFile)) {
+                tempState.delete();
+            }
+        } catch (IOException e) {
+            // 无法保存时仍可上传，只是不能跨进程续传
+            e.printStackTrace();
+        }
+    }
+
+    private void postSuccess(String response) {
+        // 回调已由 HttpCall 包装，会切换到回调线程
+        callback.onSuccess(response);
+    }
+
+    private void postFailure(String message) {
+        callback.onFailure(message);
+    }
+
+    private static boolean isRetryable(int code) {
+        return code == 408 || code == 429 || code >= 500;
+    }
+
+    /**
+     * 解析 Range 中已接收的范围，如 "bytes=0-1048575"
+     *
+     * @return 已接收的长度，没有 Range 时为 0
+     */
+    private static long parseReceived(String range) throws IOException {
+        if (range == null) {
+            return 0;
+        }
+        int dash = range.lastIndexOf('-');
+        if (dash == -1) {
+            throw new IOException("无效的 Range: " + range);
+        }
+        try {
+            return Long.parseLong(range.substring(dash + 1).trim()) + 1;
+        } catch (NumberFormatException e) {
+            throw new IOException("无效的 Range: " + range, e);
+        }
+    }
+
+    /**
+     * 文件中的一块，发送时才从文件读取，写出的字节计入上传进度
+     */
+    private final class ChunkBody extends RequestBody {
+
+        private final long position;
+        private final long byteCount;
+
+        ChunkBody(long position, long byteCount) {
+            this.position = position;
+            this.byteCount = byteCount;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return contentType;
+        }
+
+        @Override
+        public long contentLength() {
+            return byteCount;
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+            try {
+                randomAccessFile.seek(position);
+                Source source = Okio.source(Channels.newInputStream(randomAccessFile.getChannel()));
+                long remaining = byteCount;
+                while (remaining > 0) {
+                    long read = source.read(sink.getBuffer(), Math.min(remaining, 64 * 1024));
+                    if (read == -1) {
+                        throw new IOException("文件在上传过程中被修改");
+                    }
+                    remaining -= read;
+                    sink.emitCompleteSegments();
+                    progressReporter.add(read);
+                }
+            } finally {
+                randomAccessFile.close();
+            }
+        }
+    }
+
+    private static final class HttpStatusException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        final int code;
+
+        HttpStatusException(int code) {
+            super("HTTP " + code);
+            this.code = code;
+        }
+    }
+
+    private static final class SessionExpiredException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        SessionExpiredException() {
+            super("上传会话已过期");
+        }
+    }
+}
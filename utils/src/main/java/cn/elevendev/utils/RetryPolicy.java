@@ -0,0 +1,173 @@
+package cn.elevendev.utils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * 请求重试策略
+ * <p>
+ * 失败后按指数退避等待再重试：第 n 次重试前等待 initialDelay * multiplier^(n-1)，不超过 maxDelay，
+ * 并按 jitter 比例随机缩短，避免大量客户端同时重试。默认只重试幂等请求（GET、HEAD、PUT、DELETE 等）。
+ */
+public class RetryPolicy {
+
+    /** 默认最大重试次数 */
+    public static final int DEFAULT_MAX_RETRIES = 3;
+    /** 默认首次重试前的等待时间（毫秒） */
+    public static final long DEFAULT_INITIAL_DELAY_MILLIS = 500;
+    /** 默认最长等待时间（毫秒） */
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 30_000;
+
+    private static final Set<String> IDEMPOTENT_METHODS = new HashSet<>(
+        Arrays.asList("GET", "HEAD", "PUT", "DELETE", "OPTIONS", "TRACE"));
+    private static final Random random = new Random();
+
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+    private long initialDelayMillis = DEFAULT_INITIAL_DELAY_MILLIS;
+    private long maxDelayMillis = DEFAULT_MAX_DELAY_MILLIS;
+    private double multiplier = 2;
+    private double jitter = 0.5;
+    private boolean retryOnTimeout = true;
+    private boolean retryOnConnectionFailure = true;
+    private boolean retryNonIdempotent;
+    private final Set<Integer> retryStatusCodes = new HashSet<>(Arrays.asList(408, 429, 500, 502, 503, 504));
+
+    /**
+     * 设置最大重试次数（不含首次请求）
+     *
+     * @param maxRetries 最大重试次数
+     * @return 当前对象
+     */
+    public RetryPolicy setMaxRetries(int maxRetries) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("maxRetries < 0: " + maxRetries);
+        }
+        this.maxRetries = maxRetries;
+        return this;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * 设置退避时间
+     *
+     * @param initialDelayMillis 首次重试前的等待时间（毫秒）
+     * @param maxDelayMillis     最长等待时间（毫秒）
+     * @param multiplier         每次重试等待时间的倍数，至少为 1
+     * @return 当前对象
+     */
+    public RetryPolicy setBackoff(long initialDelayMillis, long maxDelayMillis, double multiplier) {
+        if (initialDelayMillis < 0 || maxDelayMillis < initialDelayMillis || multiplier < 1) {
+            throw new IllegalArgumentException("invalid backoff");
+        }
+        this.initialDelayMillis = initialDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.multiplier = multiplier;
+        return this;
+    }
+
+    /**
+     * 设置随机抖动比例，实际等待时间在 [delay * (1 - jitter), delay] 之间，默认 0.5
+     *
+     * @param jitter 抖动比例，范围 0~1
+     * @return 当前对象
+     */
+    public RetryPolicy setJitter(double jitter) {
+        if (jitter < 0 || jitter > 1) {
+            throw new IllegalArgumentException("jitter out of range: " + jitter);
+        }
+        this.jitter = jitter;
+        return this;
+    }
+
+    /**
+     * 设置超时后是否重试，默认开启
+     *
+     * @param retryOnTimeout 是否重试
+     * @return 当前对象
+     */
+    public RetryPolicy setRetryOnTimeout(boolean retryOnTimeout) {
+        this.retryOnTimeout = retryOnTimeout;
+        return this;
+    }
+
+    /**
+     * 设置连接失败（如 DNS 解析失败、连接被拒绝）后是否重试，默认开启
+     *
+     * @param retryOnConnectionFailure 是否重试
+     * @return 当前对象
+     */
+    public RetryPolicy setRetryOnConnectionFailure(boolean retryOnConnectionFailure) {
+        this.retryOnConnectionFailure = retryOnConnectionFailure;
+        return this;
+    }
+
+    /**
+     * 设置是否重试 POST 等非幂等请求，默认关闭，开启前需确认服务器能处理重复提交
+     *
+     * @param retryNonIdempotent 是否重试
+     * @return 当前对象
+     */
+    public RetryPolicy setRetryNonIdempotent(boolean retryNonIdempotent) {
+        this.retryNonIdempotent = retryNonIdempotent;
+        return this;
+    }
+
+    /**
+     * 设置需要重试的状态码，默认为 408、429、500、502、503、504
+     *
+     * @param codes 状态码
+     * @return 当前对象
+     */
+    public RetryPolicy setRetryStatusCodes(int... codes) {
+        retryStatusCodes.clear();
+        for (int code : codes) {
+            retryStatusCodes.add(code);
+        }
+        return this;
+    }
+
+    /**
+     * 判断收到指定状态码后是否重试
+     */
+    boolean shouldRetry(String method, int code, int retries) {
+        return retries < maxRetries && allowsMethod(method) && retryStatusCodes.contains(code);
+    }
+
+    /**
+     * 判断发生指定异常后是否重试
+     */
+    boolean shouldRetry(String method, IOException e, int retries) {
+        if (retries >= maxRetries || !allowsMethod(method)) {
+            return false;
+        }
+        boolean timeout = e instanceof InterruptedIOException || "timeout".equals(e.getMessage());
+        return timeout ? retryOnTimeout : retryOnConnectionFailure;
+    }
+
+    private boolean allowsMethod(String method) {
+        return retryNonIdempotent || IDEMPOTENT_METHODS.contains(method);
+    }
+
+    /**
+     * 计算第 retries + 1 次重试前的等待时间
+     *
+     * @param retries          已重试的次数
+     * @param retryAfterMillis 服务器 Retry-After 指定的等待时间，没有时为 -1
+     * @return 等待时间（毫秒）
+     */
+    long delayMillis(int retries, long retryAfterMillis) {
+        double delay = Math.min(maxDelayMillis, initialDelayMillis * Math.pow(multiplier, retries));
+        double jittered;
+        synchronized (random) {
+            jittered = delay * (1 - jitter * random.nextDouble());
+        }
+        return Math.min(maxDelayMillis, Math.max((long) jittered, retryAfterMillis));
+    }
+}
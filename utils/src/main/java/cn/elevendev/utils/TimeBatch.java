@@ -0,0 +1,376 @@
+package cn.elevendev.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 批量格式化的结果
+ * <p>
+ * 除时间字符串外，还给出每个时间戳在默认时区中的天、周、月序号，相邻元素序号不同即可插入分组标题。
+ * 序号按公历从 1970 年 1 月起计算，只用于比较是否同一天、同一周或同一月；
+ * 天序号即当地的纪元日，月序号为 年 * 12 + 月 - 1。
+ * <p>
+ * 处理时按天缓存日期及序号；时间字符串在其精度内（如默认格式精确到秒、日期格式精确到天）
+ * 相同的时间戳共享同一个字符串，已排序的聊天记录、账单等大部分元素不需要重新格式化。
+ */
+public final class TimeBatch {
+
+    /** 时间字符串的精度，由粗到细 */
+    private static final int DAY = 0;
+    private static final int MINUTE = 1;
+    private static final int SECOND = 2;
+    private static final int MILLIS = 3;
+
+    private static final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "TimeUtil Batch #" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final String[] texts;
+    private final int[] dayIndices;
+    private final int[] weekIndices;
+    private final int[] monthIndices;
+
+    private TimeBatch(int size, boolean formatText) {
+        this.texts = formatText ? new String[size] : null;
+        this.dayIndices = new int[size];
+        this.weekIndices = new int[size];
+        this.monthIndices = new int[size];
+    }
+
+    /**
+     * 获取数量
+     *
+     * @return 与输入的时间戳数量相同
+     */
+    public int size() {
+        return dayIndices.length;
+    }
+
+    /**
+     * 获取所有时间字符串，返回内部数组，不要修改
+     *
+     * @return 时间字符串，关闭 {@link TimeBatchOptions#setFormatText(boolean)} 时为 null
+     */
+    public String[] getTexts() {
+        return texts;
+    }
+
+    /**
+     * 获取时间字符串
+     *
+     * @param index 索引
+     * @return 时间字符串，关闭 {@link TimeBatchOptions#setFormatText(boolean)} 时为 null
+     */
+    public String getText(int index) {
+        return texts != null ? texts[index] : null;
+    }
+
+    /**
+     * 获取所有天序号，返回内部数组，不要修改
+     *
+     * @return 天序号
+     */
+    public int[] getDayIndices() {
+        return dayIndices;
+    }
+
+    public int getDayIndex(int index) {
+        return dayIndices[index];
+    }
+
+    /**
+     * 获取所有周序号，返回内部数组，不要修改
+     *
+     * @return 周序号，每周从 {@link TimeBatchOptions#setFirstDayOfWeek(int)} 开始
+     */
+    public int[] getWeekIndices() {
+        return weekIndices;
+    }
+
+    public int getWeekIndex(int index) {
+        return weekIndices[index];
+    }
+
+    /**
+     * 获取所有月序号，返回内部数组，不要修改
+     *
+     * @return 月序号
+     */
+    public int[] getMonthIndices() {
+        return monthIndices;
+    }
+
+    public int getMonthIndex(int index) {
+        return monthIndices[index];
+    }
+
+    /**
+     * 批量格式化
+     *
+     * @param timestamps 时间戳（毫秒）
+     * @param pattern    时间格式，不生成时间字符串时可为 null
+     * @param options    选项
+     * @return 结果
+     */
+    static TimeBatch format(long[] timestamps, String pattern, TimeBatchOptions options) {
+        int size = timestamps.length;
+        TimeBatch batch = new TimeBatch(size, options.isFormatText());
+        TimeZone zone = DateFormatCache.defaultZone();
+        int parts = options.isParallel() && size >= options.getParallelThreshold()
+            ? Math.min(Runtime.getRuntime().availableProcessors(), size)
+            : 1;
+        if (parts <= 1) {
+            new Worker(batch, timestamps, 0, size, pattern, zone, options.getFirstDayOfWeek()).run();
+            return batch;
+        }
+        List<Future<?>> futures = new ArrayList<>(parts - 1);
+        int from = 0;
+        for (int i = 0; i < parts - 1; i++) {
+            int to = (int) ((long) size * (i + 1) / parts);
+            futures.add(executor.submit(new Worker(batch, timestamps, from, to, pattern, zone,
+                options.getFirstDayOfWeek())));
+            from = to;
+        }
+        // 调用线程处理最后一段
+        new Worker(batch, timestamps, from, size, pattern, zone, options.getFirstDayOfWeek()).run();
+        boolean interrupted = false;
+        try {
+            for (Future<?> future : futures) {
+                while (true) {
+                    try {
+                        future.get();
+                        break;
+                    } catch (InterruptedException e) {
+                        // 结果必须完整，中断标记留到最后恢复
+                        interrupted = true;
+                    } catch (ExecutionException e) {
+                        Throwable cause = e.getCause();
+                        if (cause instanceof RuntimeException) {
+                            throw (RuntimeException) cause;
+                        }
+                        if (cause instanceof Error) {
+                            throw (Error) cause;
+                        }
+                        throw new IllegalStateException(cause);
+                    }
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * 时间字符串的精度，精度内的时间戳格式化结果相同
+     */
+    private static int granularityOf(String pattern) {
+        switch (FastTimeFormat.kindOf(pattern)) {
+            case FastTimeFormat.DATE:
+                return DAY;
+            case FastTimeFormat.DATE_TIME:
+            case FastTimeFormat.ISO_8601:
+            case FastTimeFormat.EPOCH_SECONDS:
+                return SECOND;
+            default:
+                break;
+        }
+        int granularity = DAY;
+        boolean quoted = false;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (!quoted) {
+                switch (c) {
+                    case 'S':
+                        return MILLIS;
+                    case 's':
+                        granularity = SECOND;
+                        break;
+                    case 'm':
+                    case 'H':
+                    case 'h':
+                    case 'k':
+                    case 'K':
+                    case 'a':
+                    // 时区名称及偏移只在切换时变化，切换的日期内会逐个检查偏移
+                    case 'z':
+                    case 'Z':
+                    case 'X':
+                        granularity = Math.max(granularity, MINUTE);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        return granularity;
+    }
+
+    /**
+     * 处理 [from, to) 范围内的时间戳
+     */
+    private static final class Worker implements Runnable {
+
+        private final TimeBatch batch;
+        private final long[] timestamps;
+        private final int from;
+        private final int to;
+        private final String pattern;
+        private final int kind;
+        private final int granularity;
+        private final TimeZone zone;
+        private final int firstDayOfWeek;
+        private final char[] buffer = new char[FastTimeFormat.MAX_LENGTH];
+
+        // 当前这一天
+        private long dayStart = 1;
+        private long dayEnd = 0;
+        private long epochDay;
+        private int weekIndex;
+        private int monthIndex;
+        /** 日期已写入 buffer，可直接拼接时间 */
+        private boolean fastDate;
+        /** 当天的时区偏移是否不变 */
+        private boolean offsetConstant;
+        private int dayOffset;
+
+        // 最近一个时间字符串及其适用范围
+        private long textStart = 1;
+        private long textEnd = 0;
+        private String text;
+
+        Worker(TimeBatch batch, long[] timestamps, int from, int to, String pattern, TimeZone zone,
+               int firstDayOfWeek) {
+            this.batch = batch;
+            this.timestamps = timestamps;
+            this.from = from;
+            this.to = to;
+            this.pattern = pattern;
+            this.kind = batch.texts != null ? FastTimeFormat.kindOf(pattern) : FastTimeFormat.NONE;
+            this.granularity = batch.texts != null ? granularityOf(pattern) : MILLIS;
+            this.zone = zone;
+            this.firstDayOfWeek = firstDayOfWeek;
+        }
+
+        @Override
+        public void run() {
+            String[] texts = batch.texts;
+            for (int i = from; i < to; i++) {
+                long timestamp = timestamps[i];
+                if (timestamp < dayStart || timestamp >= dayEnd) {
+                    enterDay(timestamp);
+                }
+                batch.dayIndices[i] = (int) epochDay;
+                batch.weekIndices[i] = weekIndex;
+                batch.monthIndices[i] = monthIndex;
+                if (texts != null) {
+                    if (timestamp < textStart || timestamp >= textEnd) {
+                        formatText(timestamp);
+                    }
+                    texts[i] = text;
+                }
+            }
+        }
+
+        private void enterDay(long timestamp) {
+            long millisPerDay = FastTimeFormat.MILLIS_PER_DAY;
+            int offset = zone.getOffset(timestamp);
+            epochDay = FastTimeFormat.floorDiv(timestamp + offset, millisPerDay);
+            long start = epochDay * millisPerDay - offset;
+            long end = start + millisPerDay;
+            if (zone.getOffset(start) == offset && zone.getOffset(end - 1) == offset) {
+                // 大部分日期全天偏移不变
+                dayStart = start;
+                dayEnd = end;
+                dayOffset = offset;
+                offsetConstant = true;
+            } else {
+                // 零点落在夏令时跳过的时间内时会顺延，保证当前时间在范围内
+                dayStart = Math.min(FastTimeFormat.toUtc(epochDay * millisPerDay, zone), timestamp);
+                dayEnd = Math.max(FastTimeFormat.toUtc((epochDay + 1) * millisPerDay, zone), timestamp + 1);
+                dayOffset = zone.getOffset(dayStart);
+                offsetConstant = false;
+            }
+
+            long date = FastTimeFormat.civilDate(epochDay);
+            long year = FastTimeFormat.yearOf(date);
+            int month = FastTimeFormat.monthOf(date);
+            // 1970-01-01 是周四，Calendar.THURSDAY 为 5
+            weekIndex = (int) FastTimeFormat.floorDiv(epochDay + 5 - firstDayOfWeek, 7);
+            monthIndex = (int) (year * 12 + month - 1);
+            fastDate = (kind == FastTimeFormat.DATE_TIME || kind == FastTimeFormat.DATE || kind == FastTimeFormat.ISO_8601)
+                && year >= FastTimeFormat.MIN_YEAR && year <= 9999;
+            if (fastDate) {
+                FastTimeFormat.writeDate(buffer, (int) year, month, FastTimeFormat.dayOf(date));
+            }
+            textStart = 1;
+            textEnd = 0;
+        }
+
+        private void formatText(long timestamp) {
+            int offset = offsetConstant ? dayOffset : zone.getOffset(timestamp);
+            if (fastDate) {
+                int length = kind == FastTimeFormat.DATE
+                    ? 10
+                    : FastTimeFormat.writeTime(buffer, 10, kind,
+                    (int) (timestamp + offset - epochDay * FastTimeFormat.MILLIS_PER_DAY), offset);
+                text = new String(buffer, 0, length);
+            } else {
+                text = TimeUtil.formatTime(timestamp, pattern);
+            }
+
+            long start;
+            long end;
+            switch (granularity) {
+                case DAY:
+                    start = dayStart;
+                    end = dayEnd;
+                    break;
+                case MINUTE:
+                    start = timestamp - floorMod(timestamp + offset, 60_000);
+                    end = start + 60_000;
+                    break;
+                case SECOND:
+                    start = timestamp - floorMod(timestamp + offset, 1000);
+                    end = start + 1000;
+                    break;
+                default:
+                    start = timestamp;
+                    end = timestamp + 1;
+                    break;
+            }
+            start = Math.max(start, dayStart);
+            end = Math.min(end, dayEnd);
+            if (granularity != DAY && !offsetConstant
+                && (zone.getOffset(start) != offset || zone.getOffset(end - 1) != offset)) {
+                // 范围内时区偏移有变化，只用于当前时间戳
+                start = timestamp;
+                end = timestamp + 1;
+            }
+            textStart = start;
+            textEnd = end;
+        }
+
+        private static long floorMod(long x, long y) {
+            return x - FastTimeFormat.floorDiv(x, y) * y;
+        }
+    }
+}
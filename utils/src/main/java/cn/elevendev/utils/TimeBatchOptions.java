@@ -0,0 +1,85 @@
+package cn.elevendev.utils;
+
+import java.util.Calendar;
+
+/**
+ * 批量格式化选项
+ */
+public class TimeBatchOptions {
+
+    /** 默认每周的第一天 */
+    public static final int DEFAULT_FIRST_DAY_OF_WEEK = Calendar.MONDAY;
+    /** 默认并行处理的最小数量 */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 20_000;
+
+    private boolean formatText = true;
+    private int firstDayOfWeek = DEFAULT_FIRST_DAY_OF_WEEK;
+    private boolean parallel;
+    private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+    /**
+     * 设置是否生成时间字符串，只需要按天、周、月分组时可关闭
+     *
+     * @param formatText 是否生成，默认生成
+     * @return 当前对象
+     */
+    public TimeBatchOptions setFormatText(boolean formatText) {
+        this.formatText = formatText;
+        return this;
+    }
+
+    public boolean isFormatText() {
+        return formatText;
+    }
+
+    /**
+     * 设置每周的第一天，影响周序号
+     *
+     * @param firstDayOfWeek {@link Calendar#SUNDAY} 到 {@link Calendar#SATURDAY}，默认周一
+     * @return 当前对象
+     */
+    public TimeBatchOptions setFirstDayOfWeek(int firstDayOfWeek) {
+        if (firstDayOfWeek < Calendar.SUNDAY || firstDayOfWeek > Calendar.SATURDAY) {
+            throw new IllegalArgumentException("firstDayOfWeek: " + firstDayOfWeek);
+        }
+        this.firstDayOfWeek = firstDayOfWeek;
+        return this;
+    }
+
+    public int getFirstDayOfWeek() {
+        return firstDayOfWeek;
+    }
+
+    /**
+     * 设置是否把大数组分给多个线程处理，数量达到阈值时按 CPU 核数拆分，调用线程同样参与并等待全部完成
+     *
+     * @param parallel 是否并行，默认不并行
+     * @return 当前对象
+     */
+    public TimeBatchOptions setParallel(boolean parallel) {
+        this.parallel = parallel;
+        return this;
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * 设置并行处理的最小数量，更少时线程切换的开销大于收益
+     *
+     * @param parallelThreshold 数量
+     * @return 当前对象
+     */
+    public TimeBatchOptions setParallelThreshold(int parallelThreshold) {
+        if (parallelThreshold < 1) {
+            throw new IllegalArgumentException("parallelThreshold < 1: " + parallelThreshold);
+        }
+        this.parallelThreshold = parallelThreshold;
+        return this;
+    }
+
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+}
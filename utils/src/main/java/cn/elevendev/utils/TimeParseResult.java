@@ -0,0 +1,74 @@
+package cn.elevendev.utils;
+
+/**
+ * 时间解析结果
+ * <p>
+ * 由调用方创建并重复使用，解析时写入结果，不分配对象也不抛出异常。
+ * 成功与失败通过 {@link #isSuccess()} 区分，任何时间戳（包括 -1）都是有效结果。
+ */
+public final class TimeParseResult {
+
+    private boolean success;
+    private long millis;
+    private int errorIndex = -1;
+
+    /**
+     * 是否解析成功
+     *
+     * @return 成功返回 true
+     */
+    public boolean isSuccess() {
+        return success;
+    }
+
+    /**
+     * 获取解析出的时间戳
+     *
+     * @return 时间戳（毫秒）
+     * @throws IllegalStateException 解析失败
+     */
+    public long getMillis() {
+        if (!success) {
+            throw new IllegalStateException("解析失败，位置 " + errorIndex);
+        }
+        return millis;
+    }
+
+    /**
+     * 获取解析出的时间戳，失败时返回指定值
+     *
+     * @param defaultValue 失败时的返回值
+     * @return 时间戳（毫秒）
+     */
+    public long getMillisOrDefault(long defaultValue) {
+        return success ? millis : defaultValue;
+    }
+
+    /**
+     * 获取解析失败的位置
+     *
+     * @return 出错字符在原字符串中的索引，成功时为 -1
+     */
+    public int getErrorIndex() {
+        return errorIndex;
+    }
+
+    boolean success(long millis) {
+        this.success = true;
+        this.millis = millis;
+        this.errorIndex = -1;
+        return true;
+    }
+
+    boolean failure(int errorIndex) {
+        this.success = false;
+        this.millis = 0;
+        this.errorIndex = errorIndex;
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return success ? "TimeParseResult{millis=" + millis + "}" : "TimeParseResult{errorIndex=" + errorIndex + "}";
+    }
+}
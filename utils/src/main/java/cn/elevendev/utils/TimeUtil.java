@@ -1,15 +1,47 @@
 package cn.elevendev.utils;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+
+import java.text.ParsePosition;
 import java.util.Date;
-import java.util.Locale;
+import java.util.TimeZone;
 
+/**
+ * 时间工具类
+ * <p>
+ * 格式化及解析使用按线程缓存的 SimpleDateFormat，可在任意线程调用，
+ * 列表中频繁调用时不会每次都重新编译格式。
+ * <p>
+ * {@link #DEFAULT_FORMAT}、{@link #DATE_FORMAT}、{@link #ISO_8601_FORMAT} 及 {@link #EPOCH_SECONDS_FORMAT}
+ * 有专门的实现，格式化及解析时不创建中间对象、不抛出异常，始终输出 ASCII 数字。
+ * 可以写入调用方提供的 {@link StringBuilder} 或 char[]，也可以解析 {@link CharSequence} 中的一段，
+ * 解析结果写入 {@link TimeParseResult}，避免 -1 与真实时间戳混淆。
+ * <p>
+ * 当前年月日每天只计算一次，常用格式的当前时间字符串在同一秒内复用。默认时区最多每秒检查一次，
+ * 调用 {@link #watchTimeChanges(Context)} 后系统时间、时区或语言变化时立即生效。
+ * <p>
+ * 相对时间（"刚刚"、"5分钟前"等）由 {@link #getRelativeTimeScheduler()} 统一刷新，只在文字变化时唤醒主线程。
+ */
 public class TimeUtil {
 
     /** 默认时间格式 */
     public static final String DEFAULT_FORMAT = "yyyy-MM-dd HH:mm:ss";
+    /** 日期格式 */
+    public static final String DATE_FORMAT = "yyyy-MM-dd";
+    /** ISO 8601 格式，带时区偏移，如 "2023-11-14T22:13:20+08:00"，零偏移为 "Z"；解析时允许秒的小数部分 */
+    public static final String ISO_8601_FORMAT = "yyyy-MM-dd'T'HH:mm:ssXXX";
+    /** 秒级时间戳，如 "1700000000"，并非 SimpleDateFormat 格式，只能用于本类 */
+    public static final String EPOCH_SECONDS_FORMAT = "epochSeconds";
+    /** ISO 8601 不含时区偏移的部分 */
+    private static final String ISO_8601_LOCAL_FORMAT = "yyyy-MM-dd'T'HH:mm:ss";
+
+    private static final RelativeTimeScheduler relativeTimeScheduler = new RelativeTimeScheduler();
+    /** 最近一次的当前时间字符串 */
+    private static volatile CurrentTime currentTime;
+    private static BroadcastReceiver timeChangeReceiver;
 
     /**
      * 获取当前时间字符串
@@ -27,8 +59,21 @@ public class TimeUtil {
      * @return 当前时间字符串
      */
     public static String getCurrentTime(String pattern) {
-        SimpleDateFormat sdf = new SimpleDateFormat(pattern, Locale.getDefault());
-        return sdf.format(new Date());
+        long now = System.currentTimeMillis();
+        int kind = FastTimeFormat.kindOf(pattern);
+        if (kind == FastTimeFormat.NONE) {
+            return formatTime(now, pattern);
+        }
+        // 常用格式精确到秒且与语言无关，同一秒内复用同一个字符串
+        long second = now / 1000;
+        TimeZone zone = DateFormatCache.defaultZone(now);
+        CurrentTime cached = currentTime;
+        if (cached != null && cached.second == second && cached.kind == kind && cached.zone == zone) {
+            return cached.text;
+        }
+        String text = formatTime(now, pattern);
+        currentTime = new CurrentTime(kind, second, zone, text);
+        return text;
     }
 
     /**
@@ -37,8 +82,7 @@ public class TimeUtil {
      * @return 当前年份
      */
     public static int getCurrentYear() {
-        Calendar cal = Calendar.getInstance();
-        return cal.get(Calendar.YEAR);
+        return DateSnapshot.get().year;
     }
 
     /**
@@ -47,8 +91,7 @@ public class TimeUtil {
      * @return 当前月份
      */
     public static int getCurrentMonth() {
-        Calendar cal = Calendar.getInstance();
-        return cal.get(Calendar.MONTH) + 1;  // Calendar.MONTH 从0开始
+        return DateSnapshot.get().month;
     }
 
     /**
@@ -57,8 +100,93 @@ public class TimeUtil {
      * @return 当前日
      */
     public static int getCurrentDay() {
-        Calendar cal = Calendar.getInstance();
-        return cal.get(Calendar.DAY_OF_MONTH);
+        return DateSnapshot.get().day;
+    }
+
+    /**
+     * 监听系统时间、时区及语言变化，变化后立即清空缓存的日期、时区及格式，并刷新相对时间。
+     * 不监听时最长一秒后才能感知时区变化。同时监听亮屏，休眠期间错过的相对时间刷新会立即补上。
+     * 多次调用只注册一次。
+     *
+     * @param context 上下文
+     */
+    public static synchronized void watchTimeChanges(Context context) {
+        if (timeChangeReceiver != null) {
+            return;
+        }
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_TIME_CHANGED);
+        filter.addAction(Intent.ACTION_TIMEZONE_CHANGED);
+        filter.addAction(Intent.ACTION_DATE_CHANGED);
+        filter.addAction(Intent.ACTION_LOCALE_CHANGED);
+        filter.addAction(Intent.ACTION_SCREEN_ON);
+        timeChangeReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                if (Intent.ACTION_SCREEN_ON.equals(intent.getAction())) {
+                    // 休眠时主线程的延时消息暂停计时
+                    relativeTimeScheduler.onTimeChanged();
+                } else {
+                    clearCache();
+                }
+            }
+        };
+        context.getApplicationContext().registerReceiver(timeChangeReceiver, filter);
+    }
+
+    /**
+     * 清空缓存的日期、时区及格式，如调用 {@link TimeZone#setDefault(TimeZone)} 后
+     */
+    public static void clearCache() {
+        DateFormatCache.clear();
+        DateSnapshot.clear();
+        currentTime = null;
+        relativeTimeScheduler.onTimeChanged();
+    }
+
+    /**
+     * 格式化为相对时间，如"刚刚"、"5分钟前"、"3小时前"、"昨天 12:30"、"11-14 22:13"、"2022-11-14"
+     *
+     * @param timestamp 时间戳（毫秒）
+     * @return 相对时间
+     */
+    public static String formatRelative(long timestamp) {
+        return formatRelative(timestamp, System.currentTimeMillis());
+    }
+
+    /**
+     * 格式化为相对于指定时刻的相对时间
+     *
+     * @param timestamp 时间戳（毫秒）
+     * @param now       参照时刻（毫秒）
+     * @return 相对时间
+     */
+    public static String formatRelative(long timestamp, long now) {
+        RelativeTime relativeTime = new RelativeTime();
+        relativeTime.compute(timestamp, now);
+        return relativeTime.text;
+    }
+
+    /**
+     * 获取相对时间下一次变化的时刻，自行安排刷新时使用
+     *
+     * @param timestamp 时间戳（毫秒）
+     * @param now       参照时刻（毫秒）
+     * @return 文字变化的时刻（毫秒），不再变化时为 {@link Long#MAX_VALUE}
+     */
+    public static long nextRelativeChange(long timestamp, long now) {
+        RelativeTime relativeTime = new RelativeTime();
+        relativeTime.compute(timestamp, now);
+        return relativeTime.nextChange;
+    }
+
+    /**
+     * 获取相对时间的统一刷新器，列表中显示相对时间的控件绑定到这里，不需要各自的定时器
+     *
+     * @return 刷新器
+     */
+    public static RelativeTimeScheduler getRelativeTimeScheduler() {
+        return relativeTimeScheduler;
     }
 
     /**
@@ -69,26 +197,183 @@ public class TimeUtil {
      * @return 格式化后的时间字符串
      */
     public static String formatTime(long timestamp, String pattern) {
-        SimpleDateFormat sdf = new SimpleDateFormat(pattern, Locale.getDefault());
-        return sdf.format(new Date(timestamp));
+        int kind = FastTimeFormat.kindOf(pattern);
+        if (kind != FastTimeFormat.NONE) {
+            char[] buffer = FastTimeFormat.buffer();
+            int length = FastTimeFormat.format(timestamp, kind, DateFormatCache.defaultZone(), buffer);
+            if (length != -1) {
+                return new String(buffer, 0, length);
+            }
+        }
+        return formatSlow(timestamp, pattern, kind);
+    }
+
+    /**
+     * 将时间戳（毫秒）格式化后追加到 StringBuilder，常用格式不创建中间对象
+     *
+     * @param timestamp 时间戳（毫秒）
+     * @param pattern   时间格式
+     * @param out       输出
+     * @return out
+     */
+    public static StringBuilder formatTime(long timestamp, String pattern, StringBuilder out) {
+        int kind = FastTimeFormat.kindOf(pattern);
+        if (kind != FastTimeFormat.NONE) {
+            char[] buffer = FastTimeFormat.buffer();
+            int length = FastTimeFormat.format(timestamp, kind, DateFormatCache.defaultZone(), buffer);
+            if (length != -1) {
+                return out.append(buffer, 0, length);
+            }
+        }
+        return out.append(formatSlow(timestamp, pattern, kind));
+    }
+
+    /**
+     * 将时间戳（毫秒）格式化后写入 char[]，常用格式不创建中间对象
+     *
+     * @param timestamp 时间戳（毫秒）
+     * @param pattern   时间格式
+     * @param buffer    输出
+     * @param offset    开始写入的位置
+     * @return 写入的字符数，剩余空间不足时不写入并返回 -1
+     */
+    public static int formatTime(long timestamp, String pattern, char[] buffer, int offset) {
+        int kind = FastTimeFormat.kindOf(pattern);
+        if (kind != FastTimeFormat.NONE) {
+            char[] scratch = FastTimeFormat.buffer();
+            int length = FastTimeFormat.format(timestamp, kind, DateFormatCache.defaultZone(), scratch);
+            if (length != -1) {
+                if (length > buffer.length - offset) {
+                    return -1;
+                }
+                System.arraycopy(scratch, 0, buffer, offset, length);
+                return length;
+            }
+        }
+        String text = formatSlow(timestamp, pattern, kind);
+        if (text.length() > buffer.length - offset) {
+            return -1;
+        }
+        text.getChars(0, text.length(), buffer, offset);
+        return text.length();
+    }
+
+    /**
+     * 快速路径不支持时（如年份超出范围）使用 SimpleDateFormat 格式化。
+     * 旧版系统（API 21~23）的 SimpleDateFormat 不支持 XXX，ISO 8601 的时区偏移单独写入。
+     */
+    private static String formatSlow(long timestamp, String pattern, int kind) {
+        if (kind != FastTimeFormat.ISO_8601) {
+            return DateFormatCache.format(timestamp, pattern);
+        }
+        char[] buffer = FastTimeFormat.buffer();
+        int length = FastTimeFormat.writeOffset(buffer, 0, DateFormatCache.defaultZone().getOffset(timestamp));
+        return DateFormatCache.format(timestamp, ISO_8601_LOCAL_FORMAT) + new String(buffer, 0, length);
+    }
+
+    /**
+     * 批量格式化时间戳，同时给出天、周、月序号，用于长列表一次性处理
+     *
+     * @param timestamps 时间戳（毫秒）
+     * @param pattern    时间格式
+     * @return 结果
+     * @see #formatBatch(long[], String, TimeBatchOptions)
+     */
+    public static TimeBatch formatBatch(long[] timestamps, String pattern) {
+        return formatBatch(timestamps, pattern, new TimeBatchOptions());
+    }
+
+    /**
+     * 批量格式化时间戳，同时给出天、周、月序号
+     * <p>
+     * 同一天的时间戳只计算一次日期，精度内相同的时间戳共享同一个字符串，
+     * 结果与逐个调用 {@link #formatTime(long, String)} 相同。
+     *
+     * @param timestamps 时间戳（毫秒）
+     * @param pattern    时间格式，关闭 {@link TimeBatchOptions#setFormatText(boolean)} 时可为 null
+     * @param options    选项
+     * @return 结果
+     */
+    public static TimeBatch formatBatch(long[] timestamps, String pattern, TimeBatchOptions options) {
+        return TimeBatch.format(timestamps, pattern, options);
     }
 
     /**
      * 将时间字符串解析为时间戳（毫秒）
+     * <p>
+     * 常用格式先严格解析，不符合时再按 SimpleDateFormat 的宽松规则解析，与以前的结果保持一致。
      *
      * @param timeStr 时间字符串
      * @param pattern 时间格式
-     * @return 对应的时间戳（毫秒），解析失败返回 -1
+     * @return 对应的时间戳（毫秒），解析失败返回 -1；需要区分失败与 -1 时使用
+     * {@link #parseTime(CharSequence, String, TimeParseResult)}
      */
     public static long parseTime(String timeStr, String pattern) {
-        SimpleDateFormat sdf = new SimpleDateFormat(pattern, Locale.getDefault());
-        try {
-            Date date = sdf.parse(timeStr);
-            return date != null ? date.getTime() : -1;
-        } catch (ParseException e) {
-            e.printStackTrace();
-            return -1;
+        int kind = FastTimeFormat.kindOf(pattern);
+        if (kind != FastTimeFormat.NONE) {
+            TimeParseResult result = new TimeParseResult();
+            int parsed = FastTimeFormat.parse(timeStr, 0, timeStr.length(), kind, DateFormatCache.defaultZone(), result);
+            if (parsed == FastTimeFormat.PARSED) {
+                return result.getMillisOrDefault(-1);
+            }
+            if (parsed == FastTimeFormat.FAILED
+                && (kind == FastTimeFormat.ISO_8601 || kind == FastTimeFormat.EPOCH_SECONDS)) {
+                // 旧版系统的 SimpleDateFormat 不支持 XXX，秒级时间戳也不是 SimpleDateFormat 格式
+                return -1;
+            }
         }
+        Date date = DateFormatCache.parse(timeStr, pattern, new ParsePosition(0));
+        return date != null ? date.getTime() : -1;
+    }
+
+    /**
+     * 解析时间字符串，不抛出异常
+     *
+     * @param text    时间字符串
+     * @param pattern 时间格式
+     * @param result  解析结果，可重复使用
+     * @return 是否成功
+     * @see #parseTime(CharSequence, int, int, String, TimeParseResult)
+     */
+    public static boolean parseTime(CharSequence text, String pattern, TimeParseResult result) {
+        return parseTime(text, 0, text.length(), pattern, result);
+    }
+
+    /**
+     * 解析时间字符串中 [start, end) 的部分，不抛出异常
+     * <p>
+     * 常用格式严格解析且不创建任何对象：字段位数、取值范围及分隔符必须完全符合，不允许多余字符。
+     * 其他格式使用 SimpleDateFormat，同样要求整段都被解析。
+     *
+     * @param text    时间字符串
+     * @param start   开始位置
+     * @param end     结束位置（不含）
+     * @param pattern 时间格式
+     * @param result  解析结果，可重复使用；失败时 {@link TimeParseResult#getErrorIndex()} 为出错位置
+     * @return 是否成功
+     */
+    public static boolean parseTime(CharSequence text, int start, int end, String pattern, TimeParseResult result) {
+        if (start < 0 || end > text.length() || start > end) {
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + text.length());
+        }
+        TimeZone zone = DateFormatCache.defaultZone();
+        int kind = FastTimeFormat.kindOf(pattern);
+        if (kind != FastTimeFormat.NONE) {
+            int parsed = FastTimeFormat.parse(text, start, end, kind, zone, result);
+            if (parsed != FastTimeFormat.UNSUPPORTED) {
+                return parsed == FastTimeFormat.PARSED;
+            }
+        }
+        String timeStr = text.subSequence(start, end).toString();
+        ParsePosition position = new ParsePosition(0);
+        Date date = DateFormatCache.parse(timeStr, pattern, position);
+        if (date == null) {
+            return result.failure(start + Math.max(position.getErrorIndex(), 0));
+        }
+        if (position.getIndex() != timeStr.length()) {
+            return result.failure(start + position.getIndex());
+        }
+        return result.success(date.getTime());
     }
 
     /**
@@ -113,4 +398,19 @@ public class TimeUtil {
         long millis = parseTime(timeStr, pattern);
         return millis == -1 ? -1 : millis / 1000;
     }
+
+    private static final class CurrentTime {
+
+        final int kind;
+        final long second;
+        final TimeZone zone;
+        final String text;
+
+        CurrentTime(int kind, long second, TimeZone zone, String text) {
+            this.kind = kind;
+            this.second = second;
+            this.zone = zone;
+            this.text = text;
+        }
+    }
 }
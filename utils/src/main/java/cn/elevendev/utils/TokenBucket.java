@@ -0,0 +1,55 @@
+package cn.elevendev.utils;
+
+/**
+ * 令牌桶限速
+ * <p>
+ * 令牌按 bytesPerSecond 的速度补充，最多积累一秒的量。取令牌时允许透支，
+ * 透支的部分按速度换算为等待时间由调用方等待，多个线程共享时总速度不超过限制。
+ */
+final class TokenBucket {
+
+    private long bytesPerSecond;
+    private double tokens;
+    private long lastRefillNanos = System.nanoTime();
+
+    TokenBucket(long bytesPerSecond) {
+        setRate(bytesPerSecond);
+    }
+
+    /**
+     * 设置速度
+     *
+     * @param bytesPerSecond 每秒字节数，小于等于 0 时不限速
+     */
+    synchronized void setRate(long bytesPerSecond) {
+        refill(System.nanoTime());
+        this.bytesPerSecond = bytesPerSecond;
+        tokens = Math.min(tokens, Math.max(bytesPerSecond, 0));
+    }
+
+    synchronized long getRate() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * 取出指定数量的令牌
+     *
+     * @param bytes 字节数
+     * @return 调用方需要等待的时间（纳秒），不需要等待时返回 0
+     */
+    synchronized long reserve(long bytes) {
+        if (bytesPerSecond <= 0) {
+            return 0;
+        }
+        refill(System.nanoTime());
+        tokens -= bytes;
+        return tokens >= 0 ? 0 : (long) (-tokens * 1_000_000_000d / bytesPerSecond);
+    }
+
+    private void refill(long now) {
+        if (bytesPerSecond > 0) {
+            tokens = Math.min(bytesPerSecond, tokens + (now - lastRefillNanos) * bytesPerSecond / 1_000_000_000d);
+        }
+        lastRefillNanos = now;
+    }
+}
@@ -0,0 +1,104 @@
+package cn.elevendev.utils;
+
+import java.io.File;
+import java.util.concurrent.Executor;
+
+/**
+ * 可续传的分块上传选项
+ */
+public class UploadOptions {
+
+    /** 默认每块的字节数 */
+    public static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+    /** 默认连续失败的最大重试次数 */
+    public static final int DEFAULT_MAX_RETRIES = 3;
+
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+    private String contentType;
+    private File stateDirectory;
+    private Executor callbackExecutor;
+
+    /**
+     * 设置每块的字节数，每块使用一个请求，中断后最多重新上传一块。
+     * 部分服务器要求为 256 KB 的整数倍。
+     *
+     * @param chunkSize 字节数，至少 256 KB
+     * @return 当前对象
+     */
+    public UploadOptions setChunkSize(int chunkSize) {
+        if (chunkSize < 256 * 1024) {
+            throw new IllegalArgumentException("chunkSize < 256 KB: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * 设置连续失败（网络异常、408、429 或 5xx）的最大重试次数，每次重试前向服务器查询已接收的位置
+     *
+     * @param maxRetries 次数，为 0 时不重试
+     * @return 当前对象
+     */
+    public UploadOptions setMaxRetries(int maxRetries) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("maxRetries < 0: " + maxRetries);
+        }
+        this.maxRetries = maxRetries;
+        return this;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * 设置文件类型，未设置时按文件名推断
+     *
+     * @param contentType 文件类型，如 "video/mp4"
+     * @return 当前对象
+     */
+    public UploadOptions setContentType(String contentType) {
+        this.contentType = contentType;
+        return this;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * 设置保存上传会话的目录，进程被杀后再次上传同一文件时从中恢复。
+     * 未设置时使用系统临时目录（Android 中为应用的缓存目录）。
+     *
+     * @param stateDirectory 目录
+     * @return 当前对象
+     */
+    public UploadOptions setStateDirectory(File stateDirectory) {
+        this.stateDirectory = stateDirectory;
+        return this;
+    }
+
+    public File getStateDirectory() {
+        return stateDirectory;
+    }
+
+    /**
+     * 设置进度及结果回调所在的线程，未设置时使用 {@link HttpUtil#setCallbackExecutor} 指定的默认线程
+     *
+     * @param callbackExecutor {@link HttpUtil#MAIN_THREAD}、{@link HttpUtil#WORKER_THREAD} 或自定义线程池
+     * @return 当前对象
+     */
+    public UploadOptions setCallbackExecutor(Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+        return this;
+    }
+
+    public Executor getCallbackExecutor() {
+        return callbackExecutor;
+    }
+}
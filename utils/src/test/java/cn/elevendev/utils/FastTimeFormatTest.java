@@ -0,0 +1,145 @@
+package cn.elevendev.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+public class FastTimeFormatTest {
+
+    private static final String[] ZONES = {
+        "UTC", "Asia/Shanghai", "America/New_York", "Asia/Kolkata", "Australia/Lord_Howe", "America/St_Johns"
+    };
+    private static final String[] PATTERNS = {
+        TimeUtil.DEFAULT_FORMAT, TimeUtil.DATE_FORMAT, TimeUtil.ISO_8601_FORMAT
+    };
+
+    private TimeZone defaultZone;
+    private Locale defaultLocale;
+
+    @Before
+    public void setUp() {
+        defaultZone = TimeZone.getDefault();
+        defaultLocale = Locale.getDefault();
+        Locale.setDefault(Locale.US);
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(defaultZone);
+        Locale.setDefault(defaultLocale);
+        DateFormatCache.clear();
+    }
+
+    @Test
+    public void formatMatchesSimpleDateFormat() {
+        Random random = new Random(1);
+        for (String zone : ZONES) {
+            useZone(zone);
+            for (String pattern : PATTERNS) {
+                SimpleDateFormat expected = simpleDateFormat(pattern, zone);
+                StringBuilder builder = new StringBuilder();
+                char[] buffer = new char[FastTimeFormat.MAX_LENGTH + 1];
+                for (int i = 0; i < 10_000; i++) {
+                    long timestamp = sample(random, i);
+                    String text = expected.format(new Date(timestamp));
+                    String message = zone + " " + pattern + " " + timestamp;
+                    assertEquals(message, text, TimeUtil.formatTime(timestamp, pattern));
+
+                    builder.setLength(0);
+                    assertEquals(message, text, TimeUtil.formatTime(timestamp, pattern, builder).toString());
+                    int length = TimeUtil.formatTime(timestamp, pattern, buffer, 1);
+                    assertEquals(message, text, new String(buffer, 1, length));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void parseMatchesSimpleDateFormat() throws ParseException {
+        Random random = new Random(2);
+        TimeParseResult result = new TimeParseResult();
+        for (String zone : ZONES) {
+            useZone(zone);
+            for (String pattern : PATTERNS) {
+                SimpleDateFormat expected = simpleDateFormat(pattern, zone);
+                for (int i = 0; i < 10_000; i++) {
+                    String text = expected.format(new Date(sample(random, i)));
+                    long millis = expected.parse(text).getTime();
+                    assertTrue(text, TimeUtil.parseTime(text, pattern, result));
+                    assertEquals(zone + " " + text, millis, result.getMillis());
+                    assertEquals(zone + " " + text, millis, TimeUtil.parseTime(text, pattern));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void isoFormatOutsideFastRangeWritesOffset() {
+        for (String zone : ZONES) {
+            useZone(zone);
+            SimpleDateFormat expected = simpleDateFormat(TimeUtil.ISO_8601_FORMAT, zone);
+            // 1583 年之前及 9999 年之后不走快速路径
+            for (long timestamp : new long[]{-12_219_292_800_001L, -30_000_000_000_000L, 253_402_300_800_000L}) {
+                assertEquals(zone, expected.format(new Date(timestamp)),
+                    TimeUtil.formatTime(timestamp, TimeUtil.ISO_8601_FORMAT));
+            }
+        }
+    }
+
+    @Test
+    public void isoParseAcceptsFractionsAndOffsets() {
+        useZone("Asia/Shanghai");
+        TimeParseResult result = new TimeParseResult();
+        assertTrue(TimeUtil.parseTime("2023-11-14T22:13:20Z", TimeUtil.ISO_8601_FORMAT, result));
+        assertEquals(1_700_000_000_000L, result.getMillis());
+        assertTrue(TimeUtil.parseTime("2023-11-15T06:13:20.123+08:00", TimeUtil.ISO_8601_FORMAT, result));
+        assertEquals(1_700_000_000_123L, result.getMillis());
+        assertFalse(TimeUtil.parseTime("2023-02-29T00:00:00Z", TimeUtil.ISO_8601_FORMAT, result));
+        assertEquals(-1, TimeUtil.parseTime("x2023", TimeUtil.ISO_8601_FORMAT));
+    }
+
+    @Test
+    public void epochSecondsRoundTrip() {
+        assertEquals("1700000000", TimeUtil.formatTime(1_700_000_000_999L, TimeUtil.EPOCH_SECONDS_FORMAT));
+        assertEquals("-1", TimeUtil.formatTime(-1, TimeUtil.EPOCH_SECONDS_FORMAT));
+        assertEquals(1_700_000_000_000L, TimeUtil.parseTime("1700000000", TimeUtil.EPOCH_SECONDS_FORMAT));
+        assertEquals(-1, TimeUtil.parseTime("12a", TimeUtil.EPOCH_SECONDS_FORMAT));
+    }
+
+    @Test
+    public void charArrayOutputReportsInsufficientSpace() {
+        char[] buffer = new char[19];
+        assertEquals(19, TimeUtil.formatTime(0, TimeUtil.DEFAULT_FORMAT, buffer, 0));
+        assertEquals(-1, TimeUtil.formatTime(0, TimeUtil.DEFAULT_FORMAT, buffer, 1));
+    }
+
+    /**
+     * 大部分在 1717~2223 年之间，部分覆盖公元 1 年到 9999 年
+     */
+    private static long sample(Random random, int i) {
+        if (i % 7 == 0) {
+            return -62_135_596_800_000L + Math.abs(random.nextLong() % 315_537_897_600_000L);
+        }
+        return (long) ((random.nextDouble() * 2 - 0.6) * 8e12);
+    }
+
+    private static SimpleDateFormat simpleDateFormat(String pattern, String zone) {
+        SimpleDateFormat format = new SimpleDateFormat(pattern, Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone(zone));
+        return format;
+    }
+
+    private static void useZone(String zone) {
+        TimeZone.setDefault(TimeZone.getTimeZone(zone));
+        DateFormatCache.clear();
+    }
+}
@@ -0,0 +1,176 @@
+package cn.elevendev.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class HttpDispatcherTest {
+
+    private HttpDispatcher dispatcher;
+    private final List<String> started = Collections.synchronizedList(new ArrayList<String>());
+    private final List<RecordingTask> tasks = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        dispatcher = new HttpDispatcher();
+    }
+
+    @After
+    public void tearDown() {
+        for (RecordingTask task : tasks) {
+            task.release.countDown();
+        }
+    }
+
+    @Test
+    public void queuedTasksRunInPriorityOrder() throws Exception {
+        dispatcher.setMaxRequests(1);
+        RecordingTask blocker = enqueue("blocker", "a", HttpDispatcher.Priority.NORMAL);
+        RecordingTask background = enqueue("background", "a", HttpDispatcher.Priority.BACKGROUND);
+        RecordingTask normal = enqueue("normal", "a", HttpDispatcher.Priority.NORMAL);
+        RecordingTask immediate = enqueue("immediate", "a", HttpDispatcher.Priority.IMMEDIATE);
+        assertEquals(1, dispatcher.runningCount());
+        assertEquals(3, dispatcher.queuedCount());
+
+        background.release.countDown();
+        normal.release.countDown();
+        immediate.release.countDown();
+        blocker.release.countDown();
+        background.awaitFinished();
+
+        assertEquals(Arrays.asList("blocker", "immediate", "normal", "background"), started);
+    }
+
+    @Test
+    public void raisingPriorityMovesTaskAhead() throws Exception {
+        dispatcher.setMaxRequests(1);
+        RecordingTask blocker = enqueue("blocker", "a", HttpDispatcher.Priority.NORMAL);
+        RecordingTask first = enqueue("first", "a", HttpDispatcher.Priority.NORMAL);
+        RecordingTask second = enqueue("second", "a", HttpDispatcher.Priority.NORMAL);
+        dispatcher.setPriority(second, HttpDispatcher.Priority.IMMEDIATE);
+
+        first.release.countDown();
+        second.release.countDown();
+        blocker.release.countDown();
+        first.awaitFinished();
+
+        assertEquals(Arrays.asList("blocker", "second", "first"), started);
+    }
+
+    @Test
+    public void perHostLimitLeavesRoomForOtherHosts() throws Exception {
+        dispatcher.setMaxRequests(10);
+        dispatcher.setMaxRequestsPerHost(2);
+        for (int i = 0; i < 5; i++) {
+            enqueue("a" + i, "a.example.com", HttpDispatcher.Priority.NORMAL);
+        }
+        RecordingTask other = enqueue("b", "b.example.com", HttpDispatcher.Priority.NORMAL);
+
+        assertEquals(3, dispatcher.runningCount());
+        assertEquals(3, dispatcher.queuedCount());
+        assertTrue(other.started.await(5, TimeUnit.SECONDS));
+
+        // 同一主机的任务结束后，排队的任务依次补上
+        tasks.get(0).release.countDown();
+        tasks.get(0).awaitFinished();
+        assertTrue(tasks.get(2).started.await(5, TimeUnit.SECONDS));
+        assertEquals(2, dispatcher.queuedCount());
+    }
+
+    @Test
+    public void backgroundTasksAreLimitedWhileForegroundIsBusy() throws Exception {
+        dispatcher.setMaxBackgroundRequests(1);
+        RecordingTask foreground = enqueue("foreground", "a", HttpDispatcher.Priority.NORMAL);
+        enqueue("background0", "b", HttpDispatcher.Priority.BACKGROUND);
+        enqueue("background1", "c", HttpDispatcher.Priority.BACKGROUND);
+        RecordingTask idle = enqueue("idle", "d", HttpDispatcher.Priority.IDLE);
+
+        assertEquals(2, dispatcher.runningCount());
+        assertEquals(2, dispatcher.queuedCount());
+        assertEquals(1, idle.started.getCount());
+
+        // 前台请求结束后不再限制
+        foreground.release.countDown();
+        assertTrue(idle.started.await(5, TimeUnit.SECONDS));
+        assertTrue(tasks.get(2).started.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void fullQueueRejectsNewTasks() {
+        dispatcher.setMaxRequests(1);
+        dispatcher.setMaxQueuedRequests(1);
+        enqueue("running", "a", HttpDispatcher.Priority.NORMAL);
+        enqueue("queued", "a", HttpDispatcher.Priority.NORMAL);
+
+        assertFalse(dispatcher.enqueue(new RecordingTask("rejected", "a", HttpDispatcher.Priority.NORMAL)));
+        assertEquals(1, dispatcher.queuedCount());
+    }
+
+    @Test
+    public void canceledTaskNeverRuns() throws Exception {
+        dispatcher.setMaxRequests(1);
+        RecordingTask blocker = enqueue("blocker", "a", HttpDispatcher.Priority.NORMAL);
+        RecordingTask canceled = enqueue("canceled", "a", HttpDispatcher.Priority.NORMAL);
+        RecordingTask last = enqueue("last", "a", HttpDispatcher.Priority.NORMAL);
+
+        assertTrue(dispatcher.cancel(canceled));
+        last.release.countDown();
+        blocker.release.countDown();
+        last.awaitFinished();
+
+        assertEquals(Arrays.asList("blocker", "last"), started);
+    }
+
+    private RecordingTask enqueue(String name, String host, HttpDispatcher.Priority priority) {
+        RecordingTask task = new RecordingTask(name, host, priority);
+        tasks.add(task);
+        assertTrue(dispatcher.enqueue(task));
+        return task;
+    }
+
+    /**
+     * 记录开始顺序并阻塞到被释放的任务
+     */
+    private final class RecordingTask extends HttpDispatcher.Task {
+
+        final String name;
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch finished = new CountDownLatch(1);
+
+        RecordingTask(String name, String host, HttpDispatcher.Priority priority) {
+            super(host, priority);
+            this.name = name;
+        }
+
+        @Override
+        void execute() {
+            HttpDispatcherTest.this.started.add(name);
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            finished.countDown();
+        }
+
+        @Override
+        void reject() {
+            finished.countDown();
+        }
+
+        void awaitFinished() throws InterruptedException {
+            assertTrue(finished.await(10, TimeUnit.SECONDS));
+        }
+    }
+}
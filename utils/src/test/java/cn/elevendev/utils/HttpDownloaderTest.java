@@ -0,0 +1,422 @@
+package cn.elevendev.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import okio.Buffer;
+import okio.ByteString;
+
+import static org.junit.Assert.*;
+
+public class HttpDownloaderTest {
+
+    private static final String ETAG = "\"v1\"";
+
+    private MockWebServer server;
+    private RangeDispatcher files;
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        files = new RangeDispatcher();
+        server = new MockWebServer();
+        server.setDispatcher(files);
+        server.start();
+        directory = Files.createTempDirectory("download").toFile();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void segmentedDownloadReusesFirstResponse() throws Exception {
+        files.content = randomBytes(3 * 1024 * 1024 + 17);
+        File destination = new File(directory, "file.bin");
+
+        Result result = download(destination, new DownloadOptions().setSegments(3));
+
+        assertNull(result.error);
+        assertArrayEquals(files.content, Files.readAllBytes(destination.toPath()));
+        // 第一个请求即第一段，不再单独探测
+        assertEquals(3, server.getRequestCount());
+        assertEquals("bytes=0-", server.takeRequest().getHeader("Range"));
+        assertFalse(new File(destination.getPath() + ".part").exists());
+        assertFalse(new File(destination.getPath() + ".part.state").exists());
+    }
+
+    @Test
+    public void singleSegmentDownloadUsesOneRequest() throws Exception {
+        files.content = randomBytes(200_000);
+        File destination = new File(directory, "file.bin");
+
+        Result result = download(destination, new DownloadOptions().setSegments(1));
+
+        assertNull(result.error);
+        assertArrayEquals(files.content, Files.readAllBytes(destination.toPath()));
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void serverWithoutRangeFallsBackToSingleConnection() throws Exception {
+        files.content = randomBytes(100_000);
+        files.acceptRanges = false;
+        File destination = new File(directory, "file.bin");
+
+        Result result = download(destination, new DownloadOptions());
+
+        assertNull(result.error);
+        assertArrayEquals(files.content, Files.readAllBytes(destination.toPath()));
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void existingDestinationIsReplaced() throws Exception {
+        files.content = randomBytes(100_000);
+        File destination = new File(directory, "file.bin");
+        Files.write(destination.toPath(), new byte[]{1, 2, 3});
+
+        Result result = download(destination, new DownloadOptions());
+
+        assertNull(result.error);
+        assertArrayEquals(files.content, Files.readAllBytes(destination.toPath()));
+    }
+
+    @Test
+    public void emptyResourceProducesEmptyFile() throws Exception {
+        files.content = new byte[0];
+        File destination = new File(directory, "empty.bin");
+
+        Result result = download(destination, new DownloadOptions());
+
+        assertNull(result.error);
+        assertTrue(destination.isFile());
+        assertEquals(0, destination.length());
+    }
+
+    @Test
+    public void interruptedDownloadResumesWithRange() throws Exception {
+        files.content = randomBytes(400_000);
+        files.disconnectRequests.set(1);
+        File destination = new File(directory, "file.bin");
+
+        Result first = download(destination, new DownloadOptions().setSegments(1));
+        assertNotNull(first.error);
+        assertFalse(destination.exists());
+        File partFile = new File(destination.getPath() + ".part");
+        assertTrue(new File(destination.getPath() + ".part.state").exists());
+
+        Result second = download(destination, new DownloadOptions().setSegments(1));
+
+        assertNull(second.error);
+        assertArrayEquals(files.content, Files.readAllBytes(destination.toPath()));
+        assertFalse(partFile.exists());
+        server.takeRequest();
+        RecordedRequest resumed = server.takeRequest();
+        assertNotEquals("bytes=0-", resumed.getHeader("Range"));
+        assertTrue(resumed.getHeader("Range").endsWith("-" + (files.content.length - 1)));
+        assertEquals(ETAG, resumed.getHeader("If-Range"));
+    }
+
+    @Test
+    public void resourceWithoutValidatorIsNotResumed() throws Exception {
+        files.content = randomBytes(400_000);
+        files.etag = null;
+        files.disconnectRequests.set(1);
+        File destination = new File(directory, "file.bin");
+
+        assertNotNull(download(destination, new DownloadOptions().setSegments(1)).error);
+        // 无法通过 If-Range 确认文件未变，不保存续传状态
+        assertFalse(new File(destination.getPath() + ".part.state").exists());
+
+        Result result = download(destination, new DownloadOptions().setSegments(1));
+
+        assertNull(result.error);
+        assertArrayEquals(files.content, Files.readAllBytes(destination.toPath()));
+        server.takeRequest();
+        assertEquals("bytes=0-", server.takeRequest().getHeader("Range"));
+    }
+
+    @Test
+    public void mismatchedContentRangeIsRejected() throws Exception {
+        files.content = randomBytes(400_000);
+        files.disconnectRequests.set(1);
+        File destination = new File(directory, "file.bin");
+        assertNotNull(download(destination, new DownloadOptions().setSegments(1)).error);
+
+        files.ignoreRangeStart = true;
+        Result result = download(destination, new DownloadOptions().setSegments(1));
+
+        assertEquals("下载失败", result.error);
+        assertFalse(destination.exists());
+    }
+
+    @Test
+    public void changedResourceRestartsFromScratch() throws Exception {
+        files.content = randomBytes(400_000);
+        files.disconnectRequests.set(1);
+        File destination = new File(directory, "file.bin");
+        assertNotNull(download(destination, new DownloadOptions().setSegments(1)).error);
+
+        // If-Range 不匹配时服务器返回完整的新内容
+        files.content = randomBytes(300_000);
+        files.etag = "\"v2\"";
+        Result result = download(destination, new DownloadOptions().setSegments(1));
+
+        assertNull(result.error);
+        assertArrayEquals(files.content, Files.readAllBytes(destination.toPath()));
+    }
+
+    @Test
+    public void checksumMismatchDeletesDownloadedFile() throws Exception {
+        files.content = randomBytes(300_000);
+        File destination = new File(directory, "file.bin");
+        String wrong = sha256(new byte[0]);
+
+        Result result = download(destination, new DownloadOptions().setChecksum(DownloadOptions.Checksum.SHA256, wrong));
+
+        assertEquals(HttpUtil.CHECKSUM_MISMATCH_MESSAGE, result.error);
+        assertFalse(destination.exists());
+        assertFalse(new File(destination.getPath() + ".part").exists());
+        assertFalse(new File(destination.getPath() + ".part.state").exists());
+    }
+
+    @Test
+    public void checksumFromReprDigestHeader() throws Exception {
+        files.content = randomBytes(300_000);
+        files.extraHeaderName = "Repr-Digest";
+        files.extraHeaderValue = "sha-256=:" + ByteString.of(files.content).sha256().base64() + ":";
+        File destination = new File(directory, "file.bin");
+
+        Result result = download(destination, new DownloadOptions().setChecksum(DownloadOptions.Checksum.SHA256));
+
+        assertNull(result.error);
+        assertArrayEquals(files.content, Files.readAllBytes(destination.toPath()));
+
+        // 响应头中的值不一致时同样失败
+        files.extraHeaderValue = "sha-256=:" + ByteString.of(new byte[0]).sha256().base64() + ":";
+        File other = new File(directory, "other.bin");
+        result = download(other, new DownloadOptions().setChecksum(DownloadOptions.Checksum.SHA256));
+        assertEquals(HttpUtil.CHECKSUM_MISMATCH_MESSAGE, result.error);
+        assertFalse(other.exists());
+    }
+
+    @Test
+    public void checksumCoversResumedDownload() throws Exception {
+        files.content = randomBytes(400_000);
+        files.disconnectRequests.set(1);
+        File destination = new File(directory, "file.bin");
+        DownloadOptions options = new DownloadOptions().setChecksum(DownloadOptions.Checksum.SHA256, sha256(files.content));
+
+        assertNotNull(download(destination, options).error);
+        assertTrue(new File(destination.getPath() + ".part.state").exists());
+
+        // 续传时已下载的部分从临时文件读取计算
+        Result result = download(destination, options);
+
+        assertNull(result.error);
+        assertArrayEquals(files.content, Files.readAllBytes(destination.toPath()));
+        server.takeRequest();
+        assertNotEquals("bytes=0-", server.takeRequest().getHeader("Range"));
+    }
+
+    @Test
+    public void headerChecksumIsKeptAcrossResume() throws Exception {
+        files.content = randomBytes(400_000);
+        files.disconnectRequests.set(1);
+        files.extraHeaderName = "Repr-Digest";
+        files.extraHeaderValue = "sha-256=:" + ByteString.of(files.content).sha256().base64() + ":";
+        File destination = new File(directory, "file.bin");
+        DownloadOptions options = new DownloadOptions().setChecksum(DownloadOptions.Checksum.SHA256);
+        assertNotNull(download(destination, options).error);
+
+        // 续传响应不再带校验值，已下载的部分被破坏
+        files.extraHeaderName = null;
+        File partFile = new File(destination.getPath() + ".part");
+        RandomAccessFile file = new RandomAccessFile(partFile, "rw");
+        try {
+            int value = file.read();
+            file.seek(0);
+            file.write(value ^ 0xff);
+        } finally {
+            file.close();
+        }
+        Result result = download(destination, options);
+
+        assertEquals(HttpUtil.CHECKSUM_MISMATCH_MESSAGE, result.error);
+        assertFalse(destination.exists());
+        assertFalse(partFile.exists());
+        server.takeRequest();
+        assertNotEquals("bytes=0-", server.takeRequest().getHeader("Range"));
+    }
+
+    @Test
+    public void joinerWithDifferentChecksumIsRejected() throws Exception {
+        files.content = randomBytes(400_000);
+        File destination = new File(directory, "file.bin");
+        Result first = new Result();
+        HttpUtil.downloadFile(server.url("/file").toString(), destination.getPath(),
+            new DownloadOptions().setMaxBytesPerSecond(200_000).setCallbackExecutor(HttpUtil.WORKER_THREAD), first);
+
+        // 要求校验的调用不能挂在不校验的下载上
+        Result rejected = download(destination, new DownloadOptions()
+            .setChecksum(DownloadOptions.Checksum.SHA256, sha256(files.content)));
+        assertEquals("目标文件正在下载", rejected.error);
+
+        // 校验设置相同时合并，进度在合并方自己的回调线程回调
+        final Thread[] progressThread = new Thread[1];
+        Executor executor = new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                new Thread(command).start();
+            }
+        };
+        Result joined = new Result() {
+            @Override
+            public void onProgress(long bytesRead, long contentLength, long bytesPerSecond, long etaMillis) {
+                progressThread[0] = Thread.currentThread();
+            }
+        };
+        HttpUtil.downloadFile(server.url("/file").toString(), destination.getPath(),
+            new DownloadOptions().setCallbackExecutor(executor), joined);
+
+        assertTrue(first.done.await(30, TimeUnit.SECONDS));
+        assertTrue(joined.done.await(30, TimeUnit.SECONDS));
+        assertNull(first.error);
+        assertNull(joined.error);
+        assertEquals(1, server.getRequestCount());
+        assertNotNull(progressThread[0]);
+        assertFalse(progressThread[0].getName().startsWith("HttpUtil"));
+    }
+
+    @Test
+    public void namedClientInterceptorsApplyToDownloads() throws Exception {
+        files.content = randomBytes(100_000);
+        File destination = new File(directory, "file.bin");
+        HttpClient client = HttpUtil.getClient("download-test").addInterceptor(new Interceptor() {
+            @Override
+            public Response intercept(Chain chain) throws IOException {
+                return chain.proceed(chain.request().newBuilder().header("Authorization", "token").build());
+            }
+        });
+
+        Result result = new Result();
+        client.downloadFile(server.url("/file").toString(), destination.getPath(),
+            new DownloadOptions().setCallbackExecutor(HttpUtil.WORKER_THREAD), result);
+        assertTrue(result.done.await(30, TimeUnit.SECONDS));
+
+        assertNull(result.error);
+        assertArrayEquals(files.content, Files.readAllBytes(destination.toPath()));
+        assertEquals("token", server.takeRequest().getHeader("Authorization"));
+    }
+
+    Result download(File destination, DownloadOptions options) throws InterruptedException {
+        final Result result = new Result();
+        HttpUtil.downloadFile(server.url("/file").toString(), destination.getPath(),
+            options.setCallbackExecutor(HttpUtil.WORKER_THREAD), result);
+        assertTrue(result.done.await(30, TimeUnit.SECONDS));
+        return result;
+    }
+
+    static String sha256(byte[] bytes) {
+        return ByteString.of(bytes).sha256().hex();
+    }
+
+    static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    static class Result implements HttpUtil.HttpCallback {
+
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile String error;
+
+        @Override
+        public void onSuccess(String response) {
+            done.countDown();
+        }
+
+        @Override
+        public void onFailure(String errorMessage) {
+            error = errorMessage;
+            done.countDown();
+        }
+    }
+
+    /**
+     * 按 Range 及 If-Range 返回文件内容的服务器
+     */
+    static final class RangeDispatcher extends Dispatcher {
+
+        volatile byte[] content;
+        volatile String etag = ETAG;
+        volatile boolean acceptRanges = true;
+        /** 部分响应总是从头返回，模拟不按请求范围响应的服务器 */
+        volatile boolean ignoreRangeStart;
+        /** 之后多少个请求在传输响应体的中途断开 */
+        final AtomicInteger disconnectRequests = new AtomicInteger();
+        volatile String extraHeaderName;
+        volatile String extraHeaderValue;
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            byte[] bytes = content;
+            MockResponse response = new MockResponse();
+            if (etag != null) {
+                response.setHeader("ETag", etag);
+            }
+            if (extraHeaderName != null) {
+                response.setHeader(extraHeaderName, extraHeaderValue);
+            }
+            String range = request.getHeader("Range");
+            String ifRange = request.getHeader("If-Range");
+            boolean partial = acceptRanges && range != null && (ifRange == null || ifRange.equals(etag));
+            if (!partial) {
+                return body(response.setResponseCode(200), bytes, 0, bytes.length);
+            }
+            String[] bounds = range.substring("bytes=".length()).split("-", -1);
+            long start = ignoreRangeStart ? 0 : Long.parseLong(bounds[0]);
+            long end = bounds[1].isEmpty() ? bytes.length - 1 : Math.min(Long.parseLong(bounds[1]), bytes.length - 1);
+            if (start >= bytes.length) {
+                return response.setResponseCode(416).setHeader("Content-Range", "bytes */" + bytes.length);
+            }
+            response.setResponseCode(206)
+                .setHeader("Content-Range", "bytes " + start + "-" + end + "/" + bytes.length);
+            return body(response, bytes, (int) start, (int) (end + 1));
+        }
+
+        private MockResponse body(MockResponse response, byte[] bytes, int from, int to) {
+            response.setBody(new Buffer().write(Arrays.copyOfRange(bytes, from, to)));
+            if (disconnectRequests.getAndDecrement() > 0) {
+                response.setSocketPolicy(SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY);
+            }
+            return response;
+        }
+    }
+}
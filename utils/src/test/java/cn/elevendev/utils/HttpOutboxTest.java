@@ -0,0 +1,162 @@
+package cn.elevendev.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.*;
+
+public class HttpOutboxTest {
+
+    private static final MediaType FORM = MediaType.get("application/x-www-form-urlencoded");
+
+    private MockWebServer server;
+    private File directory;
+    private File journal;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        directory = Files.createTempDirectory("outbox").toFile();
+        journal = new File(directory, "http_outbox.journal");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void entriesSurviveRestartAndReplayInOrder() throws Exception {
+        HttpOutbox outbox = new HttpOutbox(journal);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(add(outbox, "key-" + i, "n=" + i));
+        }
+        assertEquals(3, outbox.size());
+
+        // 写入中途崩溃留下的不完整记录在加载时丢弃
+        FileOutputStream outputStream = new FileOutputStream(journal, true);
+        try {
+            outputStream.write("A\t4\t0\tkey-4".getBytes(StandardCharsets.UTF_8));
+        } finally {
+            outputStream.close();
+        }
+
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(new MockResponse().setResponseCode(201));
+        }
+        HttpOutbox restarted = new HttpOutbox(journal);
+        final List<String> replayed = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch done = new CountDownLatch(3);
+        restarted.addListener(new HttpOutbox.Listener() {
+            @Override
+            public void onReplayed(String idempotencyKey, int code, String message) {
+                replayed.add(idempotencyKey + " " + code);
+                done.countDown();
+            }
+        });
+        restarted.flush();
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(3, replayed.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals("key-" + i + " 201", replayed.get(i));
+            RecordedRequest request = server.takeRequest();
+            assertEquals("POST", request.getMethod());
+            assertEquals("key-" + i, request.getHeader("Idempotency-Key"));
+            assertEquals("n=" + i, request.getBody().readUtf8());
+        }
+
+        // 重发完成的请求不会在下次启动时再次出现
+        HttpOutbox reloaded = new HttpOutbox(journal);
+        assertTrue(add(reloaded, "probe", "n=probe"));
+        assertEquals(1, reloaded.size());
+    }
+
+    @Test
+    public void addDoesNotWaitForReplay() throws Exception {
+        final CountDownLatch received = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                received.countDown();
+                release.await(10, TimeUnit.SECONDS);
+                return new MockResponse();
+            }
+        });
+        HttpOutbox outbox = new HttpOutbox(journal);
+        assertTrue(add(outbox, "slow", "n=1"));
+        outbox.flush();
+        assertTrue(received.await(5, TimeUnit.SECONDS));
+
+        // 重发等待响应期间仍可加入新请求
+        long start = System.nanoTime();
+        assertTrue(add(outbox, "next", "n=2"));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+        release.countDown();
+    }
+
+    @Test
+    public void sameIdempotencyKeyIsAddedOnce() throws Exception {
+        HttpOutbox outbox = new HttpOutbox(journal);
+
+        assertTrue(add(outbox, "same", "n=1"));
+        assertTrue(add(outbox, "same", "n=2"));
+
+        assertEquals(1, outbox.size());
+    }
+
+    @Test
+    public void oversizedBodyIsNotAdded() throws Exception {
+        HttpOutbox outbox = new HttpOutbox(journal).setMaxBytes(4);
+
+        assertFalse(add(outbox, "large", "n=12345"));
+
+        assertEquals(0, outbox.size());
+    }
+
+    private boolean add(HttpOutbox outbox, String key, String body) throws InterruptedException {
+        Request request = new Request.Builder()
+            .url(server.url("/orders"))
+            .header("Idempotency-Key", key)
+            .post(RequestBody.create(body, FORM))
+            .build();
+        final AtomicBoolean added = new AtomicBoolean();
+        final CountDownLatch done = new CountDownLatch(1);
+        outbox.add(request, key, new HttpOutbox.AddCallback() {
+            @Override
+            public void onComplete(boolean result) {
+                added.set(result);
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        return added.get();
+    }
+}
@@ -0,0 +1,459 @@
+package cn.elevendev.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import okio.BufferedSource;
+
+import static org.junit.Assert.*;
+
+public class HttpUtilTest {
+
+    private static final ResponseDecoder<Integer> INTEGER_DECODER = new ResponseDecoder<Integer>() {
+        @Override
+        public Integer decode(BufferedSource source, long contentLength) throws IOException {
+            return Integer.valueOf(source.readUtf8().trim());
+        }
+    };
+
+    private MockWebServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        HttpUtil.setCallbackExecutor(HttpUtil.WORKER_THREAD);
+        HttpUtil.getCircuitBreakers().reset();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+        HttpUtil.setCallbackExecutor(HttpUtil.MAIN_THREAD);
+        HttpUtil.getCircuitBreakers().reset();
+        HttpUtil.getCircuitBreakers().setFailureThreshold(CircuitBreaker.DEFAULT_FAILURE_THRESHOLD);
+        HttpUtil.getCircuitBreakers().setOpenDuration(CircuitBreaker.DEFAULT_OPEN_DURATION_MILLIS);
+        HttpUtil.setDefaultRetryPolicy(null);
+    }
+
+    @Test
+    public void identicalGetsShareOneRequest() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                release.await(10, TimeUnit.SECONDS);
+                return new MockResponse().setBody("shared");
+            }
+        });
+        String url = server.url("/data").toString();
+        Result first = new Result();
+        Result second = new Result();
+        Result third = new Result();
+        HttpCall firstCall = HttpUtil.get(url, first);
+        HttpUtil.get(url, second);
+        HttpUtil.get(url, third);
+
+        // 取消其中一个调用方不影响其他调用方
+        firstCall.cancel();
+        release.countDown();
+
+        second.await();
+        third.await();
+        assertEquals("shared", second.response);
+        assertEquals("shared", third.response);
+        assertEquals(1, first.done.getCount());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void cancelingEveryJoinerCancelsRequest() throws Exception {
+        final CountDownLatch received = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger requests = new AtomicInteger();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                if (requests.getAndIncrement() == 0) {
+                    received.countDown();
+                    release.await(10, TimeUnit.SECONDS);
+                    return new MockResponse().setBody("late");
+                }
+                return new MockResponse().setBody("fresh");
+            }
+        });
+        String url = server.url("/slow").toString();
+        Result first = new Result();
+        Result second = new Result();
+        HttpCall firstCall = HttpUtil.get(url, first);
+        HttpCall secondCall = HttpUtil.get(url, second);
+        assertTrue(received.await(5, TimeUnit.SECONDS));
+
+        firstCall.cancel();
+        secondCall.cancel();
+
+        // 之后相同的请求重新发出，不会挂到已取消的请求上
+        Result third = new Result();
+        HttpUtil.get(url, third);
+        third.await();
+        release.countDown();
+        assertEquals(third.error, "fresh", third.response);
+        assertEquals(2, server.getRequestCount());
+        assertEquals(1, first.done.getCount());
+        assertEquals(1, second.done.getCount());
+    }
+
+    @Test
+    public void notModifiedReusesCachedBody() throws Exception {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if ("\"v1\"".equals(request.getHeader("If-None-Match"))) {
+                    return new MockResponse().setResponseCode(304).setHeader("ETag", "\"v1\"");
+                }
+                return new MockResponse().setHeader("ETag", "\"v1\"").setBody("cached");
+            }
+        });
+        String url = server.url("/etag").toString();
+        long conditionalHits = HttpUtil.getCache().getConditionalHitCount();
+
+        assertEquals("cached", get(url, new RequestOptions()).response);
+        assertEquals("cached", get(url, new RequestOptions()).response);
+
+        // 默认策略不强制跳过 HTTP 缓存，第二次带上校验信息
+        RecordedRequest first = server.takeRequest();
+        assertNull(first.getHeader("Cache-Control"));
+        assertNull(first.getHeader("If-None-Match"));
+        assertEquals("\"v1\"", server.takeRequest().getHeader("If-None-Match"));
+        assertEquals(conditionalHits + 1, HttpUtil.getCache().getConditionalHitCount());
+    }
+
+    @Test
+    public void cacheFirstSkipsNetwork() throws Exception {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setBody("body " + request.getSequenceNumber());
+            }
+        });
+        String url = server.url("/first").toString();
+        RequestOptions options = new RequestOptions().setCachePolicy(HttpCache.Policy.CACHE_FIRST);
+
+        assertEquals("body 0", get(url, options).response);
+        assertEquals("body 0", get(url, options).response);
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void cacheFirstRevalidatesExpiredEntries() throws Exception {
+        final AtomicInteger requests = new AtomicInteger();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (request.getHeader("If-Modified-Since") != null) {
+                    return new MockResponse().setResponseCode(304);
+                }
+                String cacheControl = request.getPath().equals("/no-cache") ? "no-cache" : "max-age=0";
+                return new MockResponse().setHeader("Cache-Control", cacheControl)
+                    .setHeader("Last-Modified", "Wed, 15 Nov 2023 04:00:00 GMT")
+                    .setBody("body " + requests.getAndIncrement());
+            }
+        });
+        RequestOptions options = new RequestOptions().setCachePolicy(HttpCache.Policy.CACHE_FIRST);
+
+        // max-age 已过期及 no-cache 的条目都不直接使用，发送条件请求
+        for (String path : new String[]{"/expired", "/no-cache"}) {
+            String url = server.url(path).toString();
+            String body = get(url, options).response;
+            assertEquals(body, get(url, options).response);
+            assertNull(server.takeRequest().getHeader("If-Modified-Since"));
+            assertNotNull(server.takeRequest().getHeader("If-Modified-Since"));
+        }
+    }
+
+    @Test
+    public void noCacheNeitherReadsNorStores() throws Exception {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setHeader("ETag", "\"v1\"").setBody("fresh");
+            }
+        });
+        String url = server.url("/nocache").toString();
+        RequestOptions options = new RequestOptions().setCachePolicy(HttpCache.Policy.NO_CACHE);
+
+        assertEquals("fresh", get(url, options).response);
+        assertEquals("fresh", get(url, new RequestOptions()).response);
+
+        RecordedRequest first = server.takeRequest();
+        assertEquals("no-cache", first.getHeader("Cache-Control"));
+        // NO_CACHE 的响应没有写入缓存，之后的请求不带校验信息
+        assertNull(server.takeRequest().getHeader("If-None-Match"));
+    }
+
+    @Test
+    public void retriesServerErrorThenSucceeds() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setBody("ok"));
+
+        Result result = get(server.url("/retry").toString(), new RequestOptions().setRetryPolicy(fastRetry()));
+
+        assertEquals("ok", result.response);
+        assertEquals(2, server.getRequestCount());
+        CircuitBreaker breaker = HttpUtil.getCircuitBreakers().get(server.url("/").host());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0, breaker.getConsecutiveFailures());
+    }
+
+    @Test
+    public void postIsNotRetriedByDefault() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setBody("ok"));
+        Result result = new Result();
+
+        HttpUtil.post(server.url("/post").toString(), new HashMap<String, String>(),
+            new RequestOptions().setRetryPolicy(fastRetry()), result);
+        result.await();
+
+        assertEquals("网络异常", result.error);
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void failureAfterResponseIsNotRetried() throws Exception {
+        server.enqueue(new MockResponse().setBody("truncated body")
+            .setSocketPolicy(SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY));
+        server.enqueue(new MockResponse().setBody("ok"));
+
+        Result result = get(server.url("/body").toString(), new RequestOptions().setRetryPolicy(fastRetry()));
+
+        // 已收到响应，服务器可能已处理请求，不重试；熔断器只按状态码记录一次成功
+        assertEquals("网络异常", result.error);
+        assertEquals(1, server.getRequestCount());
+        assertEquals(0, HttpUtil.getCircuitBreakers().get(server.url("/").host()).getConsecutiveFailures());
+    }
+
+    @Test
+    public void breakerOpensAfterConsecutiveFailures() throws Exception {
+        HttpUtil.getCircuitBreakers().setFailureThreshold(2);
+        server.enqueue(new MockResponse().setResponseCode(500));
+        server.enqueue(new MockResponse().setResponseCode(500));
+        server.enqueue(new MockResponse().setBody("ok"));
+        String url = server.url("/breaker").toString();
+        CircuitBreaker breaker = HttpUtil.getCircuitBreakers().get(server.url("/").host());
+
+        assertEquals("网络异常", get(url, new RequestOptions().setCachePolicy(HttpCache.Policy.NO_CACHE)).error);
+        // 每次尝试只记录一次失败
+        assertEquals(1, breaker.getConsecutiveFailures());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals("网络异常", get(url, new RequestOptions().setCachePolicy(HttpCache.Policy.NO_CACHE)).error);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        // 熔断期间请求直接失败，不再发出
+        assertEquals("服务暂不可用", get(url, new RequestOptions().setCachePolicy(HttpCache.Policy.NO_CACHE)).error);
+        assertEquals(2, server.getRequestCount());
+        assertEquals(1, breaker.getRejectedCount());
+
+        // 熔断时间过后放行探测请求，成功则恢复
+        HttpUtil.getCircuitBreakers().setOpenDuration(0);
+        assertEquals("ok", get(url, new RequestOptions().setCachePolicy(HttpCache.Policy.NO_CACHE)).response);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void lateSuccessDoesNotCloseBreaker() {
+        HttpUtil.getCircuitBreakers().setFailureThreshold(1);
+        CircuitBreaker breaker = HttpUtil.getCircuitBreakers().get("late.example");
+        long slow = breaker.allowRequest();
+        breaker.recordFailure(breaker.allowRequest());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        // 熔断前放行的请求之后才成功，不能直接恢复
+        breaker.recordSuccess(slow);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        // 探测期间迟到的结果也不影响探测
+        HttpUtil.getCircuitBreakers().setOpenDuration(0);
+        long probe = breaker.allowRequest();
+        assertTrue(probe >= 0);
+        breaker.recordSuccess(slow);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.allowRequest() < 0);
+        breaker.recordSuccess(probe);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void typedGetRetriesBeforeDecoding() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setBody("42"));
+        TypedResult<Integer> result = new TypedResult<>();
+
+        HttpUtil.get(server.url("/typed").toString(), INTEGER_DECODER,
+            new RequestOptions().setRetryPolicy(fastRetry()), result);
+        result.await();
+
+        assertEquals(Integer.valueOf(42), result.value);
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void typedGetIsRejectedWhileBreakerIsOpen() throws Exception {
+        HttpUtil.getCircuitBreakers().setFailureThreshold(1);
+        server.enqueue(new MockResponse().setResponseCode(500));
+        String url = server.url("/typed").toString();
+
+        TypedResult<Integer> first = new TypedResult<>();
+        HttpUtil.get(url, INTEGER_DECODER, first);
+        first.await();
+        TypedResult<Integer> second = new TypedResult<>();
+        HttpUtil.get(url, INTEGER_DECODER, second);
+        second.await();
+
+        assertEquals("网络异常", first.error);
+        assertEquals("服务暂不可用", second.error);
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void streamUsesDefaultRetryPolicy() throws Exception {
+        HttpUtil.setDefaultRetryPolicy(fastRetry());
+        server.enqueue(new MockResponse().setResponseCode(502));
+        server.enqueue(new MockResponse().setBody("streamed"));
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicReference<String> body = new AtomicReference<>();
+
+        HttpUtil.getStream(server.url("/stream").toString(), new HttpUtil.StreamCallback() {
+            @Override
+            public void onResponse(BufferedSource source, long contentLength) throws IOException {
+                body.set(source.readUtf8());
+                done.countDown();
+            }
+
+            @Override
+            public void onFailure(String errorMessage) {
+                done.countDown();
+            }
+        });
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals("streamed", body.get());
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void exceptionFromStreamCallbackIsReported() throws Exception {
+        server.enqueue(new MockResponse().setBody("streamed"));
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicReference<String> error = new AtomicReference<>();
+
+        HttpUtil.getStream(server.url("/stream").toString(), new HttpUtil.StreamCallback() {
+            @Override
+            public void onResponse(BufferedSource source, long contentLength) {
+                throw new IllegalStateException();
+            }
+
+            @Override
+            public void onFailure(String errorMessage) {
+                error.set(errorMessage);
+                done.countDown();
+            }
+        });
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals("读取失败", error.get());
+    }
+
+    @Test
+    public void callWithoutCallbackLeavesTagWhenDone() throws Exception {
+        server.enqueue(new MockResponse().setBody("ignored"));
+        final CountDownLatch delivered = new CountDownLatch(1);
+        Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+                delivered.countDown();
+            }
+        };
+        Object tag = new Object();
+
+        HttpCall call = HttpUtil.get(server.url("/tagged").toString(),
+            new RequestOptions().setTag(tag).setCallbackExecutor(executor), null);
+        assertTrue(delivered.await(10, TimeUnit.SECONDS));
+
+        // 已结束的请求不再留在分组中，不会被取消
+        HttpCall.cancelAll(tag);
+        assertFalse(call.isCanceled());
+    }
+
+    private static RetryPolicy fastRetry() {
+        return new RetryPolicy().setMaxRetries(2).setBackoff(10, 10, 1);
+    }
+
+    private static Result get(String url, RequestOptions options) throws InterruptedException {
+        Result result = new Result();
+        HttpUtil.get(url, options, result);
+        result.await();
+        return result;
+    }
+
+    static final class TypedResult<T> implements HttpUtil.TypedCallback<T> {
+
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile T value;
+        volatile String error;
+
+        @Override
+        public void onSuccess(T result) {
+            value = result;
+            done.countDown();
+        }
+
+        @Override
+        public void onFailure(String errorMessage) {
+            error = errorMessage;
+            done.countDown();
+        }
+
+        void await() throws InterruptedException {
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+        }
+    }
+
+    static final class Result implements HttpUtil.HttpCallback {
+
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile String response;
+        volatile String error;
+
+        @Override
+        public void onSuccess(String response) {
+            this.response = response;
+            done.countDown();
+        }
+
+        @Override
+        public void onFailure(String errorMessage) {
+            error = errorMessage;
+            done.countDown();
+        }
+
+        void await() throws InterruptedException {
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+        }
+    }
+}
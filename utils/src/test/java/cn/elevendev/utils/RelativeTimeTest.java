@@ -0,0 +1,123 @@
+package cn.elevendev.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+public class RelativeTimeTest {
+
+    private static final long MINUTE = 60_000;
+    private static final long HOUR = 60 * MINUTE;
+    /** 2023-11-15 12:00:00 +08:00 */
+    private static final long NOW = 1_700_020_800_000L;
+    /** 2023-11-15 00:00:00 +08:00 */
+    private static final long TODAY = 1_699_977_600_000L;
+
+    private final RelativeTime relativeTime = new RelativeTime();
+    private TimeZone defaultZone;
+
+    @Before
+    public void setUp() {
+        defaultZone = TimeZone.getDefault();
+        useZone("Asia/Shanghai");
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(defaultZone);
+        DateFormatCache.clear();
+    }
+
+    @Test
+    public void withinOneMinuteIsJustNow() {
+        assertText("刚刚", NOW - MINUTE + 1, NOW);
+        assertEquals(NOW + 1, relativeTime.nextChange);
+        assertText("刚刚", NOW + MINUTE - 1, NOW);
+        assertText("1分钟前", NOW - MINUTE, NOW);
+        assertEquals(NOW + MINUTE, relativeTime.nextChange);
+    }
+
+    @Test
+    public void minutesAndHours() {
+        assertText("59分钟前", NOW - HOUR + 1, NOW);
+        assertEquals(NOW + 1, relativeTime.nextChange);
+        assertText("1小时前", NOW - HOUR, NOW);
+        assertEquals(NOW + HOUR, relativeTime.nextChange);
+        assertText("12小时前", TODAY, NOW);
+        // 到明天零点变为"昨天"
+        assertEquals(TODAY + 13 * HOUR, relativeTime.nextChange);
+    }
+
+    @Test
+    public void yesterdayAndDayBefore() {
+        assertText("昨天 23:59", TODAY - 1, NOW);
+        assertEquals(TODAY + 24 * HOUR, relativeTime.nextChange);
+        assertText("前天 00:00", TODAY - 48 * HOUR, NOW);
+        assertText("11-12 23:59", TODAY - 48 * HOUR - 1, NOW);
+    }
+
+    @Test
+    public void earlierYearsShowDateAndNeverChange() {
+        // 2023-01-01 00:00:00 +08:00
+        long newYear = 1_672_502_400_000L;
+        assertText("01-01 00:00", newYear, NOW);
+        // 2024-01-01 00:00:00 +08:00 起显示年份
+        assertEquals(1_704_038_400_000L, relativeTime.nextChange);
+        assertText("2022-12-31", newYear - 1, NOW);
+        assertEquals(RelativeTime.NEVER, relativeTime.nextChange);
+    }
+
+    @Test
+    public void futureTimestampInLaterYearChangesAtThatYear() {
+        // 2025-06-01 08:00:00 +08:00
+        long future = 1_748_736_000_000L;
+        assertText("2025-06-01", future, NOW);
+        // 2025-01-01 00:00:00 +08:00
+        long yearStart = 1_735_660_800_000L;
+        assertEquals(yearStart, relativeTime.nextChange);
+        assertText("06-01 08:00", future, yearStart);
+        assertEquals(future - MINUTE + 1, relativeTime.nextChange);
+        assertText("刚刚", future, future - MINUTE + 1);
+    }
+
+    @Test
+    public void textIsStableUntilNextChange() {
+        Random random = new Random(3);
+        for (String zone : new String[]{"Asia/Shanghai", "America/New_York", "Australia/Lord_Howe"}) {
+            useZone(zone);
+            for (int i = 0; i < 50_000; i++) {
+                long now = 1_600_000_000_000L + (long) (random.nextDouble() * 300L * 24 * HOUR);
+                long scale = i % 3 == 0 ? 2 * HOUR : i % 3 == 1 ? 4 * 24 * HOUR : 800L * 24 * HOUR;
+                long timestamp = now - (long) ((random.nextDouble() * 1.3 - 0.3) * scale);
+                relativeTime.compute(timestamp, now);
+                String text = relativeTime.text;
+                long nextChange = relativeTime.nextChange;
+                assertTrue(nextChange > now);
+                if (nextChange == RelativeTime.NEVER) {
+                    continue;
+                }
+                String message = zone + " " + timestamp + " " + now;
+                relativeTime.compute(timestamp, nextChange - 1);
+                assertEquals(message, text, relativeTime.text);
+                relativeTime.compute(timestamp, nextChange);
+                assertNotEquals(message, text, relativeTime.text);
+            }
+        }
+    }
+
+    private void assertText(String expected, long timestamp, long now) {
+        relativeTime.compute(timestamp, now);
+        assertEquals(expected, relativeTime.text);
+        assertTrue(relativeTime.nextChange > now);
+    }
+
+    private static void useZone(String zone) {
+        TimeZone.setDefault(TimeZone.getTimeZone(zone));
+        DateFormatCache.clear();
+    }
+}
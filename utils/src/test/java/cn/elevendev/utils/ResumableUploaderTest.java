@@ -0,0 +1,215 @@
+package cn.elevendev.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.*;
+
+public class ResumableUploaderTest {
+
+    private static final int CHUNK = 256 * 1024;
+
+    private MockWebServer server;
+    private UploadDispatcher sessions;
+    private File directory;
+    private File file;
+    private byte[] content;
+
+    @Before
+    public void setUp() throws IOException {
+        sessions = new UploadDispatcher();
+        server = new MockWebServer();
+        server.setDispatcher(sessions);
+        server.start();
+        directory = Files.createTempDirectory("upload").toFile();
+        content = HttpDownloaderTest.randomBytes(2 * CHUNK + 1000);
+        file = new File(directory, "file.bin");
+        Files.write(file.toPath(), content);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+        for (File child : directory.listFiles()) {
+            child.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void chunksFollowReceivedRange() throws Exception {
+        // 第一块只保存一部分，之后从服务器返回的位置继续
+        sessions.partialChunks.set(1);
+
+        Result result = upload(new UploadOptions());
+
+        assertNull(result.error);
+        assertEquals("done", result.response);
+        assertArrayEquals(content, sessions.received(0));
+        List<String> ranges = sessions.contentRanges;
+        assertEquals("bytes 0-" + (CHUNK - 1) + "/" + content.length, ranges.get(0));
+        assertTrue(ranges.get(1).startsWith("bytes " + CHUNK / 2 + "-"));
+        assertEquals(0, stateFiles());
+    }
+
+    @Test
+    public void stalledSessionCountsAsFailure() throws Exception {
+        sessions.stalled = true;
+
+        Result result = upload(new UploadOptions().setMaxRetries(1));
+
+        assertEquals("上传失败", result.error);
+        // 创建会话、上传、退避后查询位置、再上传一次
+        assertEquals(4, server.getRequestCount());
+        assertEquals("bytes */" + content.length, sessions.contentRanges.get(1));
+    }
+
+    @Test
+    public void expiredSessionRestartsUpload() throws Exception {
+        sessions.expireAfterChunks.set(1);
+
+        Result result = upload(new UploadOptions());
+
+        assertNull(result.error);
+        assertEquals(2, sessions.created.get());
+        assertArrayEquals(content, sessions.received(1));
+    }
+
+    @Test
+    public void resumesSessionFromStateFile() throws Exception {
+        sessions.failChunk = 1;
+        Result first = upload(new UploadOptions());
+        assertEquals("Upload failed: Network error, code 400", first.error);
+        assertEquals(1, stateFiles());
+
+        sessions.failChunk = -1;
+        sessions.contentRanges.clear();
+        Result second = upload(new UploadOptions());
+
+        assertNull(second.error);
+        assertEquals(1, sessions.created.get());
+        assertArrayEquals(content, sessions.received(0));
+        // 续传时先查询已接收的位置，不重新上传第一块
+        assertEquals("bytes */" + content.length, sessions.contentRanges.get(0));
+        assertTrue(sessions.contentRanges.get(1).startsWith("bytes " + CHUNK + "-"));
+        assertEquals(0, stateFiles());
+    }
+
+    private Result upload(UploadOptions options) throws InterruptedException {
+        Result result = new Result();
+        HttpUtil.uploadFile(server.url("/upload").toString(), file,
+            options.setChunkSize(CHUNK).setStateDirectory(directory).setCallbackExecutor(HttpUtil.WORKER_THREAD),
+            result);
+        assertTrue(result.done.await(30, TimeUnit.SECONDS));
+        return result;
+    }
+
+    private int stateFiles() {
+        int count = 0;
+        for (String name : directory.list()) {
+            if (name.endsWith(".state")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    static final class Result implements HttpUtil.HttpCallback {
+
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile String response;
+        volatile String error;
+
+        @Override
+        public void onSuccess(String response) {
+            this.response = response;
+            done.countDown();
+        }
+
+        @Override
+        public void onFailure(String errorMessage) {
+            error = errorMessage;
+            done.countDown();
+        }
+    }
+
+    /**
+     * 按可续传上传协议保存数据的服务器
+     */
+    static final class UploadDispatcher extends Dispatcher {
+
+        final AtomicInteger created = new AtomicInteger();
+        final List<ByteArrayOutputStream> uploads = new ArrayList<>();
+        final List<String> contentRanges = new ArrayList<>();
+        /** 之后多少块只保存前一半 */
+        final AtomicInteger partialChunks = new AtomicInteger();
+        /** 保存多少块后会话过期 */
+        final AtomicInteger expireAfterChunks = new AtomicInteger(-1);
+        /** 第几块（从 0 开始）返回 400 */
+        volatile int failChunk = -1;
+        /** 不保存任何数据 */
+        volatile boolean stalled;
+        private int chunks;
+        private boolean expired;
+
+        @Override
+        public synchronized MockResponse dispatch(RecordedRequest request) {
+            if (request.getMethod().equals("POST")) {
+                uploads.add(new ByteArrayOutputStream());
+                expired = false;
+                return new MockResponse().setHeader("Location", "/session/" + created.getAndIncrement());
+            }
+            int session = Integer.parseInt(request.getPath().substring("/session/".length()));
+            if (expired || session != uploads.size() - 1) {
+                return new MockResponse().setResponseCode(404);
+            }
+            String contentRange = request.getHeader("Content-Range");
+            contentRanges.add(contentRange);
+            ByteArrayOutputStream upload = uploads.get(session);
+            String[] parts = contentRange.substring("bytes ".length()).split("/");
+            long total = Long.parseLong(parts[1]);
+            if (!parts[0].equals("*")) {
+                if (chunks++ == failChunk) {
+                    return new MockResponse().setResponseCode(400);
+                }
+                long start = Long.parseLong(parts[0].substring(0, parts[0].indexOf('-')));
+                byte[] bytes = request.getBody().readByteArray();
+                if (!stalled && start == upload.size()) {
+                    int length = partialChunks.getAndDecrement() > 0 ? bytes.length / 2 : bytes.length;
+                    upload.write(bytes, 0, length);
+                }
+                if (expireAfterChunks.decrementAndGet() == 0) {
+                    expired = true;
+                }
+            }
+            if (upload.size() == total) {
+                return new MockResponse().setBody("done");
+            }
+            MockResponse response = new MockResponse().setResponseCode(308);
+            if (upload.size() > 0) {
+                response.setHeader("Range", "bytes=0-" + (upload.size() - 1));
+            }
+            return response;
+        }
+
+        synchronized byte[] received(int session) {
+            return uploads.get(session).toByteArray();
+        }
+    }
+}